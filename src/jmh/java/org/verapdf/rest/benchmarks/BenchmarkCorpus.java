@@ -0,0 +1,176 @@
+package org.verapdf.rest.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The fixed corpus of small, medium and large PDFs the benchmarks run
+ * against, so that they run offline and their results can be compared between
+ * runs. The small document is the bundled warm-up sample, the medium and large
+ * documents are generated, many pages of text and vector graphics, sized to
+ * fall in the {@code 100KB-1MB} and {@code 1MB-10MB} buckets of the stage
+ * timers.
+ * <p>
+ * Setting the {@code verapdf.benchmark.corpus} system property to a directory
+ * holding a {@code small.pdf}, {@code medium.pdf} and {@code large.pdf}
+ * benchmarks those documents instead, any that's missing is generated.
+ */
+public final class BenchmarkCorpus {
+    /** The system property naming a directory of documents to benchmark */
+    public static final String CORPUS_PROPERTY = "verapdf.benchmark.corpus"; //$NON-NLS-1$
+
+    private static final String SAMPLE_RESOURCE = "/org/verapdf/rest/warmup/sample.pdf"; //$NON-NLS-1$
+    private static final int LINES_PER_PAGE = 48;
+
+    /**
+     * The documents of the corpus.
+     */
+    public enum Document {
+        /** The bundled warm-up sample, a couple of KB */
+        SMALL(0),
+        /** Generated, a few hundred KB */
+        MEDIUM(120),
+        /** Generated, a few MB */
+        LARGE(1500);
+
+        private final int pages;
+
+        Document(final int pages) {
+            this.pages = pages;
+        }
+
+        /**
+         * @return the document's file name
+         */
+        public String getFileName() {
+            return this.name().toLowerCase(Locale.ROOT) + ".pdf"; //$NON-NLS-1$
+        }
+    }
+
+    private BenchmarkCorpus() {
+        throw new AssertionError("In static utility class constructor."); //$NON-NLS-1$
+    }
+
+    /**
+     * @param document
+     *            the {@link Document} to read
+     * @return the bytes of the document
+     * @throws IOException
+     *             if the document can't be read
+     */
+    public static byte[] bytes(final Document document) throws IOException {
+        File supplied = suppliedFile(document);
+        if (supplied != null) {
+            return Files.readAllBytes(supplied.toPath());
+        }
+        return (document == Document.SMALL) ? loadSample() : generate(document.pages);
+    }
+
+    /**
+     * Write documents of the corpus to a new temp directory, for the
+     * benchmarks of directory validation.
+     *
+     * @param documents
+     *            the {@link Document Documents} to write
+     * @return the directory, its files are deleted when the JVM exits
+     * @throws IOException
+     *             if the directory can't be written
+     */
+    public static File writeDirectory(final Document... documents) throws IOException {
+        File directory = Files.createTempDirectory("verapdf-benchmark").toFile(); //$NON-NLS-1$
+        directory.deleteOnExit();
+        for (Document document : documents) {
+            File file = new File(directory, document.getFileName());
+            Files.write(file.toPath(), bytes(document));
+            file.deleteOnExit();
+        }
+        return directory;
+    }
+
+    private static File suppliedFile(final Document document) {
+        String directory = System.getProperty(CORPUS_PROPERTY);
+        if (directory == null || directory.trim().isEmpty()) {
+            return null;
+        }
+        File file = new File(directory.trim(), document.getFileName());
+        return file.isFile() ? file : null;
+    }
+
+    private static byte[] loadSample() throws IOException {
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(SAMPLE_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Benchmark sample " + SAMPLE_RESOURCE + " not found"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /*
+    A PDF 1.4 document of the given number of pages, each a page of text in an unembedded standard
+    font and a few filled rectangles, so that validation has fonts, content streams and graphics
+    state to check on every page. Object 1 is the catalog, 2 the page tree, 3 the font, then each
+    page is followed by its content stream. The content is uncompressed so the size is predictable.
+     */
+    private static byte[] generate(final int pages) {
+        List<String> objects = new ArrayList<>();
+        objects.add("<< /Type /Catalog /Pages 2 0 R >>"); //$NON-NLS-1$
+        StringBuilder kids = new StringBuilder();
+        for (int page = 0; page < pages; page++) {
+            kids.append(4 + 2 * page).append(" 0 R "); //$NON-NLS-1$
+        }
+        objects.add("<< /Type /Pages /Kids [" + kids + "] /Count " + pages + " >>"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        objects.add("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>"); //$NON-NLS-1$
+        for (int page = 0; page < pages; page++) {
+            objects.add("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] " //$NON-NLS-1$
+                    + "/Resources << /Font << /F1 3 0 R >> >> /Contents " + (5 + 2 * page) + " 0 R >>"); //$NON-NLS-1$ //$NON-NLS-2$
+            String content = pageContent(page);
+            objects.add("<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n"); //$NON-NLS-1$
+        long[] offsets = new long[objects.size()];
+        for (int i = 0; i < objects.size(); i++) {
+            offsets[i] = pdf.length();
+            pdf.append(i + 1).append(" 0 obj\n").append(objects.get(i)).append("\nendobj\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n"); //$NON-NLS-1$ //$NON-NLS-2$
+        for (long offset : offsets) {
+            pdf.append(String.format(Locale.ROOT, "%010d 00000 n \n", Long.valueOf(offset))); //$NON-NLS-1$
+        }
+        pdf.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n") //$NON-NLS-1$ //$NON-NLS-2$
+                .append("startxref\n").append(xref).append("\n%%EOF\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        // Every character is below 0x100, so each is written as the single byte its offset counted
+        return pdf.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String pageContent(final int page) {
+        StringBuilder content = new StringBuilder();
+        for (int box = 0; box < 4; box++) {
+            content.append(String.format(Locale.ROOT, "%.2f %.2f %.2f rg %d %d 120 40 re f\n", //$NON-NLS-1$
+                    Double.valueOf(0.2 * box), Double.valueOf(0.5), Double.valueOf(1.0 - 0.2 * box),
+                    Integer.valueOf(50 + 125 * box), Integer.valueOf(40)));
+        }
+        content.append("0 g BT /F1 10 Tf 50 800 Td 14 TL\n"); //$NON-NLS-1$
+        for (int line = 0; line < LINES_PER_PAGE; line++) {
+            content.append(String.format(Locale.ROOT,
+                    "(Page %d line %d: the quick brown fox jumps over the lazy dog 0123456789) '\n", //$NON-NLS-1$
+                    Integer.valueOf(page + 1), Integer.valueOf(line + 1)));
+        }
+        content.append("ET"); //$NON-NLS-1$
+        return content.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.verapdf.rest.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpreservation.bytestreams.ByteStreamId;
+import org.openpreservation.bytestreams.ByteStreams;
+
+/**
+ * Identifying a document with {@link ByteStreams#idFromStream(java.io.InputStream)},
+ * reading it to its end to find its length and SHA-1, as the byte stream
+ * resource does for every upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteStreamsBenchmark {
+    @Param({ "SMALL", "MEDIUM", "LARGE" })
+    private BenchmarkCorpus.Document document;
+
+    private byte[] bytes;
+
+    /**
+     * @throws IOException
+     *             if the document can't be read
+     */
+    @Setup(Level.Trial)
+    public void loadDocument() throws IOException {
+        this.bytes = BenchmarkCorpus.bytes(this.document);
+    }
+
+    /**
+     * @return the {@link ByteStreamId} of the document
+     * @throws IOException
+     *             if the document can't be read
+     */
+    @Benchmark
+    public ByteStreamId idFromStream() throws IOException {
+        return ByteStreams.idFromStream(new ByteArrayInputStream(this.bytes));
+    }
+}
@@ -0,0 +1,439 @@
+package org.verapdf.rest.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.verapdf.rest.app.VeraPdfRestApplication;
+import org.verapdf.rest.app.VeraPdfRestConfiguration;
+import org.verapdf.rest.benchmarks.BenchmarkCorpus;
+
+import io.dropwizard.testing.DropwizardTestSupport;
+import io.dropwizard.testing.ResourceHelpers;
+
+/**
+ * Load tests a {@link VeraPdfRestApplication} started in this JVM, listening on
+ * localhost only, with a mix of PUT and POST validations and
+ * {@code processFiles} directory validations of the benchmark corpus, from a
+ * number of concurrent clients. After a warm-up period, the requests of the
+ * measured period are reported as each operation's throughput and p50, p99
+ * and maximum latency, with the highest heap use sampled while they ran, so
+ * worker pool sizes and spool settings can be compared before a rollout.
+ * <p>
+ * The test is configured with system properties:
+ * <ul>
+ * <li>{@code loadtest.concurrency}, the number of clients, 4 by default</li>
+ * <li>{@code loadtest.warmUpSeconds}, how long the clients run before
+ * measuring, 10 by default</li>
+ * <li>{@code loadtest.durationSeconds}, how long the clients are measured, 60
+ * by default</li>
+ * <li>{@code loadtest.mix}, the relative weights of the operations, by default
+ * {@code put=4,post=4,processFiles=1}</li>
+ * <li>{@code loadtest.profile}, the profile documents are validated against,
+ * {@code auto} by default</li>
+ * <li>{@code loadtest.seed}, the seed of the clients' choices of operation and
+ * document, 1 by default, so a run can be repeated</li>
+ * <li>{@code loadtest.config}, the server's configuration file, by default the
+ * bundled {@code loadtest.yml}</li>
+ * </ul>
+ * The server's settings can be overridden with Dropwizard's {@code dw.} system
+ * properties, for example {@code -Ddw.validationExecutor.batchWorkers=4}.
+ */
+public final class LoadTest {
+    private static final String DEFAULT_CONFIG = "loadtest.yml"; //$NON-NLS-1$
+    private static final String DEFAULT_MIX = "put=4,post=4,processFiles=1"; //$NON-NLS-1$
+    private static final long READINESS_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long HEAP_SAMPLE_MILLIS = 50;
+
+    /**
+     * The requests the clients make.
+     */
+    enum Operation {
+        /** A PUT of a document to the validate resource */
+        PUT("put"), //$NON-NLS-1$
+        /** A multipart POST of a document to the validate resource */
+        POST("post"), //$NON-NLS-1$
+        /** A GET of processFiles for a directory holding a document, as XML */
+        PROCESS_FILES("processFiles"); //$NON-NLS-1$
+
+        private final String id;
+
+        Operation(final String id) {
+            this.id = id;
+        }
+
+        static Operation fromId(final String id) {
+            for (Operation operation : values()) {
+                if (operation.id.equalsIgnoreCase(id.trim())) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown load test operation " + id); //$NON-NLS-1$
+        }
+    }
+
+    private final int concurrency;
+    private final long warmUpSeconds;
+    private final long durationSeconds;
+    private final Map<Operation, Integer> mix;
+    private final String profileId;
+    private final long seed;
+    private final List<byte[]> documents = new ArrayList<>();
+    private final List<File> directories = new ArrayList<>();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private String validateUrl;
+
+    private LoadTest() {
+        this.concurrency = Integer.getInteger("loadtest.concurrency", 4).intValue(); //$NON-NLS-1$
+        this.warmUpSeconds = Long.getLong("loadtest.warmUpSeconds", 10).longValue(); //$NON-NLS-1$
+        this.durationSeconds = Long.getLong("loadtest.durationSeconds", 60).longValue(); //$NON-NLS-1$
+        this.mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)); //$NON-NLS-1$
+        this.profileId = System.getProperty("loadtest.profile", "auto"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.seed = Long.getLong("loadtest.seed", 1).longValue(); //$NON-NLS-1$
+        if (this.concurrency < 1 || this.durationSeconds < 1 || this.warmUpSeconds < 0) {
+            throw new IllegalArgumentException("The concurrency and duration must be at least 1"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * @param args
+     *            unused, the test is configured with system properties
+     * @throws Exception
+     *             if the server can't be started or the test fails
+     */
+    public static void main(final String[] args) throws Exception {
+        new LoadTest().run();
+        // The in-process server's non-daemon threads are stopped, but not always joined
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        for (BenchmarkCorpus.Document document : BenchmarkCorpus.Document.values()) {
+            this.documents.add(BenchmarkCorpus.bytes(document));
+            this.directories.add(BenchmarkCorpus.writeDirectory(document));
+        }
+        String config = System.getProperty("loadtest.config", ResourceHelpers.resourceFilePath(DEFAULT_CONFIG)); //$NON-NLS-1$
+        DropwizardTestSupport<VeraPdfRestConfiguration> server = new DropwizardTestSupport<>(
+                VeraPdfRestApplication.class, config);
+        server.before();
+        try {
+            this.validateUrl = "http://127.0.0.1:" + server.getLocalPort() + "/api/validate/"; //$NON-NLS-1$ //$NON-NLS-2$
+            awaitReadiness("http://127.0.0.1:" + server.getAdminPort() + "/healthcheck"); //$NON-NLS-1$ //$NON-NLS-2$
+            VeraPdfRestConfiguration settings = server.getConfiguration();
+            System.out.println(String.format(Locale.ROOT,
+                    "Load test of %d clients, mix %s, profile %s, %d validation threads, %d batch workers, " //$NON-NLS-1$
+                            + "queue capacity %d, memory threshold %d bytes", //$NON-NLS-1$
+                    Integer.valueOf(this.concurrency), this.mix, this.profileId,
+                    Integer.valueOf(settings.validationExecutor.threads),
+                    Integer.valueOf(settings.validationExecutor.batchWorkers),
+                    Integer.valueOf(settings.validationExecutor.queueCapacity),
+                    Integer.valueOf(settings.uploads.memoryThresholdBytes)));
+
+            System.out.println(String.format(Locale.ROOT, "Warming up for %d s", Long.valueOf(this.warmUpSeconds))); //$NON-NLS-1$
+            runClients(this.warmUpSeconds, this.seed);
+            System.gc();
+            System.out.println(String.format(Locale.ROOT, "Measuring for %d s", Long.valueOf(this.durationSeconds))); //$NON-NLS-1$
+            HeapSampler heap = new HeapSampler();
+            long start = System.nanoTime();
+            Map<Operation, Results> results = runClients(this.durationSeconds, this.seed + this.concurrency);
+            long elapsed = System.nanoTime() - start;
+            heap.stop();
+            report(results, elapsed, heap);
+        } finally {
+            server.after();
+            for (File directory : this.directories) {
+                FileUtils.deleteQuietly(directory);
+            }
+        }
+    }
+
+    private Map<Operation, Results> runClients(final long seconds, final long clientSeed)
+            throws InterruptedException, ExecutionException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(this.concurrency);
+        List<Future<Map<Operation, Results>>> futures = new ArrayList<>();
+        try {
+            for (int client = 0; client < this.concurrency; client++) {
+                final Random random = new Random(clientSeed + client);
+                futures.add(clients.submit(new Callable<Map<Operation, Results>>() {
+                    @Override
+                    public Map<Operation, Results> call() {
+                        return runClient(random, end);
+                    }
+                }));
+            }
+            Map<Operation, Results> merged = newResults();
+            for (Future<Map<Operation, Results>> future : futures) {
+                for (Map.Entry<Operation, Results> entry : future.get().entrySet()) {
+                    merged.get(entry.getKey()).add(entry.getValue());
+                }
+            }
+            return merged;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private Map<Operation, Results> runClient(final Random random, final long end) {
+        Map<Operation, Results> results = newResults();
+        while (System.nanoTime() < end) {
+            Operation operation = chooseOperation(random);
+            int document = random.nextInt(this.documents.size());
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = request(operation, document);
+            } catch (IOException excep) {
+                status = -1;
+            }
+            results.get(operation).record(status, System.nanoTime() - start);
+        }
+        return results;
+    }
+
+    private Operation chooseOperation(final Random random) {
+        int total = 0;
+        for (Integer weight : this.mix.values()) {
+            total += weight.intValue();
+        }
+        int choice = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : this.mix.entrySet()) {
+            choice -= entry.getValue().intValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("No load test operation chosen"); //$NON-NLS-1$
+    }
+
+    private int request(final Operation operation, final int document) throws IOException {
+        switch (operation) {
+        case PUT:
+            return send("PUT", new URL(this.validateUrl + this.profileId), "application/pdf", //$NON-NLS-1$ //$NON-NLS-2$
+                    this.documents.get(document));
+        case POST:
+            String boundary = "veraPDFLoadTest" + Long.toHexString(System.nanoTime()); //$NON-NLS-1$
+            return send("POST", new URL(this.validateUrl + this.profileId), //$NON-NLS-1$
+                    "multipart/form-data; boundary=" + boundary, //$NON-NLS-1$
+                    multipart(boundary, BenchmarkCorpus.Document.values()[document].getFileName(),
+                            this.documents.get(document)));
+        case PROCESS_FILES:
+            return send("GET", new URL(this.validateUrl + "processFiles?directoryPath=" //$NON-NLS-1$ //$NON-NLS-2$
+                    + URLEncoder.encode(this.directories.get(document).getPath(), "UTF-8")), null, null); //$NON-NLS-1$
+        default:
+            throw new IllegalStateException("Unknown load test operation " + operation); //$NON-NLS-1$
+        }
+    }
+
+    /*
+    The response is read to its end, as a client would, so that the time includes writing the result
+    and the connection can be reused for the client's next request.
+     */
+    private static int send(final String method, final URL url, final String contentType, final byte[] body)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", (body == null) ? "application/xml" : "application/json"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", contentType); //$NON-NLS-1$
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = (status >= 400) ? connection.getErrorStream() : connection.getInputStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // Discard the response
+                }
+            }
+        }
+        return status;
+    }
+
+    private static byte[] multipart(final String boundary, final String fileName, final byte[] document)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(document.length + 256);
+        body.write(("--" + boundary + "\r\n" //$NON-NLS-1$ //$NON-NLS-2$
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n" //$NON-NLS-1$ //$NON-NLS-2$
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+        body.write(document);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$ //$NON-NLS-2$
+        return body.toByteArray();
+    }
+
+    /*
+    The warm-up validates a sample against every profile before the readiness health check passes,
+    the load test waits for it so that it doesn't measure the warm-up.
+     */
+    private static void awaitReadiness(final String healthCheckUrl) throws IOException, InterruptedException {
+        long giveUp = System.currentTimeMillis() + READINESS_TIMEOUT_MILLIS;
+        while (send("GET", new URL(healthCheckUrl), null, null) != 200) { //$NON-NLS-1$
+            if (System.currentTimeMillis() > giveUp) {
+                throw new IllegalStateException("The server didn't become ready"); //$NON-NLS-1$
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    private void report(final Map<Operation, Results> results, final long elapsedNanos, final HeapSampler heap) {
+        double seconds = elapsedNanos / 1e9;
+        Results total = new Results();
+        System.out.println(String.format(Locale.ROOT, "%-14s %8s %8s %8s %10s %10s %10s %10s", //$NON-NLS-1$
+                "operation", "ok", "rejected", "failed", "ops/s", "p50 ms", "p99 ms", "max ms")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+        for (Map.Entry<Operation, Results> entry : results.entrySet()) {
+            printRow(entry.getKey().id, entry.getValue(), seconds);
+            total.add(entry.getValue());
+        }
+        printRow("all", total, seconds); //$NON-NLS-1$
+        System.out.println(String.format(Locale.ROOT, "Heap high-water %d MB used, %d MB committed, of %d MB", //$NON-NLS-1$
+                Long.valueOf(heap.getMaxUsed() >> 20), Long.valueOf(heap.getMaxCommitted() >> 20),
+                Long.valueOf(Runtime.getRuntime().maxMemory() >> 20)));
+    }
+
+    private static void printRow(final String name, final Results results, final double seconds) {
+        System.out.println(String.format(Locale.ROOT, "%-14s %8d %8d %8d %10.2f %10.1f %10.1f %10.1f", name, //$NON-NLS-1$
+                Integer.valueOf(results.latencies.size()), Integer.valueOf(results.rejected),
+                Integer.valueOf(results.failed), Double.valueOf(results.latencies.size() / seconds),
+                Double.valueOf(results.percentileMillis(0.5)), Double.valueOf(results.percentileMillis(0.99)),
+                Double.valueOf(results.percentileMillis(1.0))));
+    }
+
+    private Map<Operation, Results> newResults() {
+        Map<Operation, Results> results = new EnumMap<>(Operation.class);
+        for (Operation operation : this.mix.keySet()) {
+            results.put(operation, new Results());
+        }
+        return results;
+    }
+
+    private static Map<Operation, Integer> parseMix(final String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) { //$NON-NLS-1$
+            String[] weight = part.split("="); //$NON-NLS-1$
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("A load test mix is operation=weight pairs, not " + mix); //$NON-NLS-1$
+            }
+            int value = Integer.parseInt(weight[1].trim());
+            if (value > 0) {
+                weights.put(Operation.fromId(weight[0]), Integer.valueOf(value));
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("A load test mix needs an operation with a weight above 0"); //$NON-NLS-1$
+        }
+        return weights;
+    }
+
+    /**
+     * The latencies of an operation's successful requests, and the number of
+     * its requests that were rejected with a 503 or 429, or failed.
+     */
+    static final class Results {
+        final List<Long> latencies = new ArrayList<>();
+        int rejected = 0;
+        int failed = 0;
+
+        void record(final int status, final long nanos) {
+            if (status >= 200 && status < 300) {
+                this.latencies.add(Long.valueOf(nanos));
+            } else if (status == 503 || status == 429) {
+                this.rejected++;
+            } else {
+                this.failed++;
+            }
+        }
+
+        void add(final Results other) {
+            this.latencies.addAll(other.latencies);
+            this.rejected += other.rejected;
+            this.failed += other.failed;
+        }
+
+        double percentileMillis(final double percentile) {
+            if (this.latencies.isEmpty()) {
+                return 0;
+            }
+            long[] sorted = new long[this.latencies.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = this.latencies.get(i).longValue();
+            }
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1);
+            return sorted[index] / 1e6;
+        }
+    }
+
+    /*
+    The server runs in this JVM, so the heap sampled is the server's plus the clients' small share.
+     */
+    private final class HeapSampler {
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicLong maxUsed = new AtomicLong();
+        private final AtomicLong maxCommitted = new AtomicLong();
+
+        HeapSampler() {
+            this.sampler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    sample();
+                }
+            }, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        void sample() {
+            long used = LoadTest.this.memory.getHeapMemoryUsage().getUsed();
+            long committed = LoadTest.this.memory.getHeapMemoryUsage().getCommitted();
+            updateMax(this.maxUsed, used);
+            updateMax(this.maxCommitted, committed);
+        }
+
+        void stop() throws InterruptedException {
+            this.sampler.shutdown();
+            this.sampler.awaitTermination(1, TimeUnit.SECONDS);
+            sample();
+        }
+
+        long getMaxUsed() {
+            return this.maxUsed.get();
+        }
+
+        long getMaxCommitted() {
+            return this.maxCommitted.get();
+        }
+
+        private void updateMax(final AtomicLong max, final long value) {
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // Retry, another sample raced this one
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.verapdf.rest.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.FileUtils;
+import org.mozilla.javascript.ContextFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.verapdf.rest.app.FileDiscoveryConfiguration;
+import org.verapdf.rest.app.UploadSpoolConfiguration;
+import org.verapdf.rest.app.ValidationExecutorConfiguration;
+import org.verapdf.rest.app.ValidationLimitsConfiguration;
+import org.verapdf.rest.app.ValidatorPoolConfiguration;
+import org.verapdf.rest.validation.DeadlineContextFactory;
+import org.verapdf.rest.validation.FileDiscovery;
+import org.verapdf.rest.validation.ManifestStore;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import io.dropwizard.jackson.Jackson;
+
+/**
+ * The validation services of a server running with the default configuration,
+ * wired together as the application does, for the benchmarks of the validate
+ * resource. Result caching is disabled, so that every operation validates, the
+ * stage timers are registered with a registry of their own.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkServices {
+    ExecutorService threads;
+    ForkJoinPool discoveryPool;
+    File workDirectory;
+    ValidationExecutor executor;
+    ValidatorPool validators;
+    ValidationResultCache cache;
+    UploadSpool spool;
+    ValidationStages stages;
+    ValidateResource resource;
+
+    /**
+     * @throws IOException
+     *             if the spool and manifest directories can't be created
+     */
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        ValidationExecutorConfiguration executorConfig = new ValidationExecutorConfiguration();
+        UploadSpoolConfiguration spoolConfig = new UploadSpoolConfiguration();
+        FileDiscoveryConfiguration discoveryConfig = new FileDiscoveryConfiguration();
+        ValidationLimitsConfiguration limitsConfig = new ValidationLimitsConfiguration();
+
+        if (!ContextFactory.hasExplicitGlobal()) {
+            DeadlineContextFactory.install(executorConfig.deadlineCheckInstructions);
+        }
+        this.threads = Executors.newFixedThreadPool(executorConfig.threads);
+        this.discoveryPool = new ForkJoinPool(discoveryConfig.threads);
+        this.workDirectory = Files.createTempDirectory("verapdf-benchmark-work").toFile(); //$NON-NLS-1$
+        File spoolDirectory = new File(this.workDirectory, "spool"); //$NON-NLS-1$
+        File manifestDirectory = new File(this.workDirectory, "manifests"); //$NON-NLS-1$
+        if (!spoolDirectory.mkdirs() || !manifestDirectory.mkdirs()) {
+            throw new IOException("Couldn't create the benchmark's work directories"); //$NON-NLS-1$
+        }
+
+        this.executor = new ValidationExecutor(this.threads, executorConfig.threads, executorConfig.queueCapacity,
+                executorConfig.batchWorkers, executorConfig.timeoutSeconds, executorConfig.batchTimeoutSeconds,
+                executorConfig.retryAfterSeconds, new Meter());
+        this.validators = new ValidatorPool(limitsConfig.build(), limitsConfig.getDefaultMode(),
+                new ValidatorPoolConfiguration().maxIdlePerFlavour);
+        this.cache = new ValidationResultCache(0, 0);
+        this.spool = new UploadSpool(spoolDirectory, spoolConfig.memoryThresholdBytes, spoolConfig.maxFileBytes,
+                spoolConfig.maxTotalBytes, spoolConfig.retryAfterSeconds, new Meter());
+        this.stages = new ValidationStages(new MetricRegistry());
+        this.resource = new ValidateResource(this.executor, this.validators, this.cache, this.spool,
+                new FileDiscovery(this.discoveryPool, discoveryConfig.queueCapacity),
+                new ManifestStore(manifestDirectory, Jackson.newObjectMapper()), Jackson.newObjectMapper(),
+                this.stages);
+    }
+
+    /**
+     * @throws IOException
+     *             if the work directory can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        this.threads.shutdownNow();
+        this.discoveryPool.shutdownNow();
+        FileUtils.deleteDirectory(this.workDirectory);
+    }
+}
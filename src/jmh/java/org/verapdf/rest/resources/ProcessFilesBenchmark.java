@@ -0,0 +1,82 @@
+package org.verapdf.rest.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.rest.benchmarks.BenchmarkCorpus;
+import org.verapdf.rest.validation.DiscoveryOptions;
+import org.verapdf.rest.validation.ValidationDeadline;
+
+/**
+ * Validating a directory of the local disk and rendering its HTML report, as
+ * a GET of the validate resource's {@code processFiles} for HTML does. Each
+ * directory holds one document of the corpus, the {@code ALL} directory holds
+ * all three. The report is rendered to a stream that discards it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessFilesBenchmark {
+    @Param({ "SMALL", "MEDIUM", "LARGE", "ALL" })
+    private String directory;
+
+    private File corpusDirectory;
+
+    /**
+     * @throws IOException
+     *             if the corpus can't be written
+     */
+    @Setup(Level.Trial)
+    public void writeCorpus() throws IOException {
+        this.corpusDirectory = "ALL".equals(this.directory) //$NON-NLS-1$
+                ? BenchmarkCorpus.writeDirectory(BenchmarkCorpus.Document.values())
+                : BenchmarkCorpus.writeDirectory(BenchmarkCorpus.Document.valueOf(this.directory));
+    }
+
+    /**
+     * @throws IOException
+     *             if the corpus can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        FileUtils.deleteDirectory(this.corpusDirectory);
+    }
+
+    /**
+     * @param services
+     *            the {@link BenchmarkServices} that validate the directory
+     * @throws VeraPDFException
+     *             if the directory can't be validated
+     * @throws IOException
+     *             if the report can't be rendered
+     */
+    @Benchmark
+    public void processFilesHtml(final BenchmarkServices services) throws VeraPDFException, IOException {
+        StreamingOutput report = services.resource.processFilesCreateHtmlReport(this.corpusDirectory.getPath(),
+                DiscoveryOptions.defaultInstance(), false, services.validators.getLimits((String) null),
+                ValidationDeadline.unlimited(), JettyClientConnection.of(null));
+        report.write(NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+}
@@ -0,0 +1,87 @@
+package org.verapdf.rest.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.rest.benchmarks.BenchmarkCorpus;
+import org.verapdf.rest.validation.SpooledUpload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+import io.dropwizard.jackson.Jackson;
+
+/**
+ * Writing the {@link ValidationResult} of each document of the corpus as JSON
+ * and as XML, the work the server's Jackson providers do for every validation
+ * response. The results are those of auto-detect validation in the server's
+ * default mode, and are written to a stream that discards them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSerialisationBenchmark {
+    @Param({ "SMALL", "MEDIUM", "LARGE" })
+    private BenchmarkCorpus.Document document;
+
+    private final ObjectMapper jsonMapper = Jackson.newObjectMapper();
+    private final XmlMapper xmlMapper = new XmlMapper();
+    private ValidationResult result;
+
+    /**
+     * @param services
+     *            the {@link BenchmarkServices} the document is validated with
+     * @throws IOException
+     *             if the document can't be read or spooled
+     * @throws VeraPDFException
+     *             if the document can't be validated
+     */
+    @Setup(Level.Trial)
+    public void validateDocument(final BenchmarkServices services) throws IOException, VeraPDFException {
+        try (SpooledUpload upload = services.spool
+                .spool(new ByteArrayInputStream(BenchmarkCorpus.bytes(this.document)))) {
+            this.result = ValidateResource.validate("auto", Collections.<DigestAlgorithm, String>emptyMap(), //$NON-NLS-1$
+                    upload, services.validators, services.validators.getLimits((String) null), services.cache,
+                    services.stages);
+        }
+    }
+
+    /**
+     * @throws IOException
+     *             if the result can't be written
+     */
+    @Benchmark
+    public void writeJson() throws IOException {
+        this.jsonMapper.writeValue(NullOutputStream.NULL_OUTPUT_STREAM, this.result);
+    }
+
+    /**
+     * @throws IOException
+     *             if the result can't be written
+     */
+    @Benchmark
+    public void writeXml() throws IOException {
+        this.xmlMapper.writeValue(NullOutputStream.NULL_OUTPUT_STREAM, this.result);
+    }
+}
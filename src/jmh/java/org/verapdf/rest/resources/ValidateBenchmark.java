@@ -0,0 +1,94 @@
+package org.verapdf.rest.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.rest.app.ValidationLimitsConfiguration;
+import org.verapdf.rest.benchmarks.BenchmarkCorpus;
+import org.verapdf.rest.validation.SpooledUpload;
+import org.verapdf.rest.validation.ValidationLimits;
+import org.verapdf.rest.validation.ValidatorPool;
+
+/**
+ * Validating a spooled upload of each document of the corpus against each
+ * flavour, and with auto-detection, as a PUT or POST to the validate resource
+ * does once the upload is spooled, with the server's default validation
+ * mode. Each is run with no idle validators kept, so that every validation
+ * builds its validator and profile as it did before the pool, and with the
+ * server's default pool, showing the per-request setup cost the pool saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateBenchmark {
+    @Param({ "auto", "1a", "1b", "2a", "2b", "2u", "3a", "3b", "3u" })
+    private String profileId;
+
+    @Param({ "SMALL", "MEDIUM", "LARGE" })
+    private BenchmarkCorpus.Document document;
+
+    // 0 creates a validator for every validation, 2 is the server's default
+    @Param({ "0", "2" })
+    private int maxIdlePerFlavour;
+
+    private SpooledUpload upload;
+    private ValidatorPool validators;
+    private ValidationLimits limits;
+
+    /**
+     * @param services
+     *            the {@link BenchmarkServices} the upload is spooled with
+     * @throws IOException
+     *             if the document can't be read or spooled
+     */
+    @Setup(Level.Trial)
+    public void spoolDocument(final BenchmarkServices services) throws IOException {
+        this.upload = services.spool.spool(new ByteArrayInputStream(BenchmarkCorpus.bytes(this.document)));
+        ValidationLimitsConfiguration limitsConfig = new ValidationLimitsConfiguration();
+        this.validators = new ValidatorPool(limitsConfig.build(), limitsConfig.getDefaultMode(),
+                this.maxIdlePerFlavour);
+        this.limits = this.validators.getLimits((String) null);
+    }
+
+    /**
+     * Release the spooled upload.
+     */
+    @TearDown(Level.Trial)
+    public void closeUpload() {
+        this.upload.close();
+    }
+
+    /**
+     * @param services
+     *            the {@link BenchmarkServices} that validate the upload
+     * @return the {@link ValidationResult} of the document
+     * @throws VeraPDFException
+     *             if the document can't be validated
+     */
+    @Benchmark
+    public ValidationResult validate(final BenchmarkServices services) throws VeraPDFException {
+        return ValidateResource.validate(this.profileId, Collections.<DigestAlgorithm, String>emptyMap(),
+                this.upload, this.validators, this.limits, services.cache, services.stages);
+    }
+}
@@ -1,5 +1,7 @@
 package org.openpreservation.bytestreams;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
@@ -12,7 +14,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
  * character hex string, i.e. [0-9a-f]{40}.</li>
  * </ul>
  * Used as an identifier for tagging richer metadata and associating it with a
- * ByteStream.
+ * ByteStream. Any other digests calculated alongside the SHA1 are carried as
+ * well, they don't take part in equality or ordering.
  * 
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
  */
@@ -30,6 +33,20 @@ public interface ByteStreamId {
 	 */
 	public String getHexSHA1();
 
+	/**
+	 * @return the hex encoded digests calculated from the ByteStream, keyed
+	 *         by algorithm name, e.g. SHA-256, always including SHA-1
+	 */
+	public Map<String, String> getDigests();
+
+	/**
+	 * @param algorithm
+	 *            the {@link DigestAlgorithm} of the digest
+	 * @return the hex encoded digest calculated with algorithm, or null if it
+	 *         wasn't calculated
+	 */
+	public String getHexDigest(final DigestAlgorithm algorithm);
+
 	/**
 	 * @param id
 	 *            id for comparison
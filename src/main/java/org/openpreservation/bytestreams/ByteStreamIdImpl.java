@@ -1,5 +1,9 @@
 package org.openpreservation.bytestreams;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Straightforward immutable implementation of the {@link ByteStreamId} interface. 
@@ -13,14 +17,20 @@ final class ByteStreamIdImpl implements ByteStreamId, Comparable<ByteStreamId> {
 
 	private final String hexSHA1;
 	private final long length;
+	private final Map<String, String> digests;
 
 	private ByteStreamIdImpl() {
 		this(ByteStreams.UNKNOWN_LENGTH, ByteStreams.NULL_SHA1.toLowerCase());
 	}
 
 	private ByteStreamIdImpl(final long length, final String sha1) {
+		this(length, Collections.singletonMap(DigestAlgorithm.SHA1.getName(), sha1));
+	}
+
+	private ByteStreamIdImpl(final long length, final Map<String, String> digests) {
 		this.length = length;
-		this.hexSHA1 = sha1;
+		this.hexSHA1 = digests.get(DigestAlgorithm.SHA1.getName());
+		this.digests = digests;
 	}
 
 	static ByteStreamIdImpl fromValues(final long length,
@@ -43,6 +53,25 @@ final class ByteStreamIdImpl implements ByteStreamId, Comparable<ByteStreamId> {
 		return new ByteStreamIdImpl(length, sha1.toLowerCase());
 	}
 
+	static ByteStreamIdImpl fromDigests(final long length,
+										final Map<DigestAlgorithm, String> digests) {
+		if (length < 0L)
+			throw new IllegalArgumentException("(length " + length //$NON-NLS-1$
+					+ " < 0) == true"); //$NON-NLS-1$
+		if ((digests == null) || !digests.containsKey(DigestAlgorithm.SHA1))
+			throw new IllegalArgumentException(
+					"((digests == null) || !digests.containsKey(SHA1)) == true"); //$NON-NLS-1$
+		// Iterate in algorithm order so serialised digests are consistently ordered
+		Map<String, String> hexDigests = new LinkedHashMap<>();
+		for (Map.Entry<DigestAlgorithm, String> entry : new EnumMap<>(digests).entrySet()) {
+			if ((entry.getValue() == null) || !entry.getKey().isHexDigest(entry.getValue()))
+				throw new IllegalArgumentException(
+						entry.getKey() + ".isHexDigest(" + entry.getValue() + ") != true"); //$NON-NLS-1$ //$NON-NLS-2$
+			hexDigests.put(entry.getKey().getName(), entry.getValue().trim().toLowerCase());
+		}
+		return new ByteStreamIdImpl(length, Collections.unmodifiableMap(hexDigests));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -59,6 +88,22 @@ final class ByteStreamIdImpl implements ByteStreamId, Comparable<ByteStreamId> {
 		return this.hexSHA1;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final Map<String, String> getDigests() {
+		return this.digests;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final String getHexDigest(final DigestAlgorithm algorithm) {
+		return this.digests.get(algorithm.getName());
+	}
+
     /**
      * {@inheritDoc}
      */
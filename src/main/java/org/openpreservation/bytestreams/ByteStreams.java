@@ -1,14 +1,19 @@
 package org.openpreservation.bytestreams;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,26 +47,28 @@ public final class ByteStreams {
 
     // Buffer size for reading streams
     private static final int BUFFER_SIZE = (32 * 1024);
-    // java.security.digest name for the SHA1 algorithm
-    private static final String SHA1_NAME = "SHA-1"; //$NON-NLS-1$
+    // No digests other than SHA-1
+    private static final Set<DigestAlgorithm> SHA1_ONLY = Collections
+            .unmodifiableSet(EnumSet.noneOf(DigestAlgorithm.class));
     // regex pattern for SHA1 string
     private static final Pattern HEX_SHA1_PATTERN = Pattern
             .compile(HEX_SHA1_REGEX);
 
-    // OK set up the stream for digest calculation, first the digest alg
-    private static final MessageDigest SHA1;
-    static {
-        try {
-            // Try for MD5 alg
-            SHA1 = MessageDigest.getInstance(SHA1_NAME);
-        } catch (NoSuchAlgorithmException exception) {
-            // If this happens the Java Digest algorithms aren't present, a
-            // faulty Java install??
-            throw new IllegalStateException(
-                    "No digest algorithm implementation for " + SHA1_NAME //$NON-NLS-1$
-                            + ", check you Java installation.", exception); //$NON-NLS-1$
+    // MessageDigest isn't thread safe, so each thread gets its own digests,
+    // indexed by algorithm ordinal and created on first use, and read buffer,
+    // reused for every stream that thread identifies
+    private static final ThreadLocal<MessageDigest[]> DIGESTS = new ThreadLocal<MessageDigest[]>() {
+        @Override
+        protected MessageDigest[] initialValue() {
+            return new MessageDigest[DigestAlgorithm.values().length];
         }
-    }
+    };
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
 
     private ByteStreams() {
         throw new AssertionError("[ByteStreams] In default constructor."); //$NON-NLS-1$
@@ -116,24 +123,41 @@ public final class ByteStreams {
      */
     public static ByteStreamId idFromStream(final InputStream inStream)
             throws IOException {
+        return idFromStream(inStream, SHA1_ONLY);
+    }
+
+    /**
+     * Factory method that creates a new ByteStream instance from an
+     * InputStream, calculating the requested digests as well as the SHA-1 in
+     * a single pass over the stream. Note that the caller is responsible for
+     * closing the passed stream.
+     * 
+     * @param inStream
+     *            a java.io.InputStream from which to create the ByteStreamId,
+     *            must be closed by the caller
+     * @param algorithms
+     *            the digests to calculate in addition to SHA-1
+     * @return a new ByteStreamId instance created from the input Stream
+     * @throws IOException
+     *             when the InputStream cannot be read
+     */
+    public static ByteStreamId idFromStream(final InputStream inStream,
+                                            final Set<DigestAlgorithm> algorithms)
+            throws IOException {
         if (inStream == null)
             throw new IllegalArgumentException("inStream == null"); //$NON-NLS-1$
-        SHA1.reset();
-        // Create input streams for digest calculation
-        DigestInputStream SHA1Stream = new DigestInputStream(inStream, SHA1);
-        // Wrap them all in a buffered stream for efficiency
-        BufferedInputStream bis = new BufferedInputStream(SHA1Stream);
-        byte[] buff = new byte[BUFFER_SIZE];
+        MessageDigest[] digests = digests(algorithms);
+        byte[] buff = BUFFER.get();
         long totalBytes = 0L;
         int bytesRead;
-        // Read the entire stream while calculating the length
-        while ((bytesRead = bis.read(buff, 0, BUFFER_SIZE)) > -1) {
+        // Read the entire stream straight into the digests while calculating
+        // the length, the buffer is large enough that wrapping the stream in
+        // a BufferedInputStream would only add a copy
+        while ((bytesRead = inStream.read(buff, 0, BUFFER_SIZE)) > -1) {
+            update(digests, buff, bytesRead);
             totalBytes += bytesRead;
         }
-        // Return the new instance from the calculated details
-        return (totalBytes == 0L) ? ByteStreams.nullByteStreamId()
-                : ByteStreamIdImpl.fromValues(totalBytes,
-                        Hex.encodeHexString(SHA1.digest()));
+        return fromDigests(totalBytes, digests);
     }
 
     /**
@@ -149,14 +173,94 @@ public final class ByteStreams {
      */
     public static ByteStreamId idFromFile(final File file)
             throws FileNotFoundException, IOException {
+        return idFromFile(file, SHA1_ONLY);
+    }
+
+    /**
+     * Factory method to create a byte sequence from the contents of a file,
+     * calculating the requested digests as well as the SHA-1 in a single pass
+     * over the file.
+     * 
+     * @param file
+     *            a java.io.File from which to create the ByteStreamId
+     * @param algorithms
+     *            the digests to calculate in addition to SHA-1
+     * @return a new ByteStreamId instance created from the file
+     * @throws FileNotFoundException
+     *             when the file cannot be found
+     * @throws IOException
+     *             when the InputStream opened from the file cannot be read
+     */
+    public static ByteStreamId idFromFile(final File file,
+                                          final Set<DigestAlgorithm> algorithms)
+            throws FileNotFoundException, IOException {
         if (file == null)
             throw new IllegalArgumentException("file == null"); //$NON-NLS-1$
         if (file.isDirectory())
             throw new IllegalArgumentException("file.isDirectory() == true"); //$NON-NLS-1$
-        try (InputStream inStream = new FileInputStream(file)) {
-            ByteStreamId bs = idFromStream(inStream);
-            return bs;
+        MessageDigest[] digests = digests(algorithms);
+        byte[] buff = BUFFER.get();
+        long totalBytes = 0L;
+        int bytesRead;
+        // Read the file's channel straight into the thread's buffer, no
+        // stream wrappers or intermediate copies
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while ((bytesRead = channel.read(ByteBuffer.wrap(buff))) > -1) {
+                update(digests, buff, bytesRead);
+                totalBytes += bytesRead;
+            }
+        } catch (NoSuchFileException excep) {
+            FileNotFoundException fnfe = new FileNotFoundException(file.getPath());
+            fnfe.initCause(excep);
+            throw fnfe;
+        }
+        return fromDigests(totalBytes, digests);
+    }
+
+    /*
+     * The calling thread's digests for the requested algorithms plus SHA-1,
+     * reset and indexed by algorithm ordinal, null for those not requested.
+     */
+    private static MessageDigest[] digests(final Set<DigestAlgorithm> algorithms) {
+        if (algorithms == null)
+            throw new IllegalArgumentException("algorithms == null"); //$NON-NLS-1$
+        MessageDigest[] cached = DIGESTS.get();
+        MessageDigest[] digests = new MessageDigest[cached.length];
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            if (algorithm == DigestAlgorithm.SHA1 || algorithms.contains(algorithm)) {
+                int index = algorithm.ordinal();
+                if (cached[index] == null) {
+                    cached[index] = algorithm.newDigest();
+                }
+                cached[index].reset();
+                digests[index] = cached[index];
+            }
+        }
+        return digests;
+    }
+
+    private static void update(final MessageDigest[] digests, final byte[] buff, final int bytesRead) {
+        for (MessageDigest digest : digests) {
+            if (digest != null) {
+                digest.update(buff, 0, bytesRead);
+            }
+        }
+    }
+
+    // Return the new instance from the calculated details
+    private static ByteStreamId fromDigests(final long totalBytes, final MessageDigest[] digests) {
+        Map<DigestAlgorithm, String> hexDigests = new EnumMap<>(DigestAlgorithm.class);
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            if (digests[algorithm.ordinal()] != null) {
+                hexDigests.put(algorithm, Hex.encodeHexString(digests[algorithm.ordinal()].digest()));
+            }
+        }
+        if (hexDigests.size() == 1) {
+            return (totalBytes == 0L) ? ByteStreams.nullByteStreamId()
+                    : ByteStreamIdImpl.fromValues(totalBytes,
+                            hexDigests.get(DigestAlgorithm.SHA1));
         }
+        return ByteStreamIdImpl.fromDigests(totalBytes, hexDigests);
     }
 
     /**
@@ -0,0 +1,101 @@
+package org.openpreservation.bytestreams;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * The message digest algorithms that can be calculated for a byte stream.
+ * SHA-1 is always calculated, it's the digest that identifies a
+ * {@link ByteStreamId}, the others are calculated on request in the same pass
+ * over the stream.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public enum DigestAlgorithm {
+    /** MD5, 128 bit digest */
+    MD5("MD5", 32), //$NON-NLS-1$
+    /** SHA-1, 160 bit digest */
+    SHA1("SHA-1", 40), //$NON-NLS-1$
+    /** SHA-256, 256 bit digest */
+    SHA256("SHA-256", 64); //$NON-NLS-1$
+
+    private final String name;
+    private final int hexLength;
+    private final Pattern hexPattern;
+
+    private DigestAlgorithm(final String name, final int hexLength) {
+        this.name = name;
+        this.hexLength = hexLength;
+        this.hexPattern = Pattern.compile(ByteStreams.HEX_REGEX_ROOT + "{" //$NON-NLS-1$
+                + hexLength + "})\\z"); //$NON-NLS-1$
+    }
+
+    /**
+     * @return the java.security name of the algorithm, e.g. SHA-256
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the length of a hex encoded digest from this algorithm
+     */
+    public int getHexLength() {
+        return this.hexLength;
+    }
+
+    /**
+     * @param toTest
+     *            java.lang.String to test
+     * @return true if toTest is a hex encoded digest of this algorithm's
+     *         length, surrounding white space is ignored
+     */
+    public boolean isHexDigest(final String toTest) {
+        if (toTest == null)
+            throw new IllegalArgumentException("toTest == null"); //$NON-NLS-1$
+        return this.hexPattern.matcher(toTest).find();
+    }
+
+    /**
+     * @return a new {@link MessageDigest} for the algorithm
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(this.name);
+        } catch (NoSuchAlgorithmException exception) {
+            // If this happens the Java Digest algorithms aren't present, a
+            // faulty Java install??
+            throw new IllegalStateException(
+                    "No digest algorithm implementation for " + this.name //$NON-NLS-1$
+                            + ", check you Java installation.", exception); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Look up an algorithm by its java.security name, e.g. SHA-256, or its
+     * enum name, e.g. SHA256, ignoring case.
+     *
+     * @param name
+     *            the name of the algorithm
+     * @return the matching {@link DigestAlgorithm}
+     * @throws IllegalArgumentException
+     *             if no algorithm matches the name
+     */
+    public static DigestAlgorithm fromName(final String name) {
+        if (name == null)
+            throw new IllegalArgumentException("name == null"); //$NON-NLS-1$
+        String trimmed = name.trim();
+        for (DigestAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(trimmed) || algorithm.name().equalsIgnoreCase(trimmed)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("No digest algorithm named " + name); //$NON-NLS-1$
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,56 @@
+package org.verapdf.rest.app;
+
+import java.io.PrintWriter;
+
+import org.verapdf.rest.validation.ValidationExecutor;
+
+import com.google.common.collect.ImmutableMultimap;
+
+import io.dropwizard.servlets.tasks.Task;
+
+/**
+ * An admin task that cancels a running validation, given the {@code id} listed
+ * by the {@link ValidationQueueServlet}. The validation stops at its next
+ * deadline check and its client gets a 504, a validation that's part of a
+ * batch stops the whole batch:
+ *
+ * <pre>
+ * curl -X POST 'localhost:8081/tasks/cancel-validation?id=42'
+ * </pre>
+ */
+public class CancelValidationTask extends Task {
+    private static final String ID_PARAMETER = "id"; //$NON-NLS-1$
+
+    private final ValidationExecutor executor;
+
+    /**
+     * @param executor
+     *            the {@link ValidationExecutor} running the validations
+     */
+    public CancelValidationTask(final ValidationExecutor executor) {
+        super("cancel-validation"); //$NON-NLS-1$
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output) {
+        if (parameters.get(ID_PARAMETER).isEmpty()) {
+            output.println("The id of the validation to cancel is required"); //$NON-NLS-1$
+            return;
+        }
+        for (String id : parameters.get(ID_PARAMETER)) {
+            long validationId;
+            try {
+                validationId = Long.parseLong(id.trim());
+            } catch (NumberFormatException excep) {
+                output.println("Not a validation id: " + id); //$NON-NLS-1$
+                continue;
+            }
+            if (this.executor.cancel(validationId)) {
+                output.println("Cancelled validation " + validationId); //$NON-NLS-1$
+            } else {
+                output.println("Validation " + validationId + " isn't running or can't be cancelled"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.verapdf.rest.app;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javax.validation.constraints.Min;
+
+import org.verapdf.rest.validation.FileDiscovery;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+/**
+ * Configuration for finding the files of a directory validation, read from the
+ * {@code fileDiscovery} section of the configuration YAML file.
+ */
+public class FileDiscoveryConfiguration {
+    /** Number of threads that walk directories, shared by all requests, a paused walk doesn't hold one */
+    @Min(1)
+    @JsonProperty
+    public int threads = 4;
+
+    /** Number of found files a walk holds waiting to be validated before it pauses */
+    @Min(1)
+    @JsonProperty
+    public int queueCapacity = 1024;
+
+    /**
+     * Create the directory walking pool, registering it with the Dropwizard
+     * lifecycle so that it's shut down with the server.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link FileDiscovery}
+     */
+    public FileDiscovery build(final Environment environment) {
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        environment.lifecycle().manage(new ExecutorServiceManager(pool, Duration.seconds(5), "file-discovery")); //$NON-NLS-1$
+        return new FileDiscovery(pool, this.queueCapacity);
+    }
+}
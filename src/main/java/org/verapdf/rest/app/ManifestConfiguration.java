@@ -0,0 +1,37 @@
+package org.verapdf.rest.app;
+
+import java.io.File;
+
+import javax.validation.constraints.NotNull;
+
+import org.verapdf.rest.validation.ManifestStore;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for the manifests of incremental directory validations, read
+ * from the {@code manifests} section of the configuration YAML file.
+ */
+public class ManifestConfiguration {
+    /** Directory the manifests of incrementally validated directories are kept in */
+    @NotNull
+    @JsonProperty
+    public String directory = new File(System.getProperty("user.home"), ".veraPDF-rest/manifests").getPath(); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /**
+     * Create the manifest directory if necessary.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link ManifestStore}
+     */
+    public ManifestStore build(final Environment environment) {
+        File manifestDir = new File(this.directory);
+        if (!manifestDir.isDirectory() && !manifestDir.mkdirs()) {
+            throw new IllegalStateException("Couldn't create manifest directory " + manifestDir.getAbsolutePath()); //$NON-NLS-1$
+        }
+        return new ManifestStore(manifestDir, environment.getObjectMapper());
+    }
+}
@@ -0,0 +1,35 @@
+package org.verapdf.rest.app;
+
+import org.verapdf.rest.validation.WarmUp;
+
+import com.codahale.metrics.health.HealthCheck;
+
+/**
+ * Reports the server unhealthy until the validation warm-up has completed, so
+ * a load balancer polling the admin {@code /healthcheck} only routes requests
+ * to an instance once its first validations will run at full speed.
+ */
+public class ReadinessHealthCheck extends HealthCheck {
+    private final WarmUp warmUp;
+
+    /**
+     * @param warmUp
+     *            the {@link WarmUp} readiness waits for
+     */
+    public ReadinessHealthCheck(final WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    protected Result check() {
+        Throwable failure = this.warmUp.getFailure();
+        if (failure != null) {
+            return Result.unhealthy(failure);
+        }
+        if (!this.warmUp.isComplete()) {
+            return Result.unhealthy("Validation warm-up is running"); //$NON-NLS-1$
+        }
+        return Result.healthy("Warmed up %d flavours in %d ms", Integer.valueOf(this.warmUp.getFlavours()), //$NON-NLS-1$
+                Long.valueOf(this.warmUp.getDurationMillis()));
+    }
+}
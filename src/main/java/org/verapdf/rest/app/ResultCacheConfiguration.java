@@ -0,0 +1,38 @@
+package org.verapdf.rest.app;
+
+import javax.validation.constraints.Min;
+
+import org.verapdf.rest.validation.ValidationResultCache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for the validation result cache, read from the
+ * {@code resultCache} section of the configuration YAML file.
+ */
+public class ResultCacheConfiguration {
+    /** Total number of test assertions held in cached results, 0 disables result caching */
+    @Min(0)
+    @JsonProperty
+    public long maxResultAssertions = 1000000L;
+
+    /** Total size in bytes of cached HTML reports, 0 disables HTML report caching */
+    @Min(0)
+    @JsonProperty
+    public long maxHtmlBytes = 64L * 1024L * 1024L;
+
+    /**
+     * Create the result cache and register its metrics.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link ValidationResultCache}
+     */
+    public ValidationResultCache build(final Environment environment) {
+        ValidationResultCache cache = new ValidationResultCache(this.maxResultAssertions, this.maxHtmlBytes);
+        cache.registerMetrics(environment.metrics());
+        return cache;
+    }
+}
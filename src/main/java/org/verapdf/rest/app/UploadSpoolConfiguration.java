@@ -0,0 +1,65 @@
+package org.verapdf.rest.app;
+
+import java.io.File;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.verapdf.rest.validation.UploadSpool;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for how uploaded PDFs are read before validation, read from
+ * the {@code uploads} section of the configuration YAML file.
+ */
+public class UploadSpoolConfiguration {
+    /** Directory that uploads too large to hold in memory are spooled to */
+    @NotNull
+    @JsonProperty
+    public String directory = new File(System.getProperty("java.io.tmpdir"), "veraPDF-rest").getPath(); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** Largest upload in bytes held in memory, larger uploads are spooled to a temp file */
+    @Min(0)
+    @JsonProperty
+    public int memoryThresholdBytes = 1024 * 1024;
+
+    /** Largest upload in bytes accepted, larger uploads are rejected with a 413 */
+    @Min(1)
+    @JsonProperty
+    public long maxFileBytes = 512L * 1024L * 1024L;
+
+    /** Total bytes of spooled uploads held on disk before new uploads are rejected with a 503 */
+    @Min(1)
+    @JsonProperty
+    public long maxTotalBytes = 4L * 1024L * 1024L * 1024L;
+
+    /** Retry-After value returned with a 503 when the spool directory is full */
+    @Min(1)
+    @JsonProperty
+    public long retryAfterSeconds = 30;
+
+    /**
+     * Create the spool directory if necessary, delete any temp files orphaned
+     * there by a previous run and register the spool's metrics.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link UploadSpool}
+     */
+    public UploadSpool build(final Environment environment) {
+        File spoolDir = new File(this.directory);
+        if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+            throw new IllegalStateException("Couldn't create upload spool directory " + spoolDir.getAbsolutePath()); //$NON-NLS-1$
+        }
+        UploadSpool spool = new UploadSpool(spoolDir, this.memoryThresholdBytes, this.maxFileBytes,
+                this.maxTotalBytes, this.retryAfterSeconds,
+                environment.metrics().meter(MetricRegistry.name(UploadSpool.class, "rejected"))); //$NON-NLS-1$
+        spool.sweepOrphans();
+        spool.registerMetrics(environment.metrics());
+        return spool;
+    }
+}
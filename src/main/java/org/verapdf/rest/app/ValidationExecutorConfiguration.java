@@ -0,0 +1,101 @@
+package org.verapdf.rest.app;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.rest.validation.DeadlineContextFactory;
+import org.verapdf.rest.validation.ValidationExecutor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for the validation worker pool, read from the
+ * {@code validationExecutor} section of the configuration YAML file.
+ */
+public class ValidationExecutorConfiguration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationExecutorConfiguration.class);
+
+    /**
+     * Number of worker threads that validate documents. veraPDF 1.9 and 1.10
+     * hold the document being parsed in static state shared by every thread,
+     * so concurrent validations corrupt each other's results. Only raise this
+     * with a release of the library that keeps that state per thread.
+     */
+    @Min(1)
+    @JsonProperty
+    public int threads = 1;
+
+    /**
+     * Number of workers a directory validation is sharded across, each runs on
+     * one of the pool's threads so this should be no more than {@code threads}
+     */
+    @Min(1)
+    @JsonProperty
+    public int batchWorkers = 1;
+
+    /** Number of validations that may wait for a free worker before requests are rejected */
+    @Min(0)
+    @JsonProperty
+    public int queueCapacity = 16;
+
+    /** Maximum time a request's validation may take, callers can ask for less */
+    @Min(1)
+    @JsonProperty
+    public long timeoutSeconds = 300;
+
+    /** Maximum time a directory validation may take, 0 for no limit, callers can ask for less */
+    @Min(0)
+    @JsonProperty
+    public long batchTimeoutSeconds = 0;
+
+    /** Script instructions the rule engine executes between checks of a validation's deadline */
+    @Min(1)
+    @JsonProperty
+    public int deadlineCheckInstructions = 10000;
+
+    /** Retry-After value returned with a 503 when the queue is full */
+    @Min(1)
+    @JsonProperty
+    public long retryAfterSeconds = 30;
+
+    /**
+     * Create the worker pool, registering it with the Dropwizard lifecycle so
+     * that it's shut down with the server, and the admin port's
+     * {@link ValidationQueueServlet} and {@link CancelValidationTask} for it.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link ValidationExecutor}
+     */
+    public ValidationExecutor build(final Environment environment) {
+        if (this.threads > 1) {
+            LOGGER.warn("validationExecutor.threads is {}, veraPDF 1.9 and 1.10 share parser state between threads "
+                    + "so concurrent validations can return corrupted results", Integer.valueOf(this.threads));
+        }
+        BlockingQueue<Runnable> queue = (this.queueCapacity > 0)
+                ? new ArrayBlockingQueue<Runnable>(this.queueCapacity)
+                : new SynchronousQueue<Runnable>();
+        ExecutorService executor = environment.lifecycle().executorService("validation-%d") //$NON-NLS-1$
+                .minThreads(this.threads).maxThreads(this.threads).workQueue(queue).build();
+        // Lets the rule engine stop validations that overrun their deadline
+        DeadlineContextFactory.install(this.deadlineCheckInstructions);
+        ValidationExecutor validationExecutor = new ValidationExecutor(executor, this.threads, this.queueCapacity, this.batchWorkers,
+                this.timeoutSeconds, this.batchTimeoutSeconds, this.retryAfterSeconds,
+                environment.metrics().meter(MetricRegistry.name(ValidationExecutor.class, "rejected"))); //$NON-NLS-1$
+        // Lets operators find and cancel a stuck validation from the admin port
+        environment.admin().addServlet("validations", //$NON-NLS-1$
+                new ValidationQueueServlet(validationExecutor, environment.getObjectMapper()))
+                .addMapping(ValidationQueueServlet.PATH);
+        environment.admin().addTask(new CancelValidationTask(validationExecutor));
+        return validationExecutor;
+    }
+}
@@ -0,0 +1,54 @@
+package org.verapdf.rest.app;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+
+import org.verapdf.rest.validation.ValidationJobStore;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for asynchronous validation jobs, read from the
+ * {@code validationJobs} section of the configuration YAML file.
+ */
+public class ValidationJobConfiguration {
+    /** Minutes a finished job, and its result, is kept for collection */
+    @Min(1)
+    @JsonProperty
+    public long ttlMinutes = 60;
+
+    /** Maximum number of jobs, queued, running or finished, held at once */
+    @Min(1)
+    @JsonProperty
+    public int maxJobs = 1000;
+
+    /** Retry-After value returned with a 503 when the job store is full */
+    @Min(1)
+    @JsonProperty
+    public long retryAfterSeconds = 60;
+
+    /**
+     * Create the job store and schedule the regular eviction of expired jobs.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @return a new {@link ValidationJobStore}
+     */
+    public ValidationJobStore build(final Environment environment) {
+        final ValidationJobStore store = new ValidationJobStore(this.ttlMinutes, this.maxJobs,
+                this.retryAfterSeconds);
+        ScheduledExecutorService evictor = environment.lifecycle()
+                .scheduledExecutorService("validation-job-evictor").build(); //$NON-NLS-1$
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                store.evictExpired();
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+        return store;
+    }
+}
@@ -0,0 +1,67 @@
+package org.verapdf.rest.app;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.verapdf.rest.validation.ValidationLimits;
+import org.verapdf.rest.validation.ValidationLimits.Mode;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the limits each validation mode places on what's collected
+ * and reported, read from the {@code validationLimits} section of the
+ * configuration YAML file. Requests select a mode, these values cap what any
+ * request can ask for.
+ */
+public class ValidationLimitsConfiguration {
+    /** Mode used by requests that don't select one: passfail, rules, default or full */
+    @NotNull
+    @JsonProperty
+    public String defaultMode = "default"; //$NON-NLS-1$
+
+    /** Failed checks reported for each rule in the default mode */
+    @Min(1)
+    @JsonProperty
+    public int failedChecksPerRule = 100;
+
+    /** Failed checks reported for each rule in the full mode, the most any request gets */
+    @Min(1)
+    @JsonProperty
+    public int maxFailedChecksPerRule = 1000;
+
+    /** Failed checks after which any validation stops, -1 for no limit */
+    @Min(-1)
+    @JsonProperty
+    public int maxFailedChecks = ValidationLimits.UNLIMITED;
+
+    /** Whether the full mode records passed checks as well as failed ones */
+    @JsonProperty
+    public boolean allowPassedChecks = true;
+
+    /**
+     * @return the configured default {@link Mode}
+     * @throws IllegalArgumentException
+     *             if the default mode isn't a known mode
+     */
+    public Mode getDefaultMode() {
+        return Mode.fromName(this.defaultMode);
+    }
+
+    /**
+     * @return the {@link ValidationLimits} of every mode
+     */
+    public Map<Mode, ValidationLimits> build() {
+        Map<Mode, ValidationLimits> limits = new EnumMap<>(Mode.class);
+        limits.put(Mode.PASSFAIL, new ValidationLimits(Mode.PASSFAIL, false, 1, 1));
+        limits.put(Mode.RULES, new ValidationLimits(Mode.RULES, false, this.maxFailedChecks, 1));
+        limits.put(Mode.DEFAULT, new ValidationLimits(Mode.DEFAULT, false, this.maxFailedChecks,
+                Math.min(this.failedChecksPerRule, this.maxFailedChecksPerRule)));
+        limits.put(Mode.FULL, new ValidationLimits(Mode.FULL, this.allowPassedChecks, this.maxFailedChecks,
+                this.maxFailedChecksPerRule));
+        return limits;
+    }
+}
@@ -0,0 +1,52 @@
+package org.verapdf.rest.app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import org.verapdf.rest.validation.ValidationExecutor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serves the {@link org.verapdf.rest.validation.ValidationQueueStatus} of the
+ * validation workers as JSON on the admin port: each running validation with
+ * its id, document, flavour, length, stage and elapsed time, the number of
+ * tasks queued, the workers' utilization and the number of rejected requests.
+ * A validation listed can be stopped with the {@link CancelValidationTask}.
+ */
+public class ValidationQueueServlet extends HttpServlet {
+    /** The admin path the servlet is mapped to */
+    public static final String PATH = "/validations"; //$NON-NLS-1$
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ValidationExecutor executor;
+    private final transient ObjectMapper mapper;
+
+    /**
+     * @param executor
+     *            the {@link ValidationExecutor} whose workers are reported
+     * @param mapper
+     *            the {@link ObjectMapper} the status is written with
+     */
+    public ValidationQueueServlet(final ValidationExecutor executor, final ObjectMapper mapper) {
+        this.executor = executor;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON);
+        response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store"); //$NON-NLS-1$ //$NON-NLS-2$
+        try (OutputStream output = response.getOutputStream()) {
+            this.mapper.writerWithDefaultPrettyPrinter().writeValue(output, this.executor.getStatus());
+        }
+    }
+}
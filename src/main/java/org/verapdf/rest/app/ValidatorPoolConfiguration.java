@@ -0,0 +1,36 @@
+package org.verapdf.rest.app;
+
+import javax.validation.constraints.Min;
+
+import org.verapdf.rest.validation.ValidatorPool;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for the reuse of validators, read from the
+ * {@code validators} section of the configuration YAML file.
+ */
+public class ValidatorPoolConfiguration {
+    /** Unused validators kept for each mode and flavour, 0 creates a validator for every validation */
+    @Min(0)
+    @JsonProperty
+    public int maxIdlePerFlavour = 2;
+
+    /**
+     * Create the validator pool and register its metrics.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @param limits
+     *            the {@link ValidationLimitsConfiguration} of the validation
+     *            modes
+     * @return a new {@link ValidatorPool}
+     */
+    public ValidatorPool build(final Environment environment, final ValidationLimitsConfiguration limits) {
+        ValidatorPool pool = new ValidatorPool(limits.build(), limits.getDefaultMode(), this.maxIdlePerFlavour);
+        pool.registerMetrics(environment.metrics());
+        return pool;
+    }
+}
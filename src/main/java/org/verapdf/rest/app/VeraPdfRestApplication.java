@@ -8,9 +8,19 @@ import javax.servlet.FilterRegistration;
 import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 import io.federecio.dropwizard.swagger.SwaggerBundle;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
+import org.verapdf.pdfa.VeraGreenfieldFoundryProvider;
 import org.verapdf.rest.resources.ApiResource;
 import org.verapdf.rest.resources.HomePageResource;
+import org.verapdf.rest.resources.ResultSerialisationTimer;
 import org.verapdf.rest.resources.ValidationExceptionMapper;
+import org.verapdf.rest.validation.FileDiscovery;
+import org.verapdf.rest.validation.ManifestStore;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationJobStore;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
 
 import com.yunspace.dropwizard.xml.XmlBundle;
 
@@ -68,13 +78,30 @@ public class VeraPdfRestApplication extends Application<VeraPdfRestConfiguration
     @Override
     public void run(VeraPdfRestConfiguration configuration,
             Environment environment) throws Exception {
+        // Registered before the warm-up and the resources use the foundry
+        VeraGreenfieldFoundryProvider.initialise();
+        // Validations run on their own bounded pool, not the Jetty threads
+        final ValidationExecutor validationExecutor = configuration.validationExecutor.build(environment);
+        final ValidatorPool validatorPool = configuration.validators.build(environment,
+                configuration.validationLimits);
+        // Warmed up on the pool at startup, readiness is reported once it's done
+        configuration.warmUp.build(environment, validationExecutor, validatorPool);
+        final ValidationJobStore jobStore = configuration.validationJobs.build(environment);
+        final ValidationResultCache resultCache = configuration.resultCache.build(environment);
+        final UploadSpool uploadSpool = configuration.uploads.build(environment);
+        final FileDiscovery fileDiscovery = configuration.fileDiscovery.build(environment);
+        final ManifestStore manifestStore = configuration.manifests.build(environment);
+        // Timers for each stage of a validation, tagged by flavour and size in their names
+        final ValidationStages validationStages = new ValidationStages(environment.metrics());
         // Create & register our REST resources
-        final ApiResource restApi = new ApiResource();
+        final ApiResource restApi = new ApiResource(validationExecutor, validatorPool, jobStore, resultCache,
+                uploadSpool, fileDiscovery, manifestStore, environment.getObjectMapper(), validationStages);
         final HomePageResource homePageResource = new HomePageResource();
         final ValidationExceptionMapper vem = new ValidationExceptionMapper();
         environment.jersey().register(restApi);
         environment.jersey().register(homePageResource);
         environment.jersey().register(vem);
+        environment.jersey().register(new ResultSerialisationTimer(validationStages));
         // Set up cross domain REST
         setupCORS(environment);
     }
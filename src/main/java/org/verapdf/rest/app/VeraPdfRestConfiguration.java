@@ -2,6 +2,9 @@ package org.verapdf.rest.app;
 
 import io.dropwizard.Configuration;
 
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 
@@ -16,4 +19,49 @@ import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 public class VeraPdfRestConfiguration extends Configuration {
     @JsonProperty("swagger")
     public SwaggerBundleConfiguration swaggerBundleConfiguration;
+
+    @Valid
+    @NotNull
+    @JsonProperty("validationExecutor")
+    public ValidationExecutorConfiguration validationExecutor = new ValidationExecutorConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("validators")
+    public ValidatorPoolConfiguration validators = new ValidatorPoolConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("validationLimits")
+    public ValidationLimitsConfiguration validationLimits = new ValidationLimitsConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("validationJobs")
+    public ValidationJobConfiguration validationJobs = new ValidationJobConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("resultCache")
+    public ResultCacheConfiguration resultCache = new ResultCacheConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("uploads")
+    public UploadSpoolConfiguration uploads = new UploadSpoolConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("fileDiscovery")
+    public FileDiscoveryConfiguration fileDiscovery = new FileDiscoveryConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("manifests")
+    public ManifestConfiguration manifests = new ManifestConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("warmUp")
+    public WarmUpConfiguration warmUp = new WarmUpConfiguration();
 }
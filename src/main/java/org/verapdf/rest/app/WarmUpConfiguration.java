@@ -0,0 +1,70 @@
+package org.verapdf.rest.app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidatorPool;
+import org.verapdf.rest.validation.WarmUp;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Configuration for the validation warm-up at startup, read from the
+ * {@code warmUp} section of the configuration YAML file.
+ */
+public class WarmUpConfiguration {
+    /** Validate a sample against every profile before reporting ready */
+    @JsonProperty
+    public boolean enabled = true;
+
+    /** Paths of PDF files validated against every profile as well as the bundled sample */
+    @NotNull
+    @JsonProperty
+    public List<String> samples = new ArrayList<>();
+
+    /**
+     * Register the warm-up to start with the server and the readiness health
+     * check that waits for it.
+     *
+     * @param environment
+     *            the Dropwizard {@link Environment}
+     * @param executor
+     *            the {@link ValidationExecutor} the warm-up runs on
+     * @param validators
+     *            the {@link ValidatorPool} the warmed up validators are kept in
+     * @return a new {@link WarmUp}
+     */
+    public WarmUp build(final Environment environment, final ValidationExecutor executor,
+                        final ValidatorPool validators) {
+        List<File> sampleFiles = new ArrayList<>();
+        for (String sample : this.samples) {
+            sampleFiles.add(new File(sample));
+        }
+        final WarmUp warmUp = new WarmUp(executor, validators, sampleFiles);
+        final boolean warm = this.enabled;
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+                if (warm) {
+                    warmUp.start();
+                } else {
+                    warmUp.skip();
+                }
+            }
+
+            @Override
+            public void stop() {
+                // The warm-up task is stopped with the validation pool
+            }
+        });
+        environment.healthChecks().register("readiness", new ReadinessHealthCheck(warmUp)); //$NON-NLS-1$
+        return warmUp;
+    }
+}
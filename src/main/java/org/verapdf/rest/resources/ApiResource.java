@@ -7,8 +7,18 @@ import javax.ws.rs.core.MediaType;
 
 import org.verapdf.rest.environment.Environment;
 import org.verapdf.rest.environment.Environments;
+import org.verapdf.rest.validation.FileDiscovery;
+import org.verapdf.rest.validation.ManifestStore;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationJobStore;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
 import io.swagger.annotations.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * API wrapper resource, provides routing for child API resources.
  * 
@@ -18,6 +28,59 @@ import io.swagger.annotations.*;
 @Api(value="/api")
 @Path("/api")
 public final class ApiResource {
+    private final ValidationExecutor validationExecutor;
+    private final ValidatorPool validatorPool;
+    private final ValidationJobStore jobStore;
+    private final ValidationResultCache resultCache;
+    private final UploadSpool uploadSpool;
+    private final FileDiscovery fileDiscovery;
+    private final ManifestStore manifestStore;
+    private final ObjectMapper objectMapper;
+    private final ValidationStages validationStages;
+
+    /**
+     * @param validationExecutor
+     *            the {@link ValidationExecutor} that validation requests are
+     *            run on
+     * @param validatorPool
+     *            the {@link ValidatorPool} of reusable validators and
+     *            processor configurations
+     * @param jobStore
+     *            the {@link ValidationJobStore} holding asynchronous validation
+     *            jobs
+     * @param resultCache
+     *            the {@link ValidationResultCache} of previous validation
+     *            results
+     * @param uploadSpool
+     *            the {@link UploadSpool} that uploaded PDFs are read into
+     * @param fileDiscovery
+     *            the {@link FileDiscovery} that finds the files of directory
+     *            validations
+     * @param manifestStore
+     *            the {@link ManifestStore} holding the manifests of
+     *            incremental directory validations
+     * @param objectMapper
+     *            the application's {@link ObjectMapper}, used for results
+     *            that are streamed rather than returned as entities
+     * @param validationStages
+     *            the {@link ValidationStages} that time each stage of a
+     *            validation
+     */
+    public ApiResource(final ValidationExecutor validationExecutor, final ValidatorPool validatorPool,
+                       final ValidationJobStore jobStore, final ValidationResultCache resultCache,
+                       final UploadSpool uploadSpool, final FileDiscovery fileDiscovery,
+                       final ManifestStore manifestStore, final ObjectMapper objectMapper,
+                       final ValidationStages validationStages) {
+        this.validationExecutor = validationExecutor;
+        this.validatorPool = validatorPool;
+        this.jobStore = jobStore;
+        this.resultCache = resultCache;
+        this.uploadSpool = uploadSpool;
+        this.fileDiscovery = fileDiscovery;
+        this.manifestStore = manifestStore;
+        this.objectMapper = objectMapper;
+        this.validationStages = validationStages;
+    }
 
     /**
      * @return the server environment information as a {@link org.verapdf.rest.environment.Environment}.
@@ -42,11 +105,30 @@ public final class ApiResource {
      * @return a new {@link org.verapdf.rest.resources.ValidateResource}
      */
     @Path("/validate")
-    public static ValidateResource getValidateResource() {
-        return new ValidateResource();
+    public ValidateResource getValidateResource() {
+        return new ValidateResource(this.validationExecutor, this.validatorPool, this.resultCache, this.uploadSpool,
+                this.fileDiscovery, this.manifestStore, this.objectMapper, this.validationStages);
     }
 
 
+    /**
+     * @return a new {@link org.verapdf.rest.resources.BatchResource}
+     */
+    @Path("/batch")
+    public BatchResource getBatchResource() {
+        return new BatchResource(this.validationExecutor, this.validatorPool, this.resultCache, this.uploadSpool,
+                this.objectMapper, this.validationStages);
+    }
+
+    /**
+     * @return a new {@link org.verapdf.rest.resources.JobResource}
+     */
+    @Path("/jobs")
+    public JobResource getJobResource() {
+        return new JobResource(this.validationExecutor, this.validatorPool, this.jobStore, this.resultCache,
+                this.uploadSpool, this.validationStages);
+    }
+
     /**
      * @return a new {@link ByteStreamResource}
      */
@@ -0,0 +1,561 @@
+package org.verapdf.rest.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import io.swagger.annotations.ApiOperation;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.rest.validation.BatchItemResult;
+import org.verapdf.rest.validation.BatchUploadReport;
+import org.verapdf.rest.validation.NdjsonBatchHandler;
+import org.verapdf.rest.validation.SpooledUpload;
+import org.verapdf.rest.validation.UploadEntries;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationDeadline;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationLimits;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Batch validation services. Many PDFs are uploaded in a single request, as
+ * the {@code file} parts of a multipart form or as a ZIP archive, and
+ * validated in parallel on the validation pool, saving a round trip per
+ * document when ingesting many small files.
+ * <p>
+ * The documents are read one at a time, each is spooled and handed to a
+ * worker before the next is read. At most
+ * {@link ValidationExecutor#getBatchWorkers()} documents are held waiting for
+ * or being validated at once, so reading the upload keeps pace with the
+ * workers rather than filling the spool. Each document is validated, and its
+ * result cached, as if it had been uploaded on its own.
+ */
+public class BatchResource {
+	/** The ZIP archive media type */
+	public static final String ZIP_MEDIA_TYPE = "application/zip"; //$NON-NLS-1$
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchResource.class);
+	private static final long POLL_MILLIS = 250;
+	private static final byte NEWLINE = '\n';
+	private static final Map<DigestAlgorithm, String> NO_DIGESTS = Collections.emptyMap();
+
+	private final ValidationExecutor executor;
+	private final ValidatorPool validators;
+	private final ValidationResultCache cache;
+	private final UploadSpool spool;
+	private final ObjectMapper mapper;
+	private final ValidationStages stages;
+
+	BatchResource(final ValidationExecutor executor, final ValidatorPool validators,
+				  final ValidationResultCache cache, final UploadSpool spool, final ObjectMapper mapper,
+				  final ValidationStages stages) {
+		this.executor = executor;
+		this.validators = validators;
+		this.cache = cache;
+		this.spool = spool;
+		this.mapper = mapper;
+		this.stages = stages;
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the batch may take, at most the server's batch
+	 *            timeout, documents not validated in time are left out
+	 * @param parts
+	 *            the {@code file} parts of the form, one per PDF to be validated
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the batch is cancelled if the client disconnects
+	 * @return the {@link org.verapdf.rest.validation.BatchUploadReport} of every
+	 *         uploaded file
+	 * @throws IOException
+	 *             if the upload can't be read
+	 */
+	@POST
+	@ApiOperation(	value = "Upload and validate many PDF files in one request",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Send each PDF as a file part",
+					response = BatchUploadReport.class)
+	@Path("/{profileId}")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces({ MediaType.APPLICATION_JSON })
+	public BatchUploadReport validateParts(@PathParam("profileId") final String profileId,
+										   @QueryParam("mode") final String mode,
+										   @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+										   @FormDataParam("file") final List<FormDataBodyPart> parts,
+										   @Context final HttpServletRequest request)
+			throws IOException {
+
+		LOGGER.info("Received a multipart batch of {} files for profileId: {}",
+				Integer.valueOf((parts == null) ? 0 : parts.size()), profileId);
+		return report(profileId, mode, timeoutSeconds, new PartEntries(requiredParts(parts)), request);
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the batch may take, at most the server's batch
+	 *            timeout, documents not validated in time are left out
+	 * @param parts
+	 *            the {@code file} parts of the form, one per PDF to be validated
+	 * @return a {@link javax.ws.rs.core.StreamingOutput} that writes a line of JSON for each file as
+	 * 		   soon as it's validated, in the order validations complete, followed by a batch summary line
+	 */
+	@POST
+	@ApiOperation(	value = "Upload and validate many PDF files in one request",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Send each PDF as a file part, "
+							+ "each file's result is streamed as a line of JSON as soon as it's validated")
+	@Path("/{profileId}")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces({ NdjsonBatchHandler.MEDIA_TYPE })
+	public StreamingOutput validatePartsNdjson(@PathParam("profileId") final String profileId,
+											   @QueryParam("mode") final String mode,
+											   @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+											   @FormDataParam("file") final List<FormDataBodyPart> parts) {
+
+		LOGGER.info("Received a multipart NDJSON batch of {} files for profileId: {}",
+				Integer.valueOf((parts == null) ? 0 : parts.size()), profileId);
+		return stream(profileId, mode, timeoutSeconds, new PartEntries(requiredParts(parts)));
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the batch may take, at most the server's batch
+	 *            timeout, documents not validated in time are left out
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the batch is cancelled if the client disconnects
+	 * @param archive
+	 *            an {@link java.io.InputStream} of a ZIP archive of the PDFs to be
+	 *            validated
+	 * @return the {@link org.verapdf.rest.validation.BatchUploadReport} of every
+	 *         file in the archive
+	 * @throws IOException
+	 *             if the archive can't be read
+	 */
+	@POST
+	@ApiOperation(	value = "Upload and validate a ZIP archive of PDF files",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. The archive is read as it arrives",
+					response = BatchUploadReport.class)
+	@Path("/{profileId}")
+	@Consumes(ZIP_MEDIA_TYPE)
+	@Produces({ MediaType.APPLICATION_JSON })
+	public BatchUploadReport validateZip(@PathParam("profileId") final String profileId,
+										 @QueryParam("mode") final String mode,
+										 @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+										 @Context final HttpServletRequest request,
+										 InputStream archive)
+			throws IOException {
+
+		LOGGER.info("Received a ZIP batch for profileId: {}", profileId);
+		return report(profileId, mode, timeoutSeconds, new UploadEntries.ZipEntries(archive), request);
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the batch may take, at most the server's batch
+	 *            timeout, documents not validated in time are left out
+	 * @param archive
+	 *            an {@link java.io.InputStream} of a ZIP archive of the PDFs to be
+	 *            validated
+	 * @return a {@link javax.ws.rs.core.StreamingOutput} that writes a line of JSON for each file as
+	 * 		   soon as it's validated, in the order validations complete, followed by a batch summary line
+	 */
+	@POST
+	@ApiOperation(	value = "Upload and validate a ZIP archive of PDF files",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. The archive is read as it arrives, "
+							+ "each file's result is streamed as a line of JSON as soon as it's validated")
+	@Path("/{profileId}")
+	@Consumes(ZIP_MEDIA_TYPE)
+	@Produces({ NdjsonBatchHandler.MEDIA_TYPE })
+	public StreamingOutput validateZipNdjson(@PathParam("profileId") final String profileId,
+											 @QueryParam("mode") final String mode,
+											 @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+											 final InputStream archive) {
+
+		LOGGER.info("Received a ZIP NDJSON batch for profileId: {}", profileId);
+		return stream(profileId, mode, timeoutSeconds, new UploadEntries.ZipEntries(archive));
+	}
+
+	private BatchUploadReport report(String profileId, String mode, Long timeoutSeconds, UploadEntries entries,
+									 HttpServletRequest request)
+			throws IOException {
+		ValidateResource.checkProfileId(profileId);
+		ValidationLimits limits = ValidateResource.requestedLimits(this.validators, mode);
+		ValidationDeadline deadline = ValidateResource.requestedBatchDeadline(this.executor, timeoutSeconds);
+		final List<BatchItemResult> items = new ArrayList<>();
+		BatchUploadReport.Summary summary = validate(profileId, limits, deadline, JettyClientConnection.of(request),
+				entries, new ItemListener() {
+					@Override
+					public void itemValidated(BatchItemResult item) {
+						items.add(item);
+					}
+				});
+		return new BatchUploadReport(items, summary);
+	}
+
+	/*
+	The results are written while the upload is still being read, a client has to read the response as
+	it sends the upload, as curl does, or the two will wait on each other once the buffers fill. A
+	client that goes away is noticed when its next line can't be written.
+	 */
+	private StreamingOutput stream(final String profileId, String mode, Long timeoutSeconds,
+								   final UploadEntries entries) {
+		ValidateResource.checkProfileId(profileId);
+		final ValidationLimits limits = ValidateResource.requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = ValidateResource.requestedBatchDeadline(this.executor, timeoutSeconds);
+		return new StreamingOutput() {
+			@Override
+			public void write(final OutputStream output) throws IOException {
+				BatchUploadReport.Summary summary = validate(profileId, limits, deadline, null, entries,
+						new ItemListener() {
+							@Override
+							public void itemValidated(BatchItemResult item) throws IOException {
+								writeLine(output, item);
+							}
+						});
+				Map<String, Object> line = new LinkedHashMap<>();
+				line.put("batchSummary", summary); //$NON-NLS-1$
+				writeLine(output, line);
+			}
+		};
+	}
+
+	private void writeLine(final OutputStream output, final Object line) throws IOException {
+		output.write(this.mapper.writeValueAsBytes(line));
+		output.write(NEWLINE);
+		output.flush();
+	}
+
+	private BatchUploadReport.Summary validate(final String profileId, final ValidationLimits limits,
+											   final ValidationDeadline deadline,
+											   final ValidationExecutor.ClientConnection connection,
+											   final UploadEntries entries, final ItemListener listener)
+			throws IOException {
+		long start = System.nanoTime();
+		int slots = Math.max(1, this.executor.getBatchWorkers());
+		// A document holds its slot until its result is passed on, which bounds the results waiting
+		Semaphore inFlight = new Semaphore(slots);
+		BlockingQueue<BatchItemResult> results = new LinkedBlockingQueue<>();
+		Tally tally = new Tally(listener, deadline);
+		boolean exhausted = false;
+		int read = 0;
+		try (UploadEntries toValidate = entries) {
+			while (acquire(inFlight, results, tally, deadline, connection)) {
+				UploadEntries.Entry entry = toValidate.next();
+				if (entry == null) {
+					if (read == 0) {
+						// A body that isn't a ZIP archive at all reads as an archive without entries
+						throw new BadRequestException(
+								"The upload holds no files, it isn't a ZIP archive or the archive is empty."); //$NON-NLS-1$
+					}
+					inFlight.release();
+					exhausted = true;
+					break;
+				}
+				read++;
+				submit(profileId, limits, deadline, entry, inFlight, results, tally);
+			}
+		} catch (ZipException excep) {
+			deadline.cancel("The upload isn't a valid ZIP archive."); //$NON-NLS-1$
+			LOGGER.debug("Invalid ZIP archive in a batch upload", excep);
+			throw new BadRequestException("The upload isn't a valid ZIP archive: " + excep.getMessage()); //$NON-NLS-1$
+		} catch (IOException | RuntimeException excep) {
+			// The queued documents are failed straight away rather than validated for nobody
+			deadline.cancel("The upload couldn't be read."); //$NON-NLS-1$
+			throw excep;
+		}
+		await(inFlight, slots, results, tally, deadline, connection);
+
+		String stoppedReason = exhausted ? null : deadline.getReason();
+		if (stoppedReason != null) {
+			LOGGER.warn("Batch upload stopped before its end: {}", stoppedReason);
+		}
+		tally.failIfUnwritten();
+		return tally.summarise(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), stoppedReason);
+	}
+
+	/*
+	Each document is spooled on the request thread, the spool's size limits apply to every document
+	on its own. A document the spool rejects, or that the full validation queue can't take, is
+	reported as failed and the rest of the batch carries on. The pool's tasks only queue their
+	results, they're passed on, and written to the client, by the request thread.
+	 */
+	private void submit(final String profileId, final ValidationLimits limits, final ValidationDeadline deadline,
+						final UploadEntries.Entry entry, final Semaphore inFlight,
+						final BlockingQueue<BatchItemResult> results, final Tally tally)
+			throws IOException {
+		final String name = entry.getName();
+		final SpooledUpload upload;
+		try {
+			upload = this.spool.spool(entry.getStream());
+		} catch (WebApplicationException excep) {
+			inFlight.release();
+			tally.add(BatchItemResult.failed(name, null, errorMessage(excep)));
+			return;
+		}
+
+		final Callable<ValidationResult> validation = deadline.bind(new Callable<ValidationResult>() {
+			@Override
+			public ValidationResult call() throws Exception {
+				return ValidateResource.validate(profileId, NO_DIGESTS, upload, BatchResource.this.validators,
+						limits, BatchResource.this.cache, BatchResource.this.stages);
+			}
+		});
+		try {
+			this.executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					BatchItemResult item = null;
+					try {
+						item = BatchItemResult.validated(name, upload, validation.call());
+					} catch (Exception excep) {
+						LOGGER.debug("Couldn't validate {} of a batch upload", name, excep);
+						item = BatchItemResult.failed(name, upload, errorMessage(excep));
+					} finally {
+						upload.close();
+						// The request thread waits for every document's result
+						results.add((item != null) ? item
+								: BatchItemResult.failed(name, upload, "The document couldn't be validated.")); //$NON-NLS-1$
+					}
+					return null;
+				}
+			});
+		} catch (ServiceUnavailableException excep) {
+			upload.close();
+			inFlight.release();
+			tally.add(BatchItemResult.failed(name, upload, errorMessage(excep)));
+		}
+	}
+
+	/*
+	Wait for a free slot, passing on the results of the documents that complete meanwhile, giving up
+	once the deadline has passed or the client has gone.
+	 */
+	private static boolean acquire(Semaphore inFlight, BlockingQueue<BatchItemResult> results, Tally tally,
+								   ValidationDeadline deadline, ValidationExecutor.ClientConnection connection)
+			throws InterruptedIOException {
+		try {
+			while (!deadline.isExpired()) {
+				if (inFlight.tryAcquire()) {
+					return true;
+				}
+				passOn(inFlight, results, tally, deadline, connection);
+			}
+			return false;
+		} catch (InterruptedException excep) {
+			deadline.cancel("Interrupted while reading the batch."); //$NON-NLS-1$
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading the batch"); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	The tasks report their own results and failures, so only the results are waited for, until every
+	slot is free. A task left after the deadline fails straight away when it runs.
+	 */
+	private static void await(Semaphore inFlight, int slots, BlockingQueue<BatchItemResult> results, Tally tally,
+							  ValidationDeadline deadline, ValidationExecutor.ClientConnection connection)
+			throws InterruptedIOException {
+		try {
+			while (inFlight.availablePermits() < slots) {
+				passOn(inFlight, results, tally, deadline, connection);
+			}
+		} catch (InterruptedException excep) {
+			deadline.cancel("Interrupted while waiting for the batch to complete."); //$NON-NLS-1$
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the batch to complete"); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	Wait a while for a document's result and pass it to the tally, freeing the document's slot.
+	 */
+	private static void passOn(Semaphore inFlight, BlockingQueue<BatchItemResult> results, Tally tally,
+							   ValidationDeadline deadline, ValidationExecutor.ClientConnection connection)
+			throws InterruptedException {
+		BatchItemResult item = results.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+		if (item == null) {
+			checkConnection(deadline, connection);
+			return;
+		}
+		tally.add(item);
+		inFlight.release();
+	}
+
+	private static void checkConnection(ValidationDeadline deadline, ValidationExecutor.ClientConnection connection) {
+		if (connection != null && !connection.isOpen()) {
+			LOGGER.info("Client disconnected, batch upload cancelled");
+			deadline.cancel("The client disconnected."); //$NON-NLS-1$
+		}
+	}
+
+	private static List<FormDataBodyPart> requiredParts(List<FormDataBodyPart> parts) {
+		if (parts == null || parts.isEmpty()) {
+			throw new BadRequestException("At least one file part is required"); //$NON-NLS-1$
+		}
+		return parts;
+	}
+
+	private static String errorMessage(Exception excep) {
+		if (excep instanceof WebApplicationException) {
+			Object entity = ((WebApplicationException) excep).getResponse().getEntity();
+			if (entity != null) {
+				return entity.toString();
+			}
+		}
+		return excep.getMessage();
+	}
+
+	/*
+	Receives each document's result as soon as it's known, on the request thread.
+	 */
+	private interface ItemListener {
+		void itemValidated(BatchItemResult item) throws IOException;
+	}
+
+	/*
+	Counts the batch's outcomes and passes each result to the listener, only used by the request
+	thread. Once the listener fails, the client is assumed gone and the rest of the batch is cancelled.
+	 */
+	private static final class Tally {
+		private final ItemListener listener;
+		private final ValidationDeadline deadline;
+		private int items = 0;
+		private int compliant = 0;
+		private int nonCompliant = 0;
+		private int failed = 0;
+		private IOException listenerFailure = null;
+
+		Tally(final ItemListener listener, final ValidationDeadline deadline) {
+			this.listener = listener;
+			this.deadline = deadline;
+		}
+
+		void add(final BatchItemResult item) {
+			this.items++;
+			if (item.getValidationResult() == null) {
+				this.failed++;
+			} else if (item.isCompliant()) {
+				this.compliant++;
+			} else {
+				this.nonCompliant++;
+			}
+			if (this.listenerFailure != null) {
+				return;
+			}
+			try {
+				this.listener.itemValidated(item);
+			} catch (IOException excep) {
+				LOGGER.debug("Couldn't write a batch upload result", excep);
+				this.listenerFailure = excep;
+				this.deadline.cancel("The client disconnected."); //$NON-NLS-1$
+			}
+		}
+
+		void failIfUnwritten() throws IOException {
+			if (this.listenerFailure != null) {
+				throw this.listenerFailure;
+			}
+		}
+
+		BatchUploadReport.Summary summarise(final long elapsedMs, final String stoppedReason) {
+			return new BatchUploadReport.Summary(this.items, this.compliant, this.nonCompliant, this.failed,
+					elapsedMs, stoppedReason);
+		}
+	}
+
+	/*
+	The file parts of a multipart form, Jersey has already read the whole form, holding large parts
+	in temp files, before the resource method is called.
+	 */
+	private static final class PartEntries implements UploadEntries {
+		private final Iterator<FormDataBodyPart> parts;
+		private int index = 0;
+		private InputStream current = null;
+
+		PartEntries(final List<FormDataBodyPart> parts) {
+			this.parts = parts.iterator();
+		}
+
+		@Override
+		public Entry next() throws IOException {
+			close();
+			if (!this.parts.hasNext()) {
+				return null;
+			}
+			FormDataBodyPart part = this.parts.next();
+			this.index++;
+			String name = (part.getContentDisposition() != null) ? part.getContentDisposition().getFileName()
+					: null;
+			this.current = part.getValueAs(InputStream.class);
+			return new Entry((name != null) ? name : "file-" + this.index, this.current); //$NON-NLS-1$
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.current != null) {
+				this.current.close();
+				this.current = null;
+			}
+		}
+	}
+}
@@ -2,18 +2,24 @@ package org.verapdf.rest.resources;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.Set;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import io.swagger.annotations.ApiOperation;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.openpreservation.bytestreams.ByteStreamId;
 import org.openpreservation.bytestreams.ByteStreams;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -25,6 +31,8 @@ import org.openpreservation.bytestreams.ByteStreams;
  */
 
 public class ByteStreamResource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ByteStreamResource.class);
+
     /**
      * Default public constructor required by Jersey / Dropwizard
      */
@@ -37,39 +45,51 @@ public class ByteStreamResource {
      *            InputStream for the uploaded file
      * @param contentDispositionHeader
      *            extra info about the uploaded file, currently unused.
+     * @param digests
+     *            comma separated names of digests to calculate as well as
+     *            SHA-1, e.g. SHA-256,MD5, may be null
      * @return the {@link org.openpreservation.bytestreams.ByteStreamId} of
      *         the uploaded file's byte stream serialised according to requested
      *         content type.
      */
     @POST
-    @ApiOperation(value = "Calculate sha-1 of an uploaded file", response = ByteStreamId.class)
+    @ApiOperation(value = "Calculate sha-1 of an uploaded file",
+                  notes = "Optional digests: MD5, SHA-256",
+                  response = ByteStreamId.class)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML,
             MediaType.TEXT_XML })
     public static ByteStreamId getSha1(
             @FormDataParam("file") InputStream uploadedInputStream,
-            @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader) {
-            return calculateSha1(uploadedInputStream);
+            @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader,
+            @QueryParam("digests") final String digests) {
+            return calculateId(uploadedInputStream, parseDigests(digests));
     }
 
     /**
-     * @param inFile
-     *            byte[] of the incoming file
+     * @param inStream
+     *            InputStream of the incoming file
      * @param httpHeaders
      *          the {@link javax.ws.rs.core.Context} with {@link javax.ws.rs.core.HttpHeaders}
+     * @param digests
+     *            comma separated names of digests to calculate as well as
+     *            SHA-1, e.g. SHA-256,MD5, may be null
      * @return the {@link org.openpreservation.bytestreams.ByteStreamId} of
      *         the uploaded file's byte stream serialised according to requested
      *         content type.
      */
     @PUT
-    @ApiOperation(value = "Calculate sha-1 of an uploaded file", response = ByteStreamId.class)
+    @ApiOperation(value = "Calculate sha-1 of an uploaded file",
+                  notes = "Optional digests: MD5, SHA-256",
+                  response = ByteStreamId.class)
     @Consumes(MediaType.WILDCARD)
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML,
             MediaType.TEXT_XML })
     public static ByteStreamId getSha1Put(
            @Context HttpHeaders httpHeaders,
-           byte [] inFile) {
-        return calculateSha1(new ByteArrayInputStream(inFile));
+           @QueryParam("digests") final String digests,
+           InputStream inStream) {
+        return calculateId(inStream, parseDigests(digests));
     }
 
 
@@ -88,15 +108,45 @@ public class ByteStreamResource {
     }
 
 
-    private static ByteStreamId calculateSha1(InputStream uploadedInputStream) {
-        try {
-            ByteStreamId id = ByteStreams.idFromStream(uploadedInputStream);
-            uploadedInputStream.close();
-            return id;
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Parse a comma separated list of digest algorithm names.
+     *
+     * @param digests
+     *            the comma separated names, e.g. SHA-256,MD5, may be null
+     * @return the set of requested {@link DigestAlgorithm}s, empty if
+     *         digests is null or empty
+     * @throws BadRequestException
+     *             if a name isn't a supported digest algorithm
+     */
+    static Set<DigestAlgorithm> parseDigests(final String digests) {
+        Set<DigestAlgorithm> algorithms = EnumSet.noneOf(DigestAlgorithm.class);
+        if (digests == null || digests.trim().isEmpty()) {
+            return algorithms;
+        }
+        for (String name : digests.split(",")) { //$NON-NLS-1$
+            try {
+                algorithms.add(DigestAlgorithm.fromName(name));
+            } catch (IllegalArgumentException excep) {
+                throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+                        .entity(name.trim() + " is not a supported digest algorithm.").build(), excep); //$NON-NLS-1$
+            }
+        }
+        return algorithms;
+    }
+
+    /*
+     * An upload that can't be read to its end, usually because the client
+     * went away, fails the request rather than answering with the id of an
+     * empty stream.
+     */
+    private static ByteStreamId calculateId(InputStream uploadedInputStream, Set<DigestAlgorithm> algorithms) {
+        try (InputStream toHash = uploadedInputStream) {
+            return ByteStreams.idFromStream(toHash, algorithms);
+        } catch (IOException excep) {
+            LOGGER.warn("IOException reading the uploaded file", excep);
+            throw new WebApplicationException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+                    .entity("The uploaded file couldn't be read.").build(), excep); //$NON-NLS-1$
         }
-        return ByteStreams.nullByteStreamId();
     }
 
 }
@@ -0,0 +1,74 @@
+package org.verapdf.rest.resources;
+
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+
+import org.verapdf.rest.validation.DiscoveryOptions;
+
+import io.swagger.annotations.ApiParam;
+
+/**
+ * The query parameters that select the files a directory validation
+ * processes, and whether files that haven't changed since the last
+ * incremental validation are validated again, gathered with
+ * {@link javax.ws.rs.BeanParam}.
+ */
+public class FileDiscoveryParams {
+    @ApiParam(value = "How symbolic links are treated: ignore, files (follow links to files only) or follow")
+    @QueryParam("symlinks")
+    @DefaultValue("files")
+    private String symlinks;
+
+    @ApiParam(value = "Directory levels to search, 1 searches only the given directory")
+    @QueryParam("maxDepth")
+    @DefaultValue("2147483647")
+    private int maxDepth;
+
+    @ApiParam(value = "Size in bytes of the smallest file processed")
+    @QueryParam("minBytes")
+    @DefaultValue("0")
+    private long minBytes;
+
+    @ApiParam(value = "Size in bytes of the largest file processed")
+    @QueryParam("maxBytes")
+    @DefaultValue("9223372036854775807")
+    private long maxBytes;
+
+    @ApiParam(value = "Globs a file must match one of, names unless the glob contains a /, defaults to *.pdf*")
+    @QueryParam("include")
+    private List<String> includes;
+
+    @ApiParam(value = "Globs that exclude matching files and directories")
+    @QueryParam("exclude")
+    private List<String> excludes;
+
+    @ApiParam(value = "Only validate files that are new or have changed since the last incremental validation "
+            + "of the directory, reusing the recorded results of the rest")
+    @QueryParam("incremental")
+    @DefaultValue("false")
+    private boolean incremental;
+
+    /**
+     * @return true if the directory should be validated incrementally
+     */
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+
+    /**
+     * @return the {@link DiscoveryOptions} the parameters describe
+     * @throws BadRequestException
+     *             if a parameter is invalid
+     */
+    public DiscoveryOptions toOptions() {
+        try {
+            return new DiscoveryOptions(DiscoveryOptions.LinkPolicy.fromName(this.symlinks), this.maxDepth,
+                    this.minBytes, this.maxBytes, this.includes, this.excludes);
+        } catch (IllegalArgumentException excep) {
+            throw new BadRequestException(excep.getMessage(), excep);
+        }
+    }
+}
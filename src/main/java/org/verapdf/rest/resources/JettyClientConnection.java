@@ -0,0 +1,41 @@
+package org.verapdf.rest.resources;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Request;
+import org.verapdf.rest.validation.ValidationExecutor;
+
+/**
+ * The connection of the client that made a request, read from the Jetty
+ * {@link EndPoint} behind the servlet request.
+ * <p>
+ * This is best effort, Jetty only notices that a client has gone once it
+ * next reads from or writes to the connection, and a request that didn't come
+ * through Jetty is always reported as connected.
+ */
+final class JettyClientConnection implements ValidationExecutor.ClientConnection {
+	private final EndPoint endPoint;
+
+	private JettyClientConnection(final EndPoint endPoint) {
+		this.endPoint = endPoint;
+	}
+
+	/**
+	 * @param request
+	 *            the {@link HttpServletRequest} made by the client
+	 * @return the {@link ValidationExecutor.ClientConnection} of the client
+	 */
+	static ValidationExecutor.ClientConnection of(final HttpServletRequest request) {
+		Request baseRequest = (request == null) ? null : Request.getBaseRequest(request);
+		if (baseRequest == null || baseRequest.getHttpChannel() == null) {
+			return new JettyClientConnection(null);
+		}
+		return new JettyClientConnection(baseRequest.getHttpChannel().getEndPoint());
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.endPoint == null || this.endPoint.isOpen();
+	}
+}
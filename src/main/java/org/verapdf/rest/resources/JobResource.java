@@ -0,0 +1,242 @@
+package org.verapdf.rest.resources;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import io.swagger.annotations.ApiOperation;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
+import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.rest.validation.SpooledUpload;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationDeadline;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationJob;
+import org.verapdf.rest.validation.ValidationJobStore;
+import org.verapdf.rest.validation.ValidationLimits;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
+
+/**
+ * Asynchronous validation services. A PDF is uploaded and queued for
+ * validation, the caller receives a job id straight away and polls the job
+ * for its status, collecting the result once the job has completed.
+ */
+public class JobResource {
+	private static final Logger LOGGER = LoggerFactory.getLogger(JobResource.class);
+
+	private final ValidationExecutor executor;
+	private final ValidatorPool validators;
+	private final ValidationJobStore jobStore;
+	private final ValidationResultCache cache;
+	private final UploadSpool spool;
+	private final ValidationStages stages;
+
+	JobResource(final ValidationExecutor executor, final ValidatorPool validators,
+				final ValidationJobStore jobStore, final ValidationResultCache cache, final UploadSpool spool,
+				final ValidationStages stages) {
+		this.executor = executor;
+		this.validators = validators;
+		this.jobStore = jobStore;
+		this.cache = cache;
+		this.spool = spool;
+		this.stages = stages;
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param sha1Hex
+	 *            the hex String representation of the file's SHA-1 hash
+	 * @param sha256Hex
+	 *            the hex String representation of the file's SHA-256 hash
+	 * @param md5Hex
+	 *            the hex String representation of the file's MD5 hash
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the validation may take once the job starts,
+	 *            at most the server's timeout, which is used if not given
+	 * @param uploadedInputStream
+	 *            a {@link java.io.InputStream} to the PDF to be validated
+	 * @param contentDispositionHeader
+	 * 			  the {@link org.glassfish.jersey.media.multipart.FormDataContentDisposition}
+	 * @param uriInfo
+	 *            the {@link javax.ws.rs.core.UriInfo} of this request
+	 * @return a 202 Accepted response with the new job's status and its
+	 *         location
+	 * @throws VeraPDFException
+	 * 			  if the uploaded file can't be saved for validation
+	 */
+	@POST
+	@ApiOperation(	value = "Upload a PDF file and queue it for validation",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u",
+					response = ValidationJob.class)
+	@Path("/validate/{profileId}")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public Response submitValidation(@PathParam("profileId") final String profileId,
+									 @FormDataParam("sha1Hex") final String sha1Hex,
+									 @FormDataParam("sha256Hex") final String sha256Hex,
+									 @FormDataParam("md5Hex") final String md5Hex,
+									 @QueryParam("mode") final String mode,
+									 @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+									 @FormDataParam("file") InputStream uploadedInputStream,
+									 @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader,
+									 @Context UriInfo uriInfo)
+			throws VeraPDFException {
+
+		LOGGER.info("Received a validation job for profileId: {} with sha1Hex: {}", profileId, sha1Hex);
+		ValidateResource.checkProfileId(profileId);
+		final Map<DigestAlgorithm, String> digests = ValidateResource.suppliedDigests(sha1Hex, sha256Hex, md5Hex);
+		final ValidationLimits limits = ValidateResource.requestedLimits(this.validators, mode);
+		final long budgetSeconds = ValidateResource.requestedDeadline(this.executor, timeoutSeconds)
+				.getBudgetSeconds();
+		// Take the job's slot first so a full store doesn't spool the upload
+		this.jobStore.reserve();
+		final SpooledUpload upload;
+		try {
+			upload = ValidateResource.spoolUpload(uploadedInputStream, this.spool, digests.keySet());
+		} catch (VeraPDFException | RuntimeException excep) {
+			this.jobStore.release();
+			throw excep;
+		}
+		final ValidationJob job = this.jobStore.create(profileId);
+
+		// The upload is released however the task ends, including when
+		// the job is removed before a worker picks it up
+		FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				// A job's time in the queue doesn't count against its deadline
+				final ValidationDeadline deadline = ValidationDeadline.after(budgetSeconds);
+				job.setDeadline(deadline);
+				return deadline.bind(new Callable<Void>() {
+					@Override
+					public Void call() {
+						runJob(job, profileId, digests, upload, JobResource.this.validators, limits,
+								JobResource.this.cache, JobResource.this.stages);
+						return null;
+					}
+				}).call();
+			}
+		}) {
+			@Override
+			protected void done() {
+				upload.close();
+			}
+		};
+		// An accepted job waits in the executor's backlog rather than being
+		// turned away by the pool's queue, the job store bounds the backlog
+		job.setFuture(this.executor.enqueue(task));
+
+		LOGGER.debug("Queued validation job {}", job.getId());
+		URI location = uriInfo.getBaseUriBuilder().path(ApiResource.class).path("jobs").path(job.getId()).build(); //$NON-NLS-1$
+		return Response.accepted(job).location(location).build();
+	}
+
+	/**
+	 * @param jobId
+	 *            the id of the job
+	 * @return the {@link ValidationJob} describing the job's status
+	 */
+	@GET
+	@ApiOperation(	value = "Get the status of a validation job",
+					response = ValidationJob.class)
+	@Path("/{jobId}")
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ValidationJob getJob(@PathParam("jobId") String jobId) {
+		return findJob(jobId);
+	}
+
+	/**
+	 * @param jobId
+	 *            the id of the job
+	 * @return the {@link org.verapdf.pdfa.results.ValidationResult} of a
+	 *         completed job
+	 */
+	@GET
+	@ApiOperation(	value = "Get the validation result of a completed job",
+					notes = "Returns 409 Conflict if the job is still queued or running, or has failed",
+					response = ValidationResult.class)
+	@Path("/{jobId}/result")
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ValidationResult getJobResult(@PathParam("jobId") String jobId) {
+		ValidationJob job = findJob(jobId);
+		if (job.getStatus() != ValidationJob.Status.COMPLETED) {
+			String message = "Job " + jobId + " is " + job.getStatus() //$NON-NLS-1$ //$NON-NLS-2$
+					+ ((job.getMessage() != null) ? ": " + job.getMessage() : ""); //$NON-NLS-1$ //$NON-NLS-2$
+			throw new WebApplicationException(Response.status(Status.CONFLICT)
+					.type(MediaType.TEXT_PLAIN).entity(message).build());
+		}
+		return job.getResult();
+	}
+
+	/**
+	 * @param jobId
+	 *            the id of the job
+	 * @return the {@link ValidationJob} that was removed, cancelled if it
+	 *         hadn't finished
+	 */
+	@DELETE
+	@ApiOperation(	value = "Remove a validation job, cancelling it if it's still queued or running",
+					response = ValidationJob.class)
+	@Path("/{jobId}")
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ValidationJob deleteJob(@PathParam("jobId") String jobId) {
+		ValidationJob job = this.jobStore.remove(jobId);
+		if (job == null) {
+			throw new NotFoundException("No validation job with id " + jobId); //$NON-NLS-1$
+		}
+		LOGGER.debug("Removed validation job {}", jobId);
+		return job;
+	}
+
+	private ValidationJob findJob(String jobId) {
+		ValidationJob job = this.jobStore.get(jobId);
+		if (job == null) {
+			throw new NotFoundException("No validation job with id " + jobId); //$NON-NLS-1$
+		}
+		return job;
+	}
+
+	private static void runJob(ValidationJob job, String profileId, Map<DigestAlgorithm, String> digests,
+							   SpooledUpload upload, ValidatorPool validators, ValidationLimits limits,
+							   ValidationResultCache cache, ValidationStages stages) {
+		job.start();
+		LOGGER.trace("Starting validation job {}", job.getId());
+		try {
+			job.complete(ValidateResource.validate(profileId, digests, upload, validators, limits, cache, stages));
+			LOGGER.trace("Validation job {} completed", job.getId());
+		} catch (VeraPDFException | RuntimeException excep) {
+			LOGGER.error("Validation job {} failed", job.getId(), excep);
+			job.fail(excep.getMessage());
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.verapdf.rest.resources;
+
+import java.io.IOException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.rest.validation.ValidationStages;
+
+/**
+ * Times the writing of validation results to the response, as JSON or XML,
+ * recording the time against the result's flavour and, if the resource noted
+ * it, the length of the validated document. Other entities are written
+ * untimed.
+ */
+@Provider
+public final class ResultSerialisationTimer implements WriterInterceptor {
+	private final ValidationStages stages;
+
+	/**
+	 * @param stages
+	 *            the {@link ValidationStages} the serialisation time is
+	 *            recorded with
+	 */
+	public ResultSerialisationTimer(final ValidationStages stages) {
+		this.stages = stages;
+	}
+
+	@Override
+	public void aroundWriteTo(final WriterInterceptorContext context) throws IOException, WebApplicationException {
+		if (!(context.getEntity() instanceof ValidationResult)) {
+			context.proceed();
+			return;
+		}
+		ValidationResult result = (ValidationResult) context.getEntity();
+		Object length = context.getProperty(ValidationStages.DOCUMENT_LENGTH_PROPERTY);
+		long start = System.nanoTime();
+		context.proceed();
+		this.stages.record(ValidationStages.Stage.SERIALISE, result.getPDFAFlavour(),
+				(length instanceof Long) ? ((Long) length).longValue() : -1L, System.nanoTime() - start);
+	}
+}
@@ -1,68 +1,74 @@
 package org.verapdf.rest.resources;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileFilter;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.ApiOperation;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
-
-import java.nio.file.Files;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.Paths;
-import java.nio.file.FileVisitResult;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+
 import java.util.Collections;
-import java.util.EnumSet;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.transform.TransformerException;
 
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.io.IOUtils;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.openpreservation.bytestreams.ByteStreams;
+import org.openpreservation.bytestreams.DigestAlgorithm;
 import org.verapdf.core.ModelParsingException;
 import org.verapdf.core.VeraPDFException;
 import org.verapdf.core.EncryptedPdfException;
-import org.verapdf.features.FeatureFactory;
-import org.verapdf.metadata.fixer.FixerFactory;
 import org.verapdf.pdfa.Foundries;
 import org.verapdf.pdfa.PDFAParser;
 import org.verapdf.pdfa.PDFAValidator;
 import org.verapdf.pdfa.VeraGreenfieldFoundryProvider;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.results.ValidationResult;
-import org.verapdf.features.FeatureExtractorConfig;
-import org.verapdf.metadata.fixer.MetadataFixerConfig;
-import org.verapdf.pdfa.validation.validators.ValidatorConfig;
-import org.verapdf.pdfa.validation.validators.ValidatorFactory;
+import org.verapdf.processor.BatchProcessingHandler;
 import org.verapdf.processor.BatchProcessor;
 import org.verapdf.processor.FormatOption;
 import org.verapdf.processor.ProcessorConfig;
 import org.verapdf.processor.ProcessorFactory;
-import org.verapdf.processor.TaskType;
-import org.verapdf.processor.plugins.PluginsCollectionConfig;
 import org.verapdf.processor.reports.BatchSummary;
 import org.verapdf.report.HTMLReport;
+import org.verapdf.rest.validation.ComplianceCheck;
+import org.verapdf.rest.validation.DiscoveryOptions;
+import org.verapdf.rest.validation.FileDiscovery;
+import org.verapdf.rest.validation.InFlightValidations;
+import org.verapdf.rest.validation.ManifestStore;
+import org.verapdf.rest.validation.NdjsonBatchHandler;
+import org.verapdf.rest.validation.ParallelBatchProcessor;
+import org.verapdf.rest.validation.ValidationDeadline;
+import org.verapdf.rest.validation.ValidationExecutor;
+import org.verapdf.rest.validation.ValidationLimits;
+import org.verapdf.rest.validation.SpooledUpload;
+import org.verapdf.rest.validation.UploadSpool;
+import org.verapdf.rest.validation.ValidationManifest;
+import org.verapdf.rest.validation.ValidationResultCache;
+import org.verapdf.rest.validation.ValidationStages;
+import org.verapdf.rest.validation.ValidatorPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,30 +80,84 @@ import org.slf4j.LoggerFactory;
 
 @Timed
 public class ValidateResource {
-	// java.security.digest name for the SHA-1 algorithm
-	private static final String SHA1_NAME = "SHA-1"; //$NON-NLS-1$
 	private static final String AUTODETECT_PROFILE = "auto"; //$NON-NLS-1$
 	private static final String WIKI_URL_BASE = "https://github.com/veraPDF/veraPDF-validation-profiles/wiki/"; //$NON-NLS-1$
-	private static final Boolean LOG_SUCCESS_CHECKS = false;
-	private static final int MAX_FAILED_CHECKS_PER_RULE = 100;
-	private static final Boolean VERBOSE_OUTPUT = false;
-	private static final String TEMP_FILE_PREFIX = "veraPDF-cache-"; //$NON-NLS-1$
-	private static final String TEMP_FILE_SUFFIX = ".pdf";
 	private static final Logger LOGGER = LoggerFactory.getLogger(ValidateResource.class);
 	static {
 		VeraGreenfieldFoundryProvider.initialise();
 	}
 
+	private final ValidationExecutor executor;
+	private final ValidatorPool validators;
+	private final ValidationResultCache cache;
+	private final UploadSpool spool;
+	private final FileDiscovery discovery;
+	private final ManifestStore manifests;
+	private final ObjectMapper mapper;
+	private final ValidationStages stages;
+
+	/**
+	 * @param executor
+	 *            the {@link org.verapdf.rest.validation.ValidationExecutor} that
+	 *            validations are submitted to
+	 * @param validators
+	 *            the {@link org.verapdf.rest.validation.ValidatorPool} of
+	 *            reusable validators and processor configurations
+	 * @param cache
+	 *            the {@link org.verapdf.rest.validation.ValidationResultCache}
+	 *            of previous validation results
+	 * @param spool
+	 *            the {@link org.verapdf.rest.validation.UploadSpool} that uploads
+	 *            are read into
+	 * @param discovery
+	 *            the {@link org.verapdf.rest.validation.FileDiscovery} that
+	 *            finds the files of directory validations
+	 * @param manifests
+	 *            the {@link org.verapdf.rest.validation.ManifestStore} holding
+	 *            the manifests of incremental directory validations
+	 * @param mapper
+	 *            the {@link com.fasterxml.jackson.databind.ObjectMapper} used
+	 *            to write streamed JSON results
+	 * @param stages
+	 *            the {@link org.verapdf.rest.validation.ValidationStages} that
+	 *            time each stage of a validation
+	 */
+	ValidateResource(final ValidationExecutor executor, final ValidatorPool validators,
+					 final ValidationResultCache cache, final UploadSpool spool, final FileDiscovery discovery,
+					 final ManifestStore manifests, final ObjectMapper mapper, final ValidationStages stages) {
+		this.executor = executor;
+		this.validators = validators;
+		this.cache = cache;
+		this.spool = spool;
+		this.discovery = discovery;
+		this.manifests = manifests;
+		this.mapper = mapper;
+		this.stages = stages;
+	}
+
 	/**
 	 * @param profileId
 	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
 	 *            3b, 3a, or 3u)
 	 * @param sha1Hex
 	 *            the hex String representation of the file's SHA-1 hash
+	 * @param sha256Hex
+	 *            the hex String representation of the file's SHA-256 hash
+	 * @param md5Hex
+	 *            the hex String representation of the file's MD5 hash
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the validation may take, at most the server's
+	 *            timeout, which is used if not given
 	 * @param uploadedInputStream
 	 *            a {@link java.io.InputStream} to the PDF to be validated
 	 * @param contentDispositionHeader
 	 * 			  the {@link org.glassfish.jersey.media.multipart.FormDataContentDisposition}
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
 	 * @return the {@link org.verapdf.pdfa.results.ValidationResult} obtained
 	 *         when validating the uploaded stream against the selected profile.
 	 * @throws VeraPDFException
@@ -110,21 +170,164 @@ public class ValidateResource {
 	@Path("/{profileId}")
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
-	public static ValidationResult validatePost(@PathParam("profileId") String profileId,
-			                                    @FormDataParam("sha1Hex") String sha1Hex,
-                                                @FormDataParam("file") InputStream uploadedInputStream,
-			                                    @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader)
+	public ValidationResult validatePost(@PathParam("profileId") final String profileId,
+			                             @FormDataParam("sha1Hex") final String sha1Hex,
+			                             @FormDataParam("sha256Hex") final String sha256Hex,
+			                             @FormDataParam("md5Hex") final String md5Hex,
+			                             @QueryParam("mode") final String mode,
+			                             @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+                                         @FormDataParam("file") final InputStream uploadedInputStream,
+			                             @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader,
+			                             @Context final HttpServletRequest request)
             throws VeraPDFException {
 
 		LOGGER.info("Received a POST validate request for profileId: {} with sha1Hex: {}", profileId, sha1Hex);
-	    return validate(profileId, sha1Hex, uploadedInputStream);
+		checkProfileId(profileId);
+		final Map<DigestAlgorithm, String> digests = suppliedDigests(sha1Hex, sha256Hex, md5Hex);
+		final ValidationLimits limits = requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = requestedDeadline(this.executor, timeoutSeconds);
+		final ValidationExecutor.Reservation reservation = this.executor.reserve();
+		final SpooledUpload upload = spoolUpload(uploadedInputStream, this.spool, digests.keySet(), reservation);
+		noteDocumentLength(request, upload);
+		return this.executor.execute(reservation, new Callable<ValidationResult>() {
+			@Override
+			public ValidationResult call() throws VeraPDFException {
+				return validate(profileId, digests, upload, ValidateResource.this.validators, limits,
+						ValidateResource.this.cache, ValidateResource.this.stages);
+			}
+		}, deadline, JettyClientConnection.of(request));
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param sha1Hex
+	 *            the hex String representation of the file's SHA-1 hash
+	 * @param mode
+	 *            the validation mode the file was validated with, the
+	 *            server's default if not given
+	 * @return the cached {@link org.verapdf.pdfa.results.ValidationResult} for
+	 *         a file with the given SHA-1 validated against the selected profile,
+	 *         a 404 if the server doesn't hold one.
+	 */
+	@GET
+	@ApiOperation(	value = "Get a cached validation result by the SHA-1 of a previously validated file",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Returns 404 if no result is cached, "
+							+ "upload the file for validation in that case.",
+					response = ValidationResult.class)
+	@Path("/{profileId}/by-sha1/{sha1Hex}")
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ValidationResult getCachedResult(@PathParam("profileId") String profileId,
+											@PathParam("sha1Hex") String sha1Hex,
+											@QueryParam("mode") String mode) {
+
+		LOGGER.info("Received a cached result request for profileId: {} with sha1Hex: {}", profileId, sha1Hex);
+		ValidationResult result = this.cache.getResult(cacheKey(profileId, sha1Hex, mode));
+		if (result == null) {
+			throw new NotFoundException("No cached validation result for " + sha1Hex); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param sha1Hex
+	 *            the hex String representation of the file's SHA-1 hash
+	 * @param mode
+	 *            the validation mode the file was validated with, the
+	 *            server's default if not given
+	 * @return an {@link java.io.InputStream} of the cached HTML validation report
+	 *         for a file with the given SHA-1, a 404 if the server doesn't hold one.
+	 */
+	@GET
+	@ApiOperation(	value = "Get a cached HTML validation report by the SHA-1 of a previously validated file",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Returns 404 if no report is cached.")
+	@Path("/{profileId}/by-sha1/{sha1Hex}")
+	@Produces({ MediaType.TEXT_HTML })
+	public InputStream getCachedHtmlReport(@PathParam("profileId") String profileId,
+										   @PathParam("sha1Hex") String sha1Hex,
+										   @QueryParam("mode") String mode) {
+
+		LOGGER.info("Received a cached HTML report request for profileId: {} with sha1Hex: {}", profileId, sha1Hex);
+		byte[] report = this.cache.getHtmlReport(cacheKey(profileId, sha1Hex, mode));
+		if (report == null) {
+			throw new NotFoundException("No cached validation report for " + sha1Hex); //$NON-NLS-1$
+		}
+		return new ByteArrayInputStream(report);
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param sha1Hex
+	 *            the hex String representation of the file's SHA-1 hash
+	 * @param mode
+	 *            the validation mode the file was validated with, the
+	 *            server's default if not given
+	 * @param headers
+	 *            the {@link javax.ws.rs.core.HttpHeaders} context of this request,
+	 *            whose Accept header selects the representation checked
+	 * @return a 200 response if a GET with the same Accept header would return a
+	 *         cached HTML report, or a cached validation result, for a file with
+	 *         the given SHA-1, a 404 otherwise.
+	 */
+	@HEAD
+	@ApiOperation(	value = "Check whether a validation result is cached for the SHA-1 of a file",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Checks for the HTML report if "
+							+ "text/html is preferred by the Accept header, for the result otherwise.")
+	@Path("/{profileId}/by-sha1/{sha1Hex}")
+	public Response headCachedResult(@PathParam("profileId") String profileId,
+									 @PathParam("sha1Hex") String sha1Hex,
+									 @QueryParam("mode") String mode,
+									 @Context HttpHeaders headers) {
+
+		ValidationResultCache.Key key = cacheKey(profileId, sha1Hex, mode);
+		boolean html = prefersHtml(headers.getAcceptableMediaTypes());
+		boolean cached = html ? this.cache.getHtmlReport(key) != null : this.cache.getResult(key) != null;
+		LOGGER.debug("HEAD for cached {} with key {}, cached: {}", html ? "report" : "result", key, //$NON-NLS-1$ //$NON-NLS-2$
+				Boolean.valueOf(cached));
+		return Response.status(cached ? Status.OK : Status.NOT_FOUND).build();
+	}
 
+	/**
+	 * Whether a GET for a cached result would be answered with the HTML report,
+	 * that is whether text/html is acceptable before JSON or XML. The types are
+	 * in preference order, a wildcard is answered with the result.
+	 */
+	private static boolean prefersHtml(List<MediaType> acceptable) {
+		for (MediaType type : acceptable) {
+			if (type.isWildcardType() || type.isWildcardSubtype()) {
+				return false;
+			}
+			if (type.isCompatible(MediaType.TEXT_HTML_TYPE)) {
+				return true;
+			}
+			if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE) || type.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+				return false;
+			}
+		}
+		return false;
 	}
 
 	/**
 	 * @param directoryPath
 	 * 			  the String of a path on the local disk with PDFs to validate
-	 * @return an {@link java.io.InputStream} of HTML with validation report results
+	 * @param discoveryParams
+	 * 			  the {@link FileDiscoveryParams} selecting the files in the directory that are validated
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the directory validation may take, at most the
+	 *            server's batch timeout, files not validated in time are left out
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
+	 * @return a {@link javax.ws.rs.core.StreamingOutput} that writes HTML with validation report results
 	 * @throws VeraPDFException
 	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
 	 */
@@ -133,21 +336,141 @@ public class ValidateResource {
 					notes = "Recursively finds PDF files in the specified path and performs auto-detect validation")
 	@Path("/processFiles")
 	@Produces({ MediaType.TEXT_HTML })
-	public static InputStream processFilesGet(@QueryParam("directoryPath") String directoryPath)
+	public StreamingOutput processFilesGet(@QueryParam("directoryPath") String directoryPath,
+										   @BeanParam FileDiscoveryParams discoveryParams,
+										   @QueryParam("mode") String mode,
+										   @QueryParam("timeoutSeconds") Long timeoutSeconds,
+										   @Context HttpServletRequest request)
 			throws VeraPDFException {
 
 		LOGGER.info("Received a GET processFiles request with directoryPath: {}", directoryPath);
-		return validateFilePath(directoryPath);
+		return processFilesCreateHtmlReport(directoryPath, discoveryOptions(directoryPath, discoveryParams),
+				discoveryParams.isIncremental(), requestedLimits(this.validators, mode),
+				requestedBatchDeadline(this.executor, timeoutSeconds), JettyClientConnection.of(request));
+	}
+
+	/**
+	 * @param directoryPath
+	 * 			  the String of a path on the local disk with PDFs to validate
+	 * @param discoveryParams
+	 * 			  the {@link FileDiscoveryParams} selecting the files in the directory that are validated
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the directory validation may take, at most the
+	 *            server's batch timeout, files not validated in time are left out
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
+	 * @return a {@link javax.ws.rs.core.StreamingOutput} that writes the machine readable XML report,
+	 * 		   each file's result is written as soon as it's validated
+	 * @throws VeraPDFException
+	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
+	 */
+	@GET
+	@ApiOperation(	value = "Validate a single file or directory of files on the local disk",
+					notes = "Recursively finds PDF files in the specified path and performs auto-detect validation, "
+							+ "the XML report is streamed as the files are validated")
+	@Path("/processFiles")
+	@Produces({ MediaType.APPLICATION_XML })
+	public StreamingOutput processFilesXml(@QueryParam("directoryPath") final String directoryPath,
+										   @BeanParam final FileDiscoveryParams discoveryParams,
+										   @QueryParam("mode") final String mode,
+										   @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+										   @Context final HttpServletRequest request) {
+
+		LOGGER.info("Received a GET processFiles XML request with directoryPath: {}", directoryPath);
+		final DiscoveryOptions options = discoveryOptions(directoryPath, discoveryParams);
+		final boolean incremental = discoveryParams.isIncremental();
+		final ValidationLimits limits = requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = requestedBatchDeadline(this.executor, timeoutSeconds);
+		final ValidationExecutor.ClientConnection connection = JettyClientConnection.of(request);
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException {
+				try {
+					// The directory is only walked once the response is being written
+					BatchSummary summary = processDirectory(directoryPath, options, incremental, limits,
+							deadline, connection, reportHandler(output, limits));
+					createVerifyEventInCTS(directoryPath, summary);
+				} catch (VeraPDFException exception) {
+					LOGGER.error("An exception occurred while streaming the XML report", exception);
+					throw new WebApplicationException(exception);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param directoryPath
+	 * 			  the String of a path on the local disk with PDFs to validate
+	 * @param discoveryParams
+	 * 			  the {@link FileDiscoveryParams} selecting the files in the directory that are validated
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the directory validation may take, at most the
+	 *            server's batch timeout, files not validated in time are left out
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
+	 * @return a {@link javax.ws.rs.core.StreamingOutput} that writes a line of JSON for each file as soon
+	 * 		   as it's validated, in the order validations complete, followed by a batch summary line
+	 * @throws VeraPDFException
+	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
+	 */
+	@GET
+	@ApiOperation(	value = "Validate a single file or directory of files on the local disk",
+					notes = "Recursively finds PDF files in the specified path and performs auto-detect validation, "
+							+ "each file's result is streamed as a line of JSON as soon as it's validated")
+	@Path("/processFiles")
+	@Produces({ NdjsonBatchHandler.MEDIA_TYPE })
+	public StreamingOutput processFilesNdjson(@QueryParam("directoryPath") final String directoryPath,
+											  @BeanParam final FileDiscoveryParams discoveryParams,
+											  @QueryParam("mode") final String mode,
+											  @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+											  @Context final HttpServletRequest request) {
+
+		LOGGER.info("Received a GET processFiles NDJSON request with directoryPath: {}", directoryPath);
+		final DiscoveryOptions options = discoveryOptions(directoryPath, discoveryParams);
+		final boolean incremental = discoveryParams.isIncremental();
+		final ValidationLimits limits = requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = requestedBatchDeadline(this.executor, timeoutSeconds);
+		final ValidationExecutor.ClientConnection connection = JettyClientConnection.of(request);
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException {
+				try {
+					BatchSummary summary = processDirectory(directoryPath, options, incremental, limits,
+							deadline, connection, new NdjsonBatchHandler(ValidateResource.this.mapper, output));
+					createVerifyEventInCTS(directoryPath, summary);
+				} catch (VeraPDFException exception) {
+					LOGGER.error("An exception occurred while streaming NDJSON results", exception);
+					throw new WebApplicationException(exception);
+				}
+			}
+		};
 	}
 
 	/**
 	 * @param profileId
 	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
 	 *            3b, 3a, or 3u)
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the validation may take, at most the server's
+	 *            timeout, which is used if not given
 	 * @param headers
 	 *         the {@link javax.ws.rs.core.HttpHeaders} context of this request
-	 * @param inFile
-	 *            byte array of the PDF to be validated
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
+	 * @param inStream
+	 *            an {@link java.io.InputStream} of the PDF to be validated
 	 * @return the {@link org.verapdf.pdfa.results.ValidationResult} obtained
 	 *         when validating the uploaded stream against the selected profile.
 	 * @throws VeraPDFException
@@ -160,16 +483,29 @@ public class ValidateResource {
 	@Path("/{profileId}")
 	@Consumes( MediaType.WILDCARD)
 	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
-	public static ValidationResult validatePut(@PathParam("profileId") String profileId,
-											   @Context HttpHeaders headers,
-											   byte[] inFile)
+	public ValidationResult validatePut(@PathParam("profileId") final String profileId,
+										@QueryParam("mode") final String mode,
+										@QueryParam("timeoutSeconds") final Long timeoutSeconds,
+										@Context HttpHeaders headers,
+										@Context final HttpServletRequest request,
+										InputStream inStream)
 			throws VeraPDFException {
 
 		LOGGER.info("Received a PUT validate request for profileId: {}", profileId);
-		InputStream fileInputStream = new ByteArrayInputStream(inFile);
-
-		return validate(profileId, null, fileInputStream);
-
+		checkProfileId(profileId);
+		final Map<DigestAlgorithm, String> digests = Collections.emptyMap();
+		final ValidationLimits limits = requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = requestedDeadline(this.executor, timeoutSeconds);
+		final ValidationExecutor.Reservation reservation = this.executor.reserve();
+		final SpooledUpload upload = spoolUpload(inStream, this.spool, digests.keySet(), reservation);
+		noteDocumentLength(request, upload);
+		return this.executor.execute(reservation, new Callable<ValidationResult>() {
+			@Override
+			public ValidationResult call() throws VeraPDFException {
+				return validate(profileId, digests, upload, ValidateResource.this.validators, limits,
+						ValidateResource.this.cache, ValidateResource.this.stages);
+			}
+		}, deadline, JettyClientConnection.of(request));
 	}
 
 	/**
@@ -178,10 +514,19 @@ public class ValidateResource {
 	 *            3b, 3a, or 3u)
 	 * @param sha1Hex
 	 *            the hex String representation of the file's SHA-1 hash
+	 * @param mode
+	 *            the validation mode (passfail, rules, default or full), the
+	 *            server's default if not given
+	 * @param timeoutSeconds
+	 *            the most seconds the validation may take, at most the server's
+	 *            timeout, which is used if not given
 	 * @param uploadedInputStream
 	 *            a {@link java.io.InputStream} to the PDF to be validated
 	 * @param contentDispositionHeader
 	 * 			  the {@link org.glassfish.jersey.media.multipart.FormDataContentDisposition}
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the validation is cancelled if the client disconnects
 	 * @return an {@link java.io.InputStream} of HTML with validation report results
 	 * @throws VeraPDFException
 	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
@@ -192,85 +537,264 @@ public class ValidateResource {
 	@Path("/{profileId}")
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	@Produces({ MediaType.TEXT_HTML })
-	public static InputStream validateHtml(@PathParam("profileId") String profileId,
-                                           @FormDataParam("sha1Hex") String sha1Hex,
-                                           @FormDataParam("file") InputStream uploadedInputStream,
-                                           @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader)
-                                                throws VeraPDFException {
-
-		File file;
-		List<File> files;
-		FileInputStream flavourDetectStream;
-		PDFAFlavour flavour;
+	public InputStream validateHtml(@PathParam("profileId") final String profileId,
+                                    @FormDataParam("sha1Hex") String sha1Hex,
+                                    @QueryParam("mode") final String mode,
+                                    @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+                                    @FormDataParam("file") final InputStream uploadedInputStream,
+                                    @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader,
+                                    @Context final HttpServletRequest request)
+                                         throws VeraPDFException {
 
 		LOGGER.info("Received a POST validate HTML request with profileId:{} sha1Hex: {}", profileId, sha1Hex);
+		checkProfileId(profileId);
+		final ValidationLimits limits = requestedLimits(this.validators, mode);
+		final ValidationDeadline deadline = requestedDeadline(this.executor, timeoutSeconds);
+		final ValidationExecutor.Reservation reservation = this.executor.reserve();
+		final SpooledUpload upload = spoolUpload(uploadedInputStream, this.spool,
+				Collections.<DigestAlgorithm>emptySet(), reservation);
+		return this.executor.execute(reservation, new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws VeraPDFException {
+				return validateUploadCreateHtmlReport(profileId, upload, ValidateResource.this.validators,
+						limits, ValidateResource.this.cache, ValidateResource.this.stages);
+			}
+		}, deadline, JettyClientConnection.of(request));
+	}
 
-		LOGGER.trace("Saving uploaded file to temp file on local disk");
-		file = saveUploadedFileToTemp(uploadedInputStream);
-
-		if(!profileId.equals(AUTODETECT_PROFILE)) {
-			LOGGER.trace("ProfileId is not auto-detect");
-			flavour = PDFAFlavour.byFlavourId(profileId);
-		} else {
-			LOGGER.trace("Auto-detecting profile");
-			try {
-				flavourDetectStream = new FileInputStream(file);
-				flavour = detectFlavour(flavourDetectStream);
-				LOGGER.trace("Profile type {} was auto-detected", flavour.toString());
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param timeoutSeconds
+	 *            the most seconds the check may take, at most the server's
+	 *            timeout, which is used if not given
+	 * @param uploadedInputStream
+	 *            a {@link java.io.InputStream} to the PDF to be checked
+	 * @param contentDispositionHeader
+	 * 			  the {@link org.glassfish.jersey.media.multipart.FormDataContentDisposition}
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the check is cancelled if the client disconnects
+	 * @return the {@link org.verapdf.rest.validation.ComplianceCheck} saying whether the
+	 *         uploaded file complies with the selected profile and, if not, its first failure
+	 * @throws VeraPDFException
+	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
+	 */
+	@POST
+	@ApiOperation(	value = "Upload a PDF file and check whether it complies with a profile",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Validation stops at the first "
+							+ "failed check, only the outcome and that failure are returned",
+					response = ComplianceCheck.class)
+	@Path("/{profileId}/check")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ComplianceCheck checkPost(@PathParam("profileId") final String profileId,
+									 @QueryParam("timeoutSeconds") final Long timeoutSeconds,
+									 @FormDataParam("file") final InputStream uploadedInputStream,
+									 @FormDataParam("file") final FormDataContentDisposition contentDispositionHeader,
+									 @Context final HttpServletRequest request)
+			throws VeraPDFException {
+
+		LOGGER.info("Received a POST check request for profileId: {}", profileId);
+		return check(profileId, uploadedInputStream, requestedDeadline(this.executor, timeoutSeconds),
+				JettyClientConnection.of(request));
+	}
+
+	/**
+	 * @param profileId
+	 *            the String id of the Validation profile (auto, 1b, 1a, 2b, 2a, 2u,
+	 *            3b, 3a, or 3u)
+	 * @param timeoutSeconds
+	 *            the most seconds the check may take, at most the server's
+	 *            timeout, which is used if not given
+	 * @param request
+	 *            the {@link javax.servlet.http.HttpServletRequest}, watched so that
+	 *            the check is cancelled if the client disconnects
+	 * @param inStream
+	 *            an {@link java.io.InputStream} of the PDF to be checked
+	 * @return the {@link org.verapdf.rest.validation.ComplianceCheck} saying whether the
+	 *         uploaded file complies with the selected profile and, if not, its first failure
+	 * @throws VeraPDFException
+	 * 			  throws {@link org.verapdf.core.VeraPDFException} for any exception from core library
+	 */
+	@PUT
+	@ApiOperation(	value = "Upload a single file and check whether it complies with a profile",
+					notes = "Profile Ids: auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a, 3u. Validation stops at the first "
+							+ "failed check, only the outcome and that failure are returned",
+					response = ComplianceCheck.class)
+	@Path("/{profileId}/check")
+	@Consumes(MediaType.WILDCARD)
+	@Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	public ComplianceCheck checkPut(@PathParam("profileId") final String profileId,
+									@QueryParam("timeoutSeconds") final Long timeoutSeconds,
+									@Context final HttpServletRequest request,
+									InputStream inStream)
+			throws VeraPDFException {
+
+		LOGGER.info("Received a PUT check request for profileId: {}", profileId);
+		return check(profileId, inStream, requestedDeadline(this.executor, timeoutSeconds),
+				JettyClientConnection.of(request));
+	}
 
-			} catch(FileNotFoundException exception) {
-				LOGGER.error("Problem detecting profile from uploaded file", exception);
-				throw new VeraPDFException("Problem detecting profile from uploaded file", exception);
+	/*
+	A check is a validation in the pass/fail mode, which stops at the first failed check. Only the
+	outcome and that failure are needed, so the validator's result is summarised as it is, without
+	limiting or caching a full result that nothing would read.
+	 */
+	private ComplianceCheck check(final String profileId, InputStream uploadedInputStream,
+								  ValidationDeadline deadline, ValidationExecutor.ClientConnection connection)
+			throws VeraPDFException {
+		checkProfileId(profileId);
+		final Map<DigestAlgorithm, String> digests = Collections.emptyMap();
+		final ValidationLimits limits = this.validators.getLimits(ValidationLimits.Mode.PASSFAIL);
+		final ValidationExecutor.Reservation reservation = this.executor.reserve();
+		final SpooledUpload upload = spoolUpload(uploadedInputStream, this.spool, digests.keySet(), reservation);
+		return this.executor.execute(reservation, new Callable<ComplianceCheck>() {
+			@Override
+			public ComplianceCheck call() throws VeraPDFException {
+				long start = System.nanoTime();
+				ValidationResult result = validateUpload(profileId, digests, upload,
+						ValidateResource.this.validators, limits, ValidateResource.this.stages);
+				return ComplianceCheck.fromResult(result,
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 			}
+		}, deadline, connection);
+	}
+
+	private static InputStream validateUploadCreateHtmlReport(String profileId, SpooledUpload upload,
+															 ValidatorPool validators, ValidationLimits limits,
+															 ValidationResultCache cache, ValidationStages stages)
+			throws VeraPDFException {
+
+		File file;
+		List<File> files;
+		PDFAFlavour flavour = requestedFlavour(profileId);
+
+		stages.recordSpooling(flavour, upload);
+		ValidationResultCache.Key key = ValidationResultCache.key(upload.getSha1Hex(), flavour, limits.getMode());
+		byte[] cachedReport = cache.getHtmlReport(key);
+		if (cachedReport != null) {
+			LOGGER.debug("Returning cached HTML report for {}", key);
+			return new ByteArrayInputStream(cachedReport);
 		}
 
 		try {
-			uploadedInputStream.close();
-		} catch(IOException exception) {
-			LOGGER.error("An exception occurred reading the uploaded file", exception);
-			throw new VeraPDFException("An exception occurred reading the uploaded file", exception);
+			file = upload.getFile();
+		} catch (IOException exception) {
+			LOGGER.error("IOException writing to temp file", exception);
+			throw new VeraPDFException("IOException writing to temp file", exception); //$NON-NLS-1$
 		}
 
-
+		/*
+		For auto-detect the processor is configured with no flavour, it then detects the
+		flavour while parsing and validates with the same parser.
+		 */
 		files = Collections.singletonList(file);
+		InFlightValidations.describeCurrent(upload.getSha1Hex(), flavour, upload.getLength());
 
 		LOGGER.trace("Validating and preparing HTML report for {} files", files.size());
-		return processFilesCreateHtmlReport(null, files, flavour);
+		byte[] htmlBytes = createHtmlReport(files, flavour, upload.getLength(), validators, limits, stages);
+		// The batch processor reports a cancelled validation as a failed one, that mustn't be cached
+		ValidationDeadline.checkCurrent();
+		cache.putHtmlReport(key, htmlBytes);
+		return new ByteArrayInputStream(htmlBytes);
 	}
 
 	/*
-		Save the file which was uploaded through http(s) to a temp location on the local disk.
+		Read the file which was uploaded through http(s) to its end, calculating its sha-1 and any other
+		requested digests, holding it in memory or in a temp file on the local disk depending on its size.
 	 */
-	private static File saveUploadedFileToTemp(InputStream uploadedInputStream) throws VeraPDFException {
-		File file;
+	static SpooledUpload spoolUpload(InputStream uploadedInputStream, UploadSpool spool,
+									 Set<DigestAlgorithm> algorithms) throws VeraPDFException {
+		try (InputStream toSpool = uploadedInputStream) {
+			LOGGER.trace("Spooling the uploaded file");
+			return spool.spool(toSpool, algorithms);
+		} catch (IOException exception) {
+			LOGGER.error("IOException reading the uploaded file", exception);
+			throw new VeraPDFException("IOException reading the uploaded file", exception); //$NON-NLS-1$
+		}
+	}
 
+	/*
+		Spool an upload in the place reserved for its validation, which then holds the upload and closes it once
+		the validation leaves the pool. The place is given up if the upload can't be spooled.
+	 */
+	private static SpooledUpload spoolUpload(InputStream uploadedInputStream, UploadSpool spool,
+											 Set<DigestAlgorithm> algorithms, ValidationExecutor.Reservation reservation)
+			throws VeraPDFException {
 		try {
-			LOGGER.trace("Creating a temp file with prefix {} and suffix {}", TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
-			file = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
-		} catch (IOException exception) {
-			LOGGER.error("IOException creating a temp file", exception);
-			throw new VeraPDFException("IOException creating a temp file", exception); //$NON-NLS-1$
+			SpooledUpload upload = spoolUpload(uploadedInputStream, spool, algorithms);
+			reservation.hold(upload);
+			return upload;
+		} catch (VeraPDFException | RuntimeException excep) {
+			reservation.release();
+			throw excep;
 		}
+	}
+
+	/*
+	The machine readable XML of a directory's report is written to a file in the spool directory as
+	the files are validated. The HTML is then rendered from that file straight to the response, so
+	the report is never held in memory. The XML file is deleted once the response has been written.
+	Package-private for the benchmarks.
+	 */
+	StreamingOutput processFilesCreateHtmlReport(String directoryPath, DiscoveryOptions options,
+												 boolean incremental, final ValidationLimits limits,
+												 ValidationDeadline deadline,
+												 ValidationExecutor.ClientConnection connection)
+		throws VeraPDFException {
 
-		try (OutputStream fos = new FileOutputStream(file)) {
-			LOGGER.trace("Copying the uploadedInputStream to the newly created temp file with name {}",
-					file.getAbsoluteFile());
-			IOUtils.copy(uploadedInputStream, fos);
+		final BatchSummary summary;
+		final File xmlFile;
+		try {
+			xmlFile = this.spool.createReportFile();
 		} catch (IOException exception) {
-			LOGGER.error("IOException writing to temp file", exception);
-			throw new VeraPDFException("IOException writing to temp file", exception); //$NON-NLS-1$
+			LOGGER.error("IOException creating the report file", exception);
+			throw new VeraPDFException("IOException creating the report file", exception); //$NON-NLS-1$
 		}
 
-		return file;
+		LOGGER.trace("Processing files to create an HTML report");
+		try (OutputStream xmlOut = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			summary = processDirectory(directoryPath, options, incremental, limits, deadline, connection,
+					reportHandler(xmlOut, limits));
+		} catch (IOException exception) {
+			this.spool.deleteReportFile(xmlFile);
+			LOGGER.error("An exception occurred while processing files for an HTML report", exception);
+			throw new VeraPDFException("An exception occurred while validating", exception); //$NON-NLS-1$
+		} catch (VeraPDFException | RuntimeException exception) {
+			this.spool.deleteReportFile(xmlFile);
+			throw exception;
+		}
+		if (summary.getTotalJobs() == 0) {
+			this.spool.deleteReportFile(xmlFile);
+			LOGGER.debug("No files to process, so not preparing HTML report");
+			return null;
+		}
+		createVerifyEventInCTS(directoryPath, summary);
+
+		final UploadSpool reportSpool = this.spool;
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException {
+				try (InputStream xmlIn = new BufferedInputStream(new FileInputStream(xmlFile))) {
+					HTMLReport.writeHTMLReport(xmlIn, output, summary, WIKI_URL_BASE, limits.isVerbose());
+				} catch (TransformerException exception) {
+					LOGGER.error("An exception occurred while rendering the HTML report", exception);
+					throw new WebApplicationException(exception);
+				} finally {
+					reportSpool.deleteReportFile(xmlFile);
+				}
+			}
+		};
 	}
 
-	private static ByteArrayInputStream processFilesCreateHtmlReport(String directoryPath, List<File> files,
-																	 PDFAFlavour flavour)
+	private static byte[] createHtmlReport(List<File> files, PDFAFlavour flavour, long length,
+										   ValidatorPool validators, ValidationLimits limits, ValidationStages stages)
 		throws VeraPDFException {
 
-		BatchProcessor processor;
 		BatchSummary summary;
-        ProcessorConfig processorConfig = configureProcessor(flavour);
+        ProcessorConfig processorConfig = validators.getProcessorConfig(limits, flavour);
 
 		byte[] htmlBytes;
 		InputStream xmlBis;
@@ -278,29 +802,27 @@ public class ValidateResource {
 
 		LOGGER.trace("Processing {} files to create an HTML report", files.size());
 		try (ByteArrayOutputStream xmlBos = new ByteArrayOutputStream()) {
-			processor = ProcessorFactory.fileBatchProcessor(processorConfig);
-			summary = processor.process(files,
-					ProcessorFactory.getHandler(FormatOption.MRR, VERBOSE_OUTPUT, xmlBos,
-							MAX_FAILED_CHECKS_PER_RULE, LOG_SUCCESS_CHECKS));
+			InFlightValidations.enterCurrent(ValidationStages.Stage.VALIDATE);
+			try (BatchProcessor processor = ProcessorFactory.fileBatchProcessor(processorConfig)) {
+				summary = processor.process(files, reportHandler(xmlBos, limits));
+			}
 
 			xmlBis = new ByteArrayInputStream(xmlBos.toByteArray());
 			htmlBos = new ByteArrayOutputStream();
-			HTMLReport.writeHTMLReport(xmlBis, htmlBos, summary, WIKI_URL_BASE, VERBOSE_OUTPUT);
+			InFlightValidations.enterCurrent(ValidationStages.Stage.RENDER);
+			long renderStart = System.nanoTime();
+			HTMLReport.writeHTMLReport(xmlBis, htmlBos, summary, WIKI_URL_BASE, limits.isVerbose());
 			htmlBytes = htmlBos.toByteArray();
-			if(directoryPath!=null) {
-				createVerifyEventInCTS(directoryPath, htmlBytes);
-			} else {
-				LOGGER.trace("Directory path is null, so because this is an uploaded file, not adding CTS event.");
-			}
+			stages.record(ValidationStages.Stage.RENDER, flavour, length, System.nanoTime() - renderStart);
 		} catch (IOException | TransformerException exception) {
 			LOGGER.error("An exception occurred while processing files for an HTML report", exception);
 			throw new VeraPDFException("An exception occurred while validating", exception); //$NON-NLS-1$
 		}
 
-		return new ByteArrayInputStream(htmlBytes);
+		return htmlBytes;
 	}
 
-	private static void createVerifyEventInCTS(String directoryPath, byte[] htmlBytes) {
+	private static void createVerifyEventInCTS(String directoryPath, BatchSummary summary) {
 		LOGGER.trace("(NOT IMPLEMENTED) Creating Verify event in CTS for bag instance with path {}", directoryPath);
 		// TODO: Look up whether there is any inventoried, non-empty bag instance with this directory path
 		// (Currently not supported by CTS web API)
@@ -325,161 +847,266 @@ public class ValidateResource {
 
 	/*
 	This method is used for PUT and POST non-HTML-based validation of a single uploaded file.
-	Sha1 for the uploaded file may be provided or may be null.
+	Digests for the uploaded file may be provided or the map may be empty.
 	The profile validation flavour may be specified or may be auto-detect.
+	The upload's sha-1, calculated by the server while spooling, is used to look for a cached
+	result before validating. Results are cached by that sha-1, the requested profile flavour and
+	the validation mode. The upload's stages are timed against the flavour it was validated with,
+	or the requested flavour for a cached result.
 	 */
-    private static ValidationResult validate(String profileId, String sha1Hex,
-                                        InputStream uploadedInputStream)
-            throws VeraPDFException {
+	static ValidationResult validate(String profileId, Map<DigestAlgorithm, String> digests, SpooledUpload upload,
+									 ValidatorPool validators, ValidationLimits limits,
+									 ValidationResultCache cache, ValidationStages stages)
+			throws VeraPDFException {
+
+		ValidationResultCache.Key key = ValidationResultCache.key(upload.getSha1Hex(), requestedFlavour(profileId),
+				limits.getMode());
+		ValidationResult result = cache.getResult(key);
+		if (result != null) {
+			LOGGER.debug("Returning cached validation result for {}", key);
+			stages.recordSpooling(requestedFlavour(profileId), upload);
+			return result;
+		}
 
-    	/* Perform our own calculation of the sha-1 of the uploaded file */
-        MessageDigest sha1 = getDigest();
-        DigestInputStream digestInputStream = new DigestInputStream(uploadedInputStream, sha1);
+		result = validate(profileId, digests, upload, validators, limits, stages);
+		cache.putResult(key, result);
+		return result;
+	}
 
-        ValidationResult result;
-        PDFAFlavour flavour;
-        PDFAParser parser;
-        PDFAValidator validator;
+	/*
+	The document's length is left on the request, so that writing its result can be timed against
+	the document's size bucket.
+	 */
+	private static void noteDocumentLength(HttpServletRequest request, SpooledUpload upload) {
+		if (request != null) {
+			request.setAttribute(ValidationStages.DOCUMENT_LENGTH_PROPERTY, Long.valueOf(upload.getLength()));
+		}
+	}
 
-		try {
+	/*
+	Collect the digests a client supplied with its upload, ignoring any left blank.
+	 */
+	static Map<DigestAlgorithm, String> suppliedDigests(String sha1Hex, String sha256Hex, String md5Hex) {
+		Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+		putDigest(digests, DigestAlgorithm.SHA1, sha1Hex);
+		putDigest(digests, DigestAlgorithm.SHA256, sha256Hex);
+		putDigest(digests, DigestAlgorithm.MD5, md5Hex);
+		return digests;
+	}
 
-			if(!profileId.equals(AUTODETECT_PROFILE)) {
-				LOGGER.trace("Using specified profile flavour for validation {}", profileId);
-				/* Use the specified profile flavour for validation */
-				flavour = PDFAFlavour.byFlavourId(profileId);
-			} else {
-				LOGGER.trace("Auto-detecting profile for uploaded input stream");
-				/* Don't specify a profile flavour for validation - use veraPDF to autodetect the profile */
-				flavour = detectFlavour(digestInputStream);
-			}
+	private static void putDigest(Map<DigestAlgorithm, String> digests, DigestAlgorithm algorithm, String hex) {
+		if (hex != null && !hex.trim().isEmpty()) {
+			digests.put(algorithm, hex.trim());
+		}
+	}
 
-            parser = Foundries.defaultInstance().createParser(digestInputStream, flavour);
-			validator = ValidatorFactory.createValidator(flavour, LOG_SUCCESS_CHECKS);
-			result = validator.validate(parser);
-		} catch (ModelParsingException mpException) {
-			/*
-			If we have the same sha-1 then it's a PDF parse error, so
-			treat as non PDF.
-			*/
-            LOGGER.error("Caught a model parsing exception during validation", mpException);
-			if(sha1Hex!=null) {
-				if (sha1Hex.equalsIgnoreCase(Hex.encodeHexString(sha1.digest()))) {
-					LOGGER.error("File does not appear to be a PDF");
-					throw new NotSupportedException(Response.status(Status.UNSUPPORTED_MEDIA_TYPE)
-						.type(MediaType.TEXT_PLAIN).entity("File does not appear " +
-								 "to be a PDF.").build(), mpException); //$NON-NLS-1$ //$NON-NLS-2$
-				}
+	/*
+	True if the client supplied at least one digest and every one it supplied matches the
+	digest calculated by the server while spooling the upload.
+	 */
+	private static boolean digestsMatch(Map<DigestAlgorithm, String> digests, SpooledUpload upload) {
+		if (digests.isEmpty()) {
+			return false;
+		}
+		for (Map.Entry<DigestAlgorithm, String> digest : digests.entrySet()) {
+			if (!digest.getValue().equalsIgnoreCase(upload.getHexDigest(digest.getKey()))) {
+				return false;
 			}
-			throw mpException;
 		}
+		return true;
+	}
 
-        return result;
-    }
+	private ValidationResultCache.Key cacheKey(String profileId, String sha1Hex, String mode) {
+		if (!ByteStreams.isHexSHA1(sha1Hex)) {
+			throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+					.entity(sha1Hex + " is not a hex encoded SHA-1 digest.").build()); //$NON-NLS-1$
+		}
+		return ValidationResultCache.key(sha1Hex.trim(), requestedFlavour(profileId),
+				requestedLimits(this.validators, mode).getMode());
+	}
 
-	private static MessageDigest getDigest() {
+	static ValidationLimits requestedLimits(ValidatorPool validators, String mode) {
 		try {
-			return MessageDigest.getInstance(SHA1_NAME);
-		} catch (NoSuchAlgorithmException nsaException) {
-			LOGGER.error("No digest algorithm implementation for {}", SHA1_NAME, nsaException);
-			throw new IllegalStateException(
-					"No digest algorithm implementation for " +
-                            SHA1_NAME, nsaException); //$NON-NLS-1$
+			return validators.getLimits(mode);
+		} catch (IllegalArgumentException excep) {
+			throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+					.entity(excep.getMessage()).build(), excep);
 		}
 	}
 
-	private static EnumSet<TaskType> getTasks() {
-		EnumSet<TaskType> tasks = EnumSet.noneOf(TaskType.class);
-        tasks.add(TaskType.VALIDATE);
-        // TODO: implement options to run these tasks
-//		tasks.add(TaskType.EXTRACT_FEATURES);
-//		tasks.add(TaskType.FIX_METADATA);
-		return tasks;
+	static ValidationDeadline requestedDeadline(ValidationExecutor executor, Long timeoutSeconds) {
+		try {
+			return executor.deadline(timeoutSeconds);
+		} catch (IllegalArgumentException excep) {
+			throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+					.entity(excep.getMessage()).build(), excep);
+		}
 	}
 
-	private static ProcessorConfig configureProcessor(PDFAFlavour flavour) {
-
-        ValidatorConfig validatorConfig;
-
-        if(flavour==null) {
-            LOGGER.trace("Creating default validation configuration");
-            validatorConfig = ValidatorFactory.defaultConfig();
-        } else {
-            LOGGER.trace("Creating validation configuration with flavour {}, LOG_SUCCESS_CHECKS {}, " +
-                    "MAX_FAILED_CHECKS_PER_RULE {}", flavour.toString(), LOG_SUCCESS_CHECKS, MAX_FAILED_CHECKS_PER_RULE);
-            validatorConfig = ValidatorFactory.createConfig(flavour, LOG_SUCCESS_CHECKS, MAX_FAILED_CHECKS_PER_RULE);
-        }
-        FeatureExtractorConfig featureConfig = FeatureFactory.defaultConfig();
-        PluginsCollectionConfig pluginsConfig = PluginsCollectionConfig.defaultConfig();
-        MetadataFixerConfig fixerConfig = FixerFactory.defaultConfig();
-
-        LOGGER.trace("Creating processor config with default values");
-        return ProcessorFactory.fromValues(validatorConfig, featureConfig,
-                pluginsConfig, fixerConfig, getTasks());
-
-    }
-
-
-	private static InputStream validateFilePath(String filePath) throws VeraPDFException {
-		File directoryPath = new File(filePath);
-        final FileFilter fileFilter = new WildcardFileFilter("*.pdf*");
-        List<File> files = new ArrayList<>();
+	static ValidationDeadline requestedBatchDeadline(ValidationExecutor executor, Long timeoutSeconds) {
+		try {
+			return executor.batchDeadline(timeoutSeconds);
+		} catch (IllegalArgumentException excep) {
+			throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+					.entity(excep.getMessage()).build(), excep);
+		}
+	}
 
-        class RecursivePDFFinder extends SimpleFileVisitor<java.nio.file.Path> {
+	/*
+	The machine readable report lists at most the mode's number of failed checks for each rule, and
+	passed checks only if the mode records them.
+	 */
+	private static BatchProcessingHandler reportHandler(OutputStream output, ValidationLimits limits)
+			throws VeraPDFException {
+		return ProcessorFactory.getHandler(FormatOption.MRR, limits.isVerbose(), output,
+				limits.getMaxFailedChecksPerRule(), limits.isLogPassedChecks());
+	}
 
-            List<File> pdfFiles = new ArrayList<>();
+	/*
+	The flavour a profile id asks for, NO_FLAVOUR for auto-detection. veraPDF maps an id it doesn't know
+	to NO_FLAVOUR as well, so any id other than auto that does is refused rather than auto-detected.
+	 */
+	static PDFAFlavour requestedFlavour(String profileId) {
+		if (AUTODETECT_PROFILE.equals(profileId)) {
+			return PDFAFlavour.NO_FLAVOUR;
+		}
+		PDFAFlavour flavour = PDFAFlavour.byFlavourId(profileId);
+		if (flavour == PDFAFlavour.NO_FLAVOUR) {
+			throw new BadRequestException(Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN)
+					.entity(profileId + " is not a profile id, use one of auto, 1b, 1a, 2b, 2a, 2u, 3b, 3a or 3u.") //$NON-NLS-1$
+					.build());
+		}
+		return flavour;
+	}
 
-            @Override
-            public FileVisitResult preVisitDirectory(java.nio.file.Path dir,
-                    BasicFileAttributes attributes) {
-                LOGGER.trace("Directory: " + dir.toString());
-                File thisDirectory = new File(dir.toString());
-                Collections.addAll(pdfFiles, thisDirectory.listFiles(fileFilter));
-                return FileVisitResult.CONTINUE;
-            }
+	/*
+	Refuse an unknown profile id before the upload is read, the id is only resolved once a worker
+	validates it.
+	 */
+	static void checkProfileId(String profileId) {
+		requestedFlavour(profileId);
+	}
 
-            public List<File> getPdfFiles() {
-                return this.pdfFiles;
-            }
-        }
+    private static ValidationResult validate(String profileId, Map<DigestAlgorithm, String> digests,
+                                             SpooledUpload upload, ValidatorPool validators,
+                                             ValidationLimits limits, ValidationStages stages)
+            throws VeraPDFException {
+		return limits.limit(validateUpload(profileId, digests, upload, validators, limits, stages));
+	}
 
-        RecursivePDFFinder pdfFinder = new RecursivePDFFinder();
+	/*
+	Parse and validate an upload with a validator for the limits' mode, returning the validator's
+	result as it is.
+	 */
+    private static ValidationResult validateUpload(String profileId, Map<DigestAlgorithm, String> digests,
+                                                   SpooledUpload upload, ValidatorPool validators,
+                                                   ValidationLimits limits, ValidationStages stages)
+            throws VeraPDFException {
 
-		// The specified filePath may either be a path to a single PDF or a path to a directory.
-		// If it is a directory, recursively list all PDF files (files having extension containing pdf)
-		// and run the processor on all of them.
-		if(directoryPath.isDirectory()) {
-			LOGGER.trace("Validating directory of files at {}", filePath);
+        ValidationResult result;
+        PDFAFlavour flavour = requestedFlavour(profileId);
+        PDFAValidator validator;
+		InFlightValidations.describeCurrent(upload.getSha1Hex(), flavour, upload.getLength());
+		InFlightValidations.enterCurrent(ValidationStages.Stage.PARSE);
+		long parseStart = System.nanoTime();
+
+		try (PDFAParser parser = createParser(upload, flavour)) {
+			long parseNanos = System.nanoTime() - parseStart;
+			long detectNanos = -1L;
+			if(profileId.equals(AUTODETECT_PROFILE)) {
+				/* No profile flavour was specified, veraPDF detected it while parsing so validate with the same parser */
+				InFlightValidations.enterCurrent(ValidationStages.Stage.DETECT);
+				long detectStart = System.nanoTime();
+				flavour = parser.getFlavour();
+				detectNanos = System.nanoTime() - detectStart;
+				InFlightValidations.detectedCurrent(flavour);
+				LOGGER.trace("Profile type {} was auto-detected", flavour.toString());
+			} else {
+				LOGGER.trace("Using specified profile flavour for validation {}", profileId);
+			}
+			// Parsing can take a while, don't start validating if the deadline has passed since
+			ValidationDeadline.checkCurrent();
+			// Only a validator that completes its validation is reused
+			validator = validators.borrow(limits, flavour);
+			InFlightValidations.enterCurrent(ValidationStages.Stage.VALIDATE);
+			long validateStart = System.nanoTime();
+			result = validator.validate(parser);
+			long validateNanos = System.nanoTime() - validateStart;
+			validators.release(limits, flavour, validator);
 
-            try {
-                // TODO: implement options for following or ignoring symbolic links
-                Files.walkFileTree(Paths.get(filePath), pdfFinder);
-            } catch (IOException exception) {
-                LOGGER.error("An exception occurred while finding PDF files", exception);
-                throw new VeraPDFException("An exception occurred while finding PDF files", exception);
-            }
+			stages.recordSpooling(flavour, upload);
+			stages.record(ValidationStages.Stage.PARSE, flavour, upload.getLength(), parseNanos);
+			if (detectNanos >= 0) {
+				stages.record(ValidationStages.Stage.DETECT, flavour, upload.getLength(), detectNanos);
+			}
+			stages.record(ValidationStages.Stage.VALIDATE, flavour, upload.getLength(), validateNanos);
+		} catch (ModelParsingException mpException) {
+			/*
+			If we have the same digests then it's a PDF parse error, so
+			treat as non PDF.
+			*/
+            LOGGER.error("Caught a model parsing exception during validation", mpException);
+			if (digestsMatch(digests, upload)) {
+				LOGGER.error("File does not appear to be a PDF");
+				throw new NotSupportedException(Response.status(Status.UNSUPPORTED_MEDIA_TYPE)
+					.type(MediaType.TEXT_PLAIN).entity("File does not appear " +
+							 "to be a PDF.").build(), mpException); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			throw mpException;
+		} catch (IOException excep) {
+			LOGGER.error("IOException reading the spooled upload", excep);
+			throw new VeraPDFException("IOException reading the spooled upload", excep); //$NON-NLS-1$
+		}
 
-            files = pdfFinder.getPdfFiles();
-            LOGGER.trace("Recursively found {} PDF files", files.size());
+        return result;
+    }
 
-		} else {
-			LOGGER.trace("Validating individual file at {}", filePath);
-			files.add(new File(filePath));
+	/*
+	Uploads spooled to disk are parsed straight from their temp file, which veraPDF reads
+	through a RandomAccessFile, rather than from a stream that the parser would first copy into
+	its own seekable buffer. Small uploads held in memory are parsed from their byte array.
+	 */
+	private static PDFAParser createParser(SpooledUpload upload, PDFAFlavour flavour)
+			throws IOException, ModelParsingException, EncryptedPdfException {
+		if (upload.isInMemory()) {
+			try (InputStream uploadStream = upload.openStream()) {
+				return Foundries.defaultInstance().createParser(uploadStream, flavour);
+			}
 		}
-
-		if(!files.isEmpty()) {
-            return processFilesCreateHtmlReport(filePath, files, null);
-        } else {
-		    LOGGER.debug("No files to process, so not preparing HTML report");
-		    return null;
-        }
+		return Foundries.defaultInstance().createParser(upload.getFile(), flavour);
 	}
 
-    private static PDFAFlavour detectFlavour(InputStream detectStream)
-            throws ModelParsingException, EncryptedPdfException {
-
-        PDFAParser parser = Foundries.defaultInstance().createParser(detectStream);
-        return parser.getFlavour();
+	/*
+	The specified path may either be a path to a single PDF or a path to a directory. A directory is walked
+	in parallel and its PDF files, by default those having an extension containing pdf, are validated as
+	they're found. An incremental validation only validates the files that are new or have changed since
+	the directory's manifest was last saved. Once the deadline passes, or the client disconnects, no
+	more files are validated and the batch ends with the results so far.
+	 */
+	private BatchSummary processDirectory(String directoryPath, DiscoveryOptions options, boolean incremental,
+										  ValidationLimits limits, ValidationDeadline deadline,
+										  ValidationExecutor.ClientConnection connection,
+										  BatchProcessingHandler handler)
+			throws VeraPDFException {
+		ParallelBatchProcessor processor = new ParallelBatchProcessor(
+				this.validators.getProcessorConfig(limits, null), this.executor, deadline, connection);
+		File path = new File(directoryPath);
+		if (!incremental) {
+			return processor.process(this.discovery.discover(path, options, deadline), handler);
+		}
+		try (ValidationManifest manifest = this.manifests.open(path, limits)) {
+			return processor.process(this.discovery.discover(path, options, deadline), manifest, handler);
+		}
+	}
 
-    }
+	private static DiscoveryOptions discoveryOptions(String directoryPath, FileDiscoveryParams discoveryParams) {
+		if (directoryPath == null) {
+			throw new BadRequestException("The directoryPath parameter is required"); //$NON-NLS-1$
+		}
+		if (discoveryParams.isIncremental() && !new File(directoryPath).isDirectory()) {
+			throw new BadRequestException("Only a directory can be validated incrementally"); //$NON-NLS-1$
+		}
+		return discoveryParams.toOptions();
+	}
 
 }
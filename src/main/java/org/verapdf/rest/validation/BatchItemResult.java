@@ -0,0 +1,131 @@
+package org.verapdf.rest.validation;
+
+import org.verapdf.pdfa.results.ValidationResult;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of validating one document of a batch upload, the document's
+ * {@code item} details and either its {@code validationResult} or, if it
+ * couldn't be validated, an {@code error} message. It's written as a line of a
+ * streamed batch, the same shape as the lines written by
+ * {@link NdjsonBatchHandler}, or as an element of a {@link BatchUploadReport}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class BatchItemResult {
+    private final Item item;
+    private final ValidationResult validationResult;
+    private final String error;
+
+    private BatchItemResult(final Item item, final ValidationResult validationResult, final String error) {
+        this.item = item;
+        this.validationResult = validationResult;
+        this.error = error;
+    }
+
+    /**
+     * @param name
+     *            the name the document was sent with
+     * @param upload
+     *            the {@link SpooledUpload} of the document
+     * @param result
+     *            the {@link ValidationResult} of the document
+     * @return a new {@link BatchItemResult} for a validated document
+     */
+    public static BatchItemResult validated(final String name, final SpooledUpload upload,
+                                            final ValidationResult result) {
+        return new BatchItemResult(new Item(name, upload), result, null);
+    }
+
+    /**
+     * @param name
+     *            the name the document was sent with
+     * @param upload
+     *            the {@link SpooledUpload} of the document, or null if it
+     *            couldn't be spooled
+     * @param message
+     *            why the document couldn't be validated
+     * @return a new {@link BatchItemResult} for a document that wasn't
+     *         validated
+     */
+    public static BatchItemResult failed(final String name, final SpooledUpload upload, final String message) {
+        return new BatchItemResult(new Item(name, upload), null, message);
+    }
+
+    /**
+     * @return the details of the document
+     */
+    @JsonProperty
+    public Item getItem() {
+        return this.item;
+    }
+
+    /**
+     * @return the {@link ValidationResult} of the document, or null if it
+     *         couldn't be validated
+     */
+    @JsonProperty
+    public ValidationResult getValidationResult() {
+        return this.validationResult;
+    }
+
+    /**
+     * @return why the document couldn't be validated, or null if it was
+     */
+    @JsonProperty
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * @return true if the document was validated and complies
+     */
+    @JsonIgnore
+    public boolean isCompliant() {
+        return this.validationResult != null && this.validationResult.isCompliant();
+    }
+
+    /**
+     * The name, size and SHA-1 of a document in a batch upload.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Item {
+        private final String name;
+        private final Long length;
+        private final String sha1Hex;
+
+        Item(final String name, final SpooledUpload upload) {
+            this.name = name;
+            this.length = (upload != null) ? Long.valueOf(upload.getLength()) : null;
+            this.sha1Hex = (upload != null) ? upload.getSha1Hex() : null;
+        }
+
+        /**
+         * @return the name the document was sent with
+         */
+        @JsonProperty
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return the length of the document in bytes, or null if it couldn't
+         *         be read
+         */
+        @JsonProperty
+        public Long getLength() {
+            return this.length;
+        }
+
+        /**
+         * @return the hex encoded SHA-1 of the document, or null if it
+         *         couldn't be read
+         */
+        @JsonProperty
+        public String getSha1Hex() {
+            return this.sha1Hex;
+        }
+    }
+}
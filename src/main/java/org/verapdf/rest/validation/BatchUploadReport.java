@@ -0,0 +1,131 @@
+package org.verapdf.rest.validation;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The combined outcome of a batch upload, the {@link BatchItemResult} of each
+ * document, in the order their validations completed, and the batch's
+ * {@link Summary}.
+ */
+public final class BatchUploadReport {
+    private final List<BatchItemResult> items;
+    private final Summary batchSummary;
+
+    /**
+     * @param items
+     *            the {@link BatchItemResult} of each document
+     * @param batchSummary
+     *            the {@link Summary} of the batch
+     */
+    public BatchUploadReport(final List<BatchItemResult> items, final Summary batchSummary) {
+        this.items = items;
+        this.batchSummary = batchSummary;
+    }
+
+    /**
+     * @return the {@link BatchItemResult} of each document
+     */
+    @JsonProperty
+    public List<BatchItemResult> getItems() {
+        return this.items;
+    }
+
+    /**
+     * @return the {@link Summary} of the batch
+     */
+    @JsonProperty
+    public Summary getBatchSummary() {
+        return this.batchSummary;
+    }
+
+    /**
+     * The number of documents in a batch upload with each outcome, and why the
+     * batch stopped early if it did.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Summary {
+        private final int items;
+        private final int compliant;
+        private final int nonCompliant;
+        private final int failed;
+        private final long elapsedMs;
+        private final String stoppedReason;
+
+        /**
+         * @param items
+         *            the number of documents read from the upload
+         * @param compliant
+         *            the number of documents validated that comply
+         * @param nonCompliant
+         *            the number of documents validated that don't comply
+         * @param failed
+         *            the number of documents that couldn't be validated
+         * @param elapsedMs
+         *            the time the batch took in milliseconds
+         * @param stoppedReason
+         *            why the batch stopped before the end of the upload, or
+         *            null if it didn't
+         */
+        public Summary(final int items, final int compliant, final int nonCompliant, final int failed,
+                       final long elapsedMs, final String stoppedReason) {
+            this.items = items;
+            this.compliant = compliant;
+            this.nonCompliant = nonCompliant;
+            this.failed = failed;
+            this.elapsedMs = elapsedMs;
+            this.stoppedReason = stoppedReason;
+        }
+
+        /**
+         * @return the number of documents read from the upload
+         */
+        @JsonProperty
+        public int getItems() {
+            return this.items;
+        }
+
+        /**
+         * @return the number of documents validated that comply
+         */
+        @JsonProperty
+        public int getCompliant() {
+            return this.compliant;
+        }
+
+        /**
+         * @return the number of documents validated that don't comply
+         */
+        @JsonProperty
+        public int getNonCompliant() {
+            return this.nonCompliant;
+        }
+
+        /**
+         * @return the number of documents that couldn't be validated
+         */
+        @JsonProperty
+        public int getFailed() {
+            return this.failed;
+        }
+
+        /**
+         * @return the time the batch took in milliseconds
+         */
+        @JsonProperty
+        public long getElapsedMs() {
+            return this.elapsedMs;
+        }
+
+        /**
+         * @return why the batch stopped before the end of the upload, or null
+         *         if it didn't
+         */
+        @JsonProperty
+        public String getStoppedReason() {
+            return this.stoppedReason;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.verapdf.rest.validation;
+
+import org.verapdf.pdfa.results.RuleId;
+import org.verapdf.pdfa.results.TestAssertion;
+import org.verapdf.pdfa.results.ValidationResult;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+
+/**
+ * The outcome of a compliance check, whether a document complies with a
+ * flavour and, if it doesn't, the first failed check found. The document is
+ * validated in the {@link ValidationLimits.Mode#PASSFAIL} mode, which stops
+ * at the first failed check, and only this summary is returned rather than
+ * the validation result.
+ */
+@JacksonXmlRootElement
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ComplianceCheck {
+    private final boolean compliant;
+    private final String flavour;
+    private final Failure firstFailure;
+    private final long elapsedMs;
+
+    private ComplianceCheck(final boolean compliant, final String flavour, final Failure firstFailure,
+                            final long elapsedMs) {
+        this.compliant = compliant;
+        this.flavour = flavour;
+        this.firstFailure = firstFailure;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * Summarise the result of a validation that stopped at its first failed
+     * check.
+     *
+     * @param result
+     *            the {@link ValidationResult} to summarise
+     * @param elapsedMs
+     *            the time the check took in milliseconds
+     * @return a new {@link ComplianceCheck}
+     */
+    public static ComplianceCheck fromResult(final ValidationResult result, final long elapsedMs) {
+        Failure failure = null;
+        for (TestAssertion assertion : result.getTestAssertions()) {
+            if (assertion.getStatus() == TestAssertion.Status.FAILED) {
+                failure = new Failure(assertion);
+                break;
+            }
+        }
+        return new ComplianceCheck(result.isCompliant(), result.getPDFAFlavour().getId(), failure, elapsedMs);
+    }
+
+    /**
+     * @return true if the document complies with the flavour
+     */
+    @JsonProperty
+    public boolean isCompliant() {
+        return this.compliant;
+    }
+
+    /**
+     * @return the id of the flavour the document was checked against
+     */
+    @JsonProperty
+    public String getFlavour() {
+        return this.flavour;
+    }
+
+    /**
+     * @return the first failed check, or null if the document complies
+     */
+    @JsonProperty
+    public Failure getFirstFailure() {
+        return this.firstFailure;
+    }
+
+    /**
+     * @return the time the check took in milliseconds, including parsing
+     */
+    @JsonProperty
+    public long getElapsedMs() {
+        return this.elapsedMs;
+    }
+
+    /**
+     * The rule and location of a failed check.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Failure {
+        private final String clause;
+        private final int testNumber;
+        private final String message;
+        private final String context;
+
+        Failure(final TestAssertion assertion) {
+            RuleId ruleId = assertion.getRuleId();
+            this.clause = ruleId.getClause();
+            this.testNumber = ruleId.getTestNumber();
+            this.message = assertion.getMessage();
+            this.context = (assertion.getLocation() != null) ? assertion.getLocation().getContext() : null;
+        }
+
+        /**
+         * @return the specification clause of the failed rule
+         */
+        @JsonProperty
+        public String getClause() {
+            return this.clause;
+        }
+
+        /**
+         * @return the number of the failed rule's test within its clause
+         */
+        @JsonProperty
+        public int getTestNumber() {
+            return this.testNumber;
+        }
+
+        /**
+         * @return the description of the failed check
+         */
+        @JsonProperty
+        public String getMessage() {
+            return this.message;
+        }
+
+        /**
+         * @return where in the document the check failed
+         */
+        @JsonProperty
+        public String getContext() {
+            return this.context;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.verapdf.rest.validation;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * A Rhino {@link ContextFactory} that checks the current thread's
+ * {@link ValidationDeadline} while the veraPDF rule engine evaluates a
+ * profile's JavaScript rule tests. The validator spends almost all of its time
+ * in those tests, so this is where a runaway validation is stopped.
+ * <p>
+ * Rhino only calls {@link #observeInstructionCount(Context, int)} from
+ * scripts compiled after the factory is installed, so
+ * {@link #install(int)} must be called at startup before anything is
+ * validated.
+ */
+public final class DeadlineContextFactory extends ContextFactory {
+    private final int instructionThreshold;
+
+    private DeadlineContextFactory(final int instructionThreshold) {
+        this.instructionThreshold = instructionThreshold;
+    }
+
+    /**
+     * Install the factory as Rhino's global context factory.
+     *
+     * @param instructionThreshold
+     *            the number of script instructions executed between deadline
+     *            checks
+     * @throws IllegalStateException
+     *             if a global context factory has already been installed
+     */
+    public static void install(final int instructionThreshold) {
+        ContextFactory.initGlobal(new DeadlineContextFactory(instructionThreshold));
+    }
+
+    @Override
+    protected void onContextCreated(final Context cx) {
+        super.onContextCreated(cx);
+        cx.setInstructionObserverThreshold(this.instructionThreshold);
+    }
+
+    @Override
+    protected void observeInstructionCount(final Context cx, final int instructionCount) {
+        ValidationDeadline.checkCurrent();
+    }
+}
@@ -0,0 +1,170 @@
+package org.verapdf.rest.validation;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable options controlling which files a {@link FileDiscovery} walk
+ * finds below a root directory.
+ * <p>
+ * Include and exclude patterns are globs in {@link java.nio.file.FileSystem}
+ * syntax. A pattern containing a {@code /} is matched against the path
+ * relative to the root directory, any other pattern against the file or
+ * directory name. A file is found if it matches any include pattern and no
+ * exclude pattern, a directory that matches an exclude pattern isn't walked.
+ */
+public final class DiscoveryOptions {
+    /** The include pattern used when none is given, matching the extensions veraPDF has always searched for */
+    public static final String DEFAULT_INCLUDE = "*.pdf*"; //$NON-NLS-1$
+
+    /**
+     * How symbolic links found while walking are treated.
+     */
+    public enum LinkPolicy {
+        /** Symbolic links are ignored */
+        IGNORE,
+        /** Links to files are followed, links to directories are ignored */
+        FILES,
+        /** All links are followed, directories already walked are skipped */
+        FOLLOW;
+
+        /**
+         * @param name
+         *            the policy name, ignoring case
+         * @return the matching {@link LinkPolicy}
+         * @throws IllegalArgumentException
+         *             if no policy matches the name
+         */
+        public static LinkPolicy fromName(final String name) {
+            for (LinkPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("No symbolic link policy named " + name); //$NON-NLS-1$
+        }
+    }
+
+    private final LinkPolicy linkPolicy;
+    private final int maxDepth;
+    private final long minBytes;
+    private final long maxBytes;
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+
+    /**
+     * @param linkPolicy
+     *            the {@link LinkPolicy} for symbolic links
+     * @param maxDepth
+     *            the maximum number of directory levels below the root to
+     *            search, 1 finds only the files in the root directory
+     * @param minBytes
+     *            the size, in bytes, of the smallest file found
+     * @param maxBytes
+     *            the size, in bytes, of the largest file found
+     * @param includes
+     *            the globs a file must match one of, {@link #DEFAULT_INCLUDE}
+     *            if empty
+     * @param excludes
+     *            the globs no found file or walked directory may match
+     * @throws IllegalArgumentException
+     *             if a limit is out of range or a pattern isn't a valid glob
+     */
+    public DiscoveryOptions(final LinkPolicy linkPolicy, final int maxDepth, final long minBytes,
+                            final long maxBytes, final List<String> includes, final List<String> excludes) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("maxDepth must be at least 1"); //$NON-NLS-1$
+        if (minBytes < 0 || maxBytes < minBytes)
+            throw new IllegalArgumentException("minBytes must be at least 0 and no more than maxBytes"); //$NON-NLS-1$
+        this.linkPolicy = linkPolicy;
+        this.maxDepth = maxDepth;
+        this.minBytes = minBytes;
+        this.maxBytes = maxBytes;
+        this.includes = compile(includes.isEmpty() ? Collections.singletonList(DEFAULT_INCLUDE) : includes);
+        this.excludes = compile(excludes);
+    }
+
+    /**
+     * @return the default options, files named {@link #DEFAULT_INCLUDE} of
+     *         any size and at any depth, following links to files only
+     */
+    public static DiscoveryOptions defaultInstance() {
+        return new DiscoveryOptions(LinkPolicy.FILES, Integer.MAX_VALUE, 0L, Long.MAX_VALUE,
+                Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
+
+    /**
+     * @return the {@link LinkPolicy} for symbolic links
+     */
+    public LinkPolicy getLinkPolicy() {
+        return this.linkPolicy;
+    }
+
+    /**
+     * @return the maximum number of directory levels below the root to search
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @param relative
+     *            the file's path relative to the root directory
+     * @param size
+     *            the file's size in bytes
+     * @return true if the file should be processed
+     */
+    public boolean acceptsFile(final Path relative, final long size) {
+        return size >= this.minBytes && size <= this.maxBytes && matches(this.includes, relative)
+                && !matches(this.excludes, relative);
+    }
+
+    /**
+     * @param relative
+     *            the directory's path relative to the root directory
+     * @return true if the directory should be walked
+     */
+    public boolean acceptsDirectory(final Path relative) {
+        return !matches(this.excludes, relative);
+    }
+
+    private static boolean matches(final List<Pattern> patterns, final Path relative) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Pattern> compile(final List<String> globs) {
+        List<Pattern> patterns = new ArrayList<>(globs.size());
+        for (String glob : globs) {
+            patterns.add(new Pattern(glob));
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+    /*
+     * A glob matched against the whole relative path if it contains a
+     * separator, otherwise against the last name in the path.
+     */
+    private static final class Pattern {
+        private final PathMatcher matcher;
+        private final boolean wholePath;
+
+        Pattern(final String glob) {
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob); //$NON-NLS-1$
+            this.wholePath = glob.indexOf('/') > -1;
+        }
+
+        boolean matches(final Path relative) {
+            Path toMatch = this.wholePath ? relative : relative.getFileName();
+            return toMatch != null && this.matcher.matches(toMatch);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.verapdf.rest.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+
+/**
+ * Finds the files below a directory in parallel, on a shared
+ * {@link ForkJoinPool}, so that a batch can start processing files while
+ * discovery is still walking the tree. Each directory is listed once, its
+ * sub-directories are listed as separate tasks, at most as many at once as the
+ * pool has threads.
+ * <p>
+ * Found files are handed over through a bounded queue, when the batch falls
+ * behind the walk pauses rather than holding every path in memory. A listing
+ * that finds the queue full doesn't wait on a pool thread, it's put aside with
+ * its place in the directory and the walk resumes it once the batch takes a
+ * file. So one slow batch neither parks the pool's threads nor makes the pool
+ * add threads. A walk only starts once its batch takes the first file, a
+ * request still queued for a validation worker doesn't hold walkers, and it
+ * stops when the batch's {@link ValidationDeadline} passes.
+ */
+public final class FileDiscovery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileDiscovery.class);
+    private static final long POLL_MILLIS = 100L;
+    private static final LinkOption[] NO_FOLLOW = { LinkOption.NOFOLLOW_LINKS };
+    private static final LinkOption[] FOLLOW = {};
+
+    private final ForkJoinPool pool;
+    private final int queueCapacity;
+
+    /**
+     * @param pool
+     *            the {@link ForkJoinPool} directories are walked on
+     * @param queueCapacity
+     *            the number of found files held waiting to be processed
+     */
+    public FileDiscovery(final ForkJoinPool pool, final int queueCapacity) {
+        this.pool = pool;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Start finding files. A path that isn't a directory is returned as the
+     * only file, whatever the options.
+     *
+     * @param path
+     *            the path of a directory to walk, or of a single file
+     * @param options
+     *            the {@link DiscoveryOptions} selecting the files found
+     * @param deadline
+     *            the {@link ValidationDeadline} of the batch, no more files are
+     *            found or returned once it has passed
+     * @return a {@link FileSource} of the files as they're found, the walk
+     *         starts when the first is taken, the caller must close it
+     */
+    public FileSource discover(final File path, final DiscoveryOptions options, final ValidationDeadline deadline) {
+        if (!path.isDirectory()) {
+            LOGGER.trace("{} isn't a directory, processing it as a single file", path);
+            return new FileSource.ListSource(Collections.singletonList(path));
+        }
+        return new Walk(this.pool, path.toPath(), options, deadline,
+                new ArrayBlockingQueue<File>(this.queueCapacity));
+    }
+
+    /*
+     * A walk of a directory tree, the source of the files it finds. The
+     * directories still to list, and listings put aside while the queue was
+     * full, wait in a deque, a listing is only handed to the pool while the
+     * queue has room.
+     */
+    private static final class Walk implements FileSource {
+        private final ForkJoinPool pool;
+        private final Path root;
+        private final DiscoveryOptions options;
+        private final ValidationDeadline deadline;
+        private final BlockingQueue<File> found;
+        private final Set<Object> walked = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        private final Deque<Listing> pending = new ConcurrentLinkedDeque<>();
+        // Listings running on the pool
+        private final AtomicInteger running = new AtomicInteger();
+        // Listings not yet finished, running or pending
+        private final AtomicInteger unfinished = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile RuntimeException failure = null;
+        private boolean started = false;
+
+        Walk(final ForkJoinPool pool, final Path root, final DiscoveryOptions options,
+             final ValidationDeadline deadline, final BlockingQueue<File> found) {
+            this.pool = pool;
+            this.root = root;
+            this.options = options;
+            this.deadline = deadline;
+            this.found = found;
+        }
+
+        /*
+         * Start the walk, on the first call only.
+         */
+        private synchronized void start() {
+            if (this.started || this.cancelled) {
+                return;
+            }
+            this.started = true;
+            LOGGER.trace("Walking {}", this.root);
+            if (this.options.getLinkPolicy() == DiscoveryOptions.LinkPolicy.FOLLOW) {
+                try {
+                    Object rootKey = Files.readAttributes(this.root, BasicFileAttributes.class).fileKey();
+                    if (rootKey != null) {
+                        this.walked.add(rootKey);
+                    }
+                } catch (IOException excep) {
+                    LOGGER.debug("Couldn't read the attributes of {}", this.root, excep);
+                }
+            }
+            schedule(new Listing(this.root, 0));
+        }
+
+        private boolean stopped() {
+            return this.cancelled || this.deadline.isExpired();
+        }
+
+        @Override
+        public File next() throws InterruptedException, VeraPDFException {
+            start();
+            while (!stopped()) {
+                dispatch();
+                File file = this.found.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (file != null) {
+                    // Resumes a listing put aside now there's room
+                    dispatch();
+                    return file;
+                }
+                if (this.failure != null) {
+                    throw new VeraPDFException("An exception occurred while finding PDF files", //$NON-NLS-1$
+                            this.failure);
+                }
+                if (this.unfinished.get() == 0) {
+                    // Nothing more will be added, take whatever's left
+                    return this.found.poll();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            this.cancelled = true;
+            abandon();
+            this.found.clear();
+        }
+
+        private void schedule(final Listing listing) {
+            this.unfinished.incrementAndGet();
+            this.pending.addLast(listing);
+            dispatch();
+        }
+
+        /*
+         * Hand pending listings to the pool while the queue has room, resuming
+         * those put aside first, up to one running listing per pool thread.
+         */
+        private void dispatch() {
+            while (!stopped() && this.found.remainingCapacity() > 0) {
+                int active = this.running.get();
+                if (active >= this.pool.getParallelism()) {
+                    return;
+                }
+                if (this.running.compareAndSet(active, active + 1)) {
+                    Listing listing = this.pending.pollFirst();
+                    if (listing == null) {
+                        this.running.decrementAndGet();
+                        return;
+                    }
+                    this.pool.execute(listing);
+                }
+            }
+        }
+
+        /*
+         * Close the listings put aside, the running ones close themselves once
+         * they see the walk has stopped.
+         */
+        private void abandon() {
+            for (Listing listing = this.pending.poll(); listing != null; listing = this.pending.poll()) {
+                listing.closeEntries();
+            }
+        }
+
+        /*
+         * Lists a single directory, handing over the files it accepts and
+         * scheduling a listing for each sub-directory. If the queue is full the
+         * listing is put aside, keeping its place and the file in hand, and
+         * carries on from there when it's resumed.
+         */
+        private final class Listing implements Runnable {
+            private final Path directory;
+            private final int depth;
+            private DirectoryStream<Path> entries = null;
+            private Iterator<Path> iterator = null;
+            private File held = null;
+
+            Listing(final Path directory, final int depth) {
+                this.directory = directory;
+                this.depth = depth;
+            }
+
+            @Override
+            public void run() {
+                boolean putAside = false;
+                try {
+                    putAside = list();
+                } catch (RuntimeException excep) {
+                    LOGGER.warn("Couldn't walk directory {}", this.directory, excep);
+                    Walk.this.failure = excep;
+                } finally {
+                    if (!putAside) {
+                        closeEntries();
+                        Walk.this.unfinished.decrementAndGet();
+                    }
+                    Walk.this.running.decrementAndGet();
+                }
+                dispatch();
+            }
+
+            /*
+             * Hand over the directory's files, returning true if the listing
+             * was put aside because the queue is full.
+             */
+            private boolean list() {
+                if (this.held != null) {
+                    if (!Walk.this.found.offer(this.held)) {
+                        return putAside();
+                    }
+                    this.held = null;
+                }
+                try {
+                    if (this.iterator == null) {
+                        this.entries = Files.newDirectoryStream(this.directory);
+                        this.iterator = this.entries.iterator();
+                    }
+                    while (this.iterator.hasNext()) {
+                        if (stopped()) {
+                            return false;
+                        }
+                        File file = visit(this.iterator.next());
+                        if (file != null && !Walk.this.found.offer(file)) {
+                            this.held = file;
+                            return putAside();
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException excep) {
+                    LOGGER.warn("Couldn't list directory {}, skipping it", this.directory, excep);
+                }
+                return false;
+            }
+
+            private boolean putAside() {
+                Walk.this.pending.addFirst(this);
+                if (stopped()) {
+                    // The walk was closed meanwhile, nothing will resume it
+                    abandon();
+                }
+                return true;
+            }
+
+            void closeEntries() {
+                if (this.entries != null) {
+                    try {
+                        this.entries.close();
+                    } catch (IOException excep) {
+                        LOGGER.debug("Couldn't close the listing of {}", this.directory, excep);
+                    }
+                    this.entries = null;
+                }
+            }
+
+            /*
+             * Return the entry's file if it's to be processed, scheduling the
+             * listing of an accepted sub-directory.
+             */
+            private File visit(final Path entry) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, NO_FOLLOW);
+                    if (attributes.isSymbolicLink()) {
+                        if (Walk.this.options.getLinkPolicy() == DiscoveryOptions.LinkPolicy.IGNORE) {
+                            return null;
+                        }
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, FOLLOW);
+                        if (attributes.isDirectory()
+                                && Walk.this.options.getLinkPolicy() != DiscoveryOptions.LinkPolicy.FOLLOW) {
+                            return null;
+                        }
+                    }
+                } catch (IOException excep) {
+                    LOGGER.debug("Couldn't read the attributes of {}, skipping it", entry, excep);
+                    return null;
+                }
+
+                Path relative = Walk.this.root.relativize(entry);
+                int entryDepth = this.depth + 1;
+                if (attributes.isDirectory()) {
+                    if (entryDepth < Walk.this.options.getMaxDepth()
+                            && Walk.this.options.acceptsDirectory(relative) && firstVisit(attributes)) {
+                        schedule(new Listing(entry, entryDepth));
+                    }
+                } else if (attributes.isRegularFile()
+                        && Walk.this.options.acceptsFile(relative, attributes.size())) {
+                    return entry.toFile();
+                }
+                return null;
+            }
+
+            /*
+             * Only needed when following links, which can lead back to a
+             * directory that's already been walked.
+             */
+            private boolean firstVisit(final BasicFileAttributes attributes) {
+                if (Walk.this.options.getLinkPolicy() != DiscoveryOptions.LinkPolicy.FOLLOW
+                        || attributes.fileKey() == null) {
+                    return true;
+                }
+                return Walk.this.walked.add(attributes.fileKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.verapdf.rest.validation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.verapdf.core.VeraPDFException;
+
+/**
+ * A thread safe source of the files that make up a batch, read by the
+ * workers of a {@link ParallelBatchProcessor}. Files may still be being
+ * discovered while the batch is processed.
+ */
+public interface FileSource extends Closeable {
+    /**
+     * Take the next file, waiting for one to be discovered if necessary.
+     *
+     * @return the next {@link File} to process, or null once the source is
+     *         exhausted
+     * @throws InterruptedException
+     *             if interrupted while waiting for a file
+     * @throws VeraPDFException
+     *             if discovering files failed
+     */
+    File next() throws InterruptedException, VeraPDFException;
+
+    /**
+     * Stop discovering files, any that haven't been taken are discarded.
+     */
+    @Override
+    void close();
+
+    /**
+     * A {@link FileSource} over a list of files that are already known.
+     */
+    final class ListSource implements FileSource {
+        private final List<? extends File> files;
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * @param files
+         *            the files to process, in order
+         */
+        public ListSource(final List<? extends File> files) {
+            this.files = files;
+        }
+
+        @Override
+        public File next() {
+            int index = this.next.getAndIncrement();
+            return (index < this.files.size()) ? this.files.get(index) : null;
+        }
+
+        @Override
+        public void close() {
+            this.next.set(this.files.size());
+        }
+    }
+}
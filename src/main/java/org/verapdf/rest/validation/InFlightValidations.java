@@ -0,0 +1,277 @@
+package org.verapdf.rest.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The work queued and running on the {@link ValidationExecutor}'s workers, so
+ * that a stuck document can be found, and cancelled, from the admin port
+ * rather than a thread dump. Each task is registered as a {@link Validation}
+ * for as long as a worker runs it, the task describes the document it's
+ * validating and the stage it's in through the static methods, which act on
+ * the current thread's task like {@link ValidationDeadline#checkCurrent()}.
+ * <p>
+ * A directory validation's workers each describe the file they're processing,
+ * cancelling one cancels the request it belongs to, so a whole batch stops.
+ */
+public final class InFlightValidations {
+    private static final ThreadLocal<Validation> CURRENT = new ThreadLocal<>();
+    private static final String STARTED_STAGE = "started"; //$NON-NLS-1$
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentMap<Long, Validation> running = new ConcurrentHashMap<>();
+
+    /**
+     * Wrap a task about to be queued on the pool, so that it's counted while
+     * queued and registered while it runs.
+     *
+     * @param task
+     *            the task to track
+     * @return the tracked task
+     */
+    Runnable track(final Runnable task) {
+        this.queued.incrementAndGet();
+        return new Runnable() {
+            @Override
+            public void run() {
+                InFlightValidations.this.queued.decrementAndGet();
+                Validation validation = new Validation(InFlightValidations.this.ids.incrementAndGet(),
+                        Thread.currentThread().getName());
+                InFlightValidations.this.running.put(Long.valueOf(validation.id), validation);
+                CURRENT.set(validation);
+                try {
+                    task.run();
+                } finally {
+                    CURRENT.remove();
+                    InFlightValidations.this.running.remove(Long.valueOf(validation.id));
+                }
+            }
+        };
+    }
+
+    /**
+     * Stop counting a tracked task that the pool rejected.
+     */
+    void rejected() {
+        this.queued.decrementAndGet();
+    }
+
+    /**
+     * @return the number of tasks waiting for a worker, including tasks
+     *         cancelled before a worker reached them
+     */
+    public int getQueued() {
+        return this.queued.get();
+    }
+
+    /**
+     * @return the {@link Validation Validations} running, oldest first
+     */
+    public List<Validation> getRunning() {
+        List<Validation> validations = new ArrayList<>(this.running.values());
+        Collections.sort(validations, new Comparator<Validation>() {
+            @Override
+            public int compare(Validation first, Validation second) {
+                return Long.compare(first.id, second.id);
+            }
+        });
+        return validations;
+    }
+
+    /**
+     * Cancel a running validation, it stops at its next deadline check.
+     *
+     * @param id
+     *            the id of the {@link Validation}
+     * @return true if the validation was running and could be cancelled,
+     *         false if it has completed or has no deadline
+     */
+    public boolean cancel(final long id) {
+        Validation validation = this.running.get(Long.valueOf(id));
+        return validation != null && validation.cancel();
+    }
+
+    /**
+     * Note the deadline of the task running on the current thread, so that it
+     * can be cancelled.
+     *
+     * @param deadline
+     *            the {@link ValidationDeadline} the task is bound to
+     */
+    static void bindCurrent(final ValidationDeadline deadline) {
+        Validation validation = CURRENT.get();
+        if (validation != null) {
+            validation.deadline = deadline;
+        }
+    }
+
+    /**
+     * Describe the document the task running on the current thread has
+     * started validating, if it's one of the pool's tasks.
+     *
+     * @param document
+     *            the path of the file, or the SHA-1 of the upload, being
+     *            validated
+     * @param flavour
+     *            the {@link PDFAFlavour} it's validated against,
+     *            {@link PDFAFlavour#NO_FLAVOUR} or null if it isn't known yet
+     * @param length
+     *            the length of the document in bytes
+     */
+    public static void describeCurrent(final String document, final PDFAFlavour flavour, final long length) {
+        Validation validation = CURRENT.get();
+        if (validation != null) {
+            validation.document = document;
+            validation.flavour = flavourId(flavour);
+            validation.length = Long.valueOf(length);
+            validation.stage = STARTED_STAGE;
+        }
+    }
+
+    /**
+     * Note the flavour of the document validated by the task running on the
+     * current thread, once it has been detected.
+     *
+     * @param flavour
+     *            the detected {@link PDFAFlavour}
+     */
+    public static void detectedCurrent(final PDFAFlavour flavour) {
+        Validation validation = CURRENT.get();
+        if (validation != null) {
+            validation.flavour = flavourId(flavour);
+        }
+    }
+
+    /**
+     * Note the stage the task running on the current thread has reached.
+     *
+     * @param stage
+     *            the {@link ValidationStages.Stage} it has entered
+     */
+    public static void enterCurrent(final ValidationStages.Stage stage) {
+        Validation validation = CURRENT.get();
+        if (validation != null) {
+            validation.stage = stage.getId();
+        }
+    }
+
+    private static String flavourId(final PDFAFlavour flavour) {
+        return (flavour == null || flavour == PDFAFlavour.NO_FLAVOUR) ? null : flavour.getId();
+    }
+
+    /**
+     * A task running on one of the pool's workers, with the document it's
+     * validating and the stage it's in, if it has said.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Validation {
+        private static final String CANCEL_REASON = "The validation was cancelled by an administrator."; //$NON-NLS-1$
+
+        private final long id;
+        private final String thread;
+        private final long startNanos = System.nanoTime();
+        private volatile ValidationDeadline deadline = null;
+        private volatile String document = null;
+        private volatile String flavour = null;
+        private volatile Long length = null;
+        private volatile String stage = STARTED_STAGE;
+
+        Validation(final long id, final String thread) {
+            this.id = id;
+            this.thread = thread;
+        }
+
+        /**
+         * @return the id the validation is cancelled with
+         */
+        @JsonProperty
+        public long getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the name of the worker thread running the validation, as
+         *         shown in a thread dump
+         */
+        @JsonProperty
+        public String getThread() {
+            return this.thread;
+        }
+
+        /**
+         * @return the path of the file, or the SHA-1 of the upload, being
+         *         validated, or null if it hasn't said
+         */
+        @JsonProperty
+        public String getDocument() {
+            return this.document;
+        }
+
+        /**
+         * @return the id of the flavour the document is validated against, or
+         *         null until it's known
+         */
+        @JsonProperty
+        public String getFlavour() {
+            return this.flavour;
+        }
+
+        /**
+         * @return the length of the document in bytes, or null if it hasn't
+         *         said
+         */
+        @JsonProperty
+        public Long getLength() {
+            return this.length;
+        }
+
+        /**
+         * @return the stage the validation has reached, {@code started} until
+         *         it enters its first
+         */
+        @JsonProperty
+        public String getStage() {
+            return this.stage;
+        }
+
+        /**
+         * @return the time the validation has been running in milliseconds
+         */
+        @JsonProperty
+        public long getElapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+        }
+
+        /**
+         * @return why the validation's request has been stopped, or null if it
+         *         hasn't
+         */
+        @JsonProperty
+        public String getStoppedReason() {
+            ValidationDeadline current = this.deadline;
+            return (current == null) ? null : current.getReason();
+        }
+
+        boolean cancel() {
+            ValidationDeadline current = this.deadline;
+            if (current == null) {
+                return false;
+            }
+            current.cancel(CANCEL_REASON);
+            return true;
+        }
+    }
+}
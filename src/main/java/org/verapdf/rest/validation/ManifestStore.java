@@ -0,0 +1,85 @@
+package org.verapdf.rest.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.core.VeraPDFException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Holds the {@link ValidationManifest}s of the directories that have been
+ * validated incrementally, each in its own sub-directory named by the SHA-1
+ * of the validated directory's canonical path. Only one incremental
+ * validation of a directory may run at a time.
+ */
+public final class ManifestStore {
+    private final File directory;
+    private final ObjectMapper mapper;
+    private final Set<File> inUse = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /**
+     * @param directory
+     *            the directory manifests are stored in
+     * @param mapper
+     *            the {@link ObjectMapper} used to read and write manifest
+     *            indexes
+     */
+    public ManifestStore(final File directory, final ObjectMapper mapper) {
+        this.directory = directory;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Open the manifest of a directory, creating an empty one if it's never
+     * been validated incrementally before.
+     *
+     * @param root
+     *            the directory being validated
+     * @param limits
+     *            the {@link ValidationLimits} of the validation, recorded
+     *            results are only reused by validations with the same limits
+     * @return the directory's {@link ValidationManifest}, the caller must
+     *         close it to save the manifest
+     * @throws VeraPDFException
+     *             if the manifest can't be read
+     * @throws WebApplicationException
+     *             with status 409 if the directory is already being validated
+     *             incrementally
+     */
+    public ValidationManifest open(final File root, final ValidationLimits limits) throws VeraPDFException {
+        final File canonical;
+        try {
+            canonical = root.getCanonicalFile();
+        } catch (IOException excep) {
+            throw new VeraPDFException("Couldn't resolve directory " + root, excep); //$NON-NLS-1$
+        }
+        if (!this.inUse.add(canonical)) {
+            throw new WebApplicationException(Response.status(Status.CONFLICT).type(MediaType.TEXT_PLAIN)
+                    .entity("An incremental validation of " + root + " is already running.").build()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        try {
+            return ValidationManifest.load(this, canonical, root.getAbsoluteFile(),
+                    new File(this.directory, DigestUtils.sha1Hex(canonical.getPath())), this.mapper, limits);
+        } catch (IOException excep) {
+            this.inUse.remove(canonical);
+            throw new VeraPDFException("Couldn't read the validation manifest of " + root, excep); //$NON-NLS-1$
+        } catch (RuntimeException excep) {
+            this.inUse.remove(canonical);
+            throw excep;
+        }
+    }
+
+    void release(final File root) {
+        this.inUse.remove(root);
+    }
+}
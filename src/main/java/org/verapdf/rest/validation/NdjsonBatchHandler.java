@@ -0,0 +1,105 @@
+package org.verapdf.rest.validation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.processor.BatchProcessingHandler;
+import org.verapdf.processor.ProcessorConfig;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.TaskResult;
+import org.verapdf.processor.TaskType;
+import org.verapdf.processor.reports.BatchSummary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a batch's results as newline delimited JSON, one line per processed
+ * item as soon as its result is handled, followed by a final line holding the
+ * {@link BatchSummary}. Each line is flushed as it's written so that a client
+ * reading the stream can start work on a result while the rest of the batch
+ * is still being validated. A {@link ParallelBatchProcessor} calls the
+ * handler from the thread waiting for the batch, not its workers, so writing
+ * to a slow client doesn't hold up the validation pool.
+ * <p>
+ * An item's line holds its {@code item} details and either its
+ * {@code validationResult} or, if it couldn't be validated, an {@code error}
+ * message. The summary line holds a single {@code batchSummary} property.
+ * <p>
+ * The handler doesn't own the output stream, closing it is left to the
+ * caller.
+ */
+public final class NdjsonBatchHandler implements BatchProcessingHandler {
+    /** The newline delimited JSON media type */
+    public static final String MEDIA_TYPE = "application/x-ndjson"; //$NON-NLS-1$
+
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper mapper;
+    private final OutputStream output;
+
+    /**
+     * @param mapper
+     *            the {@link ObjectMapper} used to write each line
+     * @param output
+     *            the {@link OutputStream} the lines are written to
+     */
+    public NdjsonBatchHandler(final ObjectMapper mapper, final OutputStream output) {
+        this.mapper = mapper;
+        this.output = output;
+    }
+
+    @Override
+    public void handleBatchStart(final ProcessorConfig config) {
+        // Nothing is written until the first result arrives
+    }
+
+    @Override
+    public void handleResult(final ProcessorResult result) throws VeraPDFException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("item", result.getProcessedItem()); //$NON-NLS-1$
+        TaskResult validation = result.getResultForTask(TaskType.VALIDATE);
+        if (validation != null && validation.isExecuted() && validation.isSuccess()) {
+            line.put("validationResult", result.getValidationResult()); //$NON-NLS-1$
+        } else {
+            line.put("error", errorMessage(result)); //$NON-NLS-1$
+        }
+        writeLine(line);
+    }
+
+    @Override
+    public void handleBatchEnd(final BatchSummary summary) throws VeraPDFException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("batchSummary", summary); //$NON-NLS-1$
+        writeLine(line);
+    }
+
+    @Override
+    public void close() {
+        // The output stream belongs to the caller
+    }
+
+    private void writeLine(final Map<String, Object> line) throws VeraPDFException {
+        try {
+            this.output.write(this.mapper.writeValueAsBytes(line));
+            this.output.write(NEWLINE);
+            this.output.flush();
+        } catch (IOException excep) {
+            throw new VeraPDFException("IOException writing NDJSON result", excep); //$NON-NLS-1$
+        }
+    }
+
+    private static String errorMessage(final ProcessorResult result) {
+        if (result.isEncryptedPdf()) {
+            return "PDF is encrypted"; //$NON-NLS-1$
+        }
+        for (TaskResult taskResult : result.getResultSet()) {
+            if (!taskResult.isSuccess() && taskResult.getException() != null) {
+                return taskResult.getException().getMessage();
+            }
+        }
+        return result.isPdf() ? "Validation failed" : "Not a PDF"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,380 @@
+package org.verapdf.rest.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.processor.BatchProcessingHandler;
+import org.verapdf.processor.ItemProcessor;
+import org.verapdf.processor.ProcessorConfig;
+import org.verapdf.processor.ProcessorFactory;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.reports.BatchSummary;
+
+/**
+ * Processes files as a single batch, sharding the files across
+ * workers on the {@link ValidationExecutor}'s pool. Each worker takes the next
+ * unprocessed file from a shared {@link FileSource} until it's exhausted, so a
+ * slow document only holds up the worker processing it. The source may still
+ * be finding files while the workers process the first of them. Results are
+ * passed to the batch's {@link BatchProcessingHandler} and summarised as they
+ * complete, the handler sees each result once, in completion order, on the
+ * thread that called {@code process}. The workers hand their results over
+ * through a small bounded queue, so a handler writing to a slow client holds
+ * up the workers once the queue is full but isn't called from the pool.
+ * <p>
+ * A worker doesn't hold a pool thread for the whole batch. It runs as a chain
+ * of short tasks, each processes files for a slice of time with its own
+ * {@link ItemProcessor} and then queues the next behind the work submitted
+ * meanwhile, so uploads and other validations run in between rather than
+ * waiting for, and timing out behind, a large directory. If the queue is full
+ * the task carries on instead.
+ * <p>
+ * The number of workers comes from
+ * {@link ValidationExecutor#getBatchWorkers()}, with one worker the files are
+ * processed in the order they are found, as the veraPDF file batch processor would.
+ * <p>
+ * The workers are bound to the batch's {@link ValidationDeadline}. Once it
+ * passes, or is cancelled because the client disconnected, the workers stop
+ * taking files and the batch ends early with the results of the files
+ * processed so far, the summary only counts those files.
+ */
+public final class ParallelBatchProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBatchProcessor.class);
+
+    private static final long POLL_MILLIS = 250;
+    // How long a worker's task processes files before it queues the next
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    // Results the workers can get ahead of the handler by
+    private static final int RESULTS_CAPACITY = 64;
+
+    private final ProcessorConfig config;
+    private final ValidationExecutor executor;
+    private final ValidationDeadline deadline;
+    private final ValidationExecutor.ClientConnection connection;
+
+    /**
+     * Create a processor whose batches have no deadline.
+     *
+     * @param config
+     *            the {@link ProcessorConfig} each worker's processor is created
+     *            from
+     * @param executor
+     *            the {@link ValidationExecutor} the workers run on
+     */
+    public ParallelBatchProcessor(final ProcessorConfig config, final ValidationExecutor executor) {
+        this(config, executor, ValidationDeadline.unlimited(), null);
+    }
+
+    /**
+     * @param config
+     *            the {@link ProcessorConfig} each worker's processor is created
+     *            from
+     * @param executor
+     *            the {@link ValidationExecutor} the workers run on
+     * @param deadline
+     *            the {@link ValidationDeadline} of the batch
+     * @param connection
+     *            the {@link ValidationExecutor.ClientConnection} of the client
+     *            waiting for the batch, or null if it isn't watched
+     */
+    public ParallelBatchProcessor(final ProcessorConfig config, final ValidationExecutor executor,
+                                  final ValidationDeadline deadline,
+                                  final ValidationExecutor.ClientConnection connection) {
+        this.config = config;
+        this.executor = executor;
+        this.deadline = deadline;
+        this.connection = connection;
+    }
+
+    /**
+     * Process the files, blocking until the whole batch has completed.
+     *
+     * @param files
+     *            the files to process
+     * @param handler
+     *            the {@link BatchProcessingHandler} that receives the batch
+     *            start, every file's result and the batch summary
+     * @return the {@link BatchSummary} of the batch
+     * @throws VeraPDFException
+     *             if a file can't be processed, the remaining work is cancelled
+     * @throws javax.ws.rs.ServiceUnavailableException
+     *             if the validation pool's queue is full
+     */
+    public BatchSummary process(final List<? extends File> files, final BatchProcessingHandler handler)
+            throws VeraPDFException {
+        LOGGER.debug("Processing {} files", Integer.valueOf(files.size()));
+        return process(new FileSource.ListSource(files), null,
+                Math.min(this.executor.getBatchWorkers(), files.size()), handler);
+    }
+
+    /**
+     * Process the files from a source, blocking until the source is exhausted
+     * and the whole batch has completed. The source is closed when the batch
+     * ends.
+     *
+     * @param files
+     *            the {@link FileSource} of the files to process
+     * @param handler
+     *            the {@link BatchProcessingHandler} that receives the batch
+     *            start, every file's result and the batch summary
+     * @return the {@link BatchSummary} of the batch
+     * @throws VeraPDFException
+     *             if a file can't be processed or the source fails, the
+     *             remaining work is cancelled
+     * @throws javax.ws.rs.ServiceUnavailableException
+     *             if the validation pool's queue is full
+     */
+    public BatchSummary process(final FileSource files, final BatchProcessingHandler handler)
+            throws VeraPDFException {
+        return process(files, null, this.executor.getBatchWorkers(), handler);
+    }
+
+    /**
+     * Process the files from a source incrementally, only files that are new
+     * or have changed since the manifest was saved are processed, the rest
+     * contribute their recorded results to the batch. The source is closed
+     * when the batch ends, closing the manifest is left to the caller.
+     *
+     * @param files
+     *            the {@link FileSource} of the files to process
+     * @param manifest
+     *            the {@link ValidationManifest} of the files' directory
+     * @param handler
+     *            the {@link BatchProcessingHandler} that receives the batch
+     *            start, every file's result and the batch summary
+     * @return the {@link BatchSummary} of the batch
+     * @throws VeraPDFException
+     *             if a file can't be processed or the source fails, the
+     *             remaining work is cancelled
+     * @throws javax.ws.rs.ServiceUnavailableException
+     *             if the validation pool's queue is full
+     */
+    public BatchSummary process(final FileSource files, final ValidationManifest manifest,
+                                final BatchProcessingHandler handler)
+            throws VeraPDFException {
+        return process(files, manifest, this.executor.getBatchWorkers(), handler);
+    }
+
+    private BatchSummary process(final FileSource files, final ValidationManifest manifest, final int maxWorkers,
+                                 final BatchProcessingHandler handler)
+            throws VeraPDFException {
+        final ProcessorFactory.BatchSummariser summariser = new ProcessorFactory.BatchSummariser(this.config);
+        int workers = Math.max(1, maxWorkers);
+        LOGGER.debug("Processing files with {} workers", Integer.valueOf(workers));
+
+        final BlockingQueue<ProcessorResult> results = new ArrayBlockingQueue<>(RESULTS_CAPACITY);
+        List<Worker> shards = new ArrayList<>(workers);
+        try {
+            handler.handleBatchStart(this.config);
+            for (int i = 0; i < workers; i++) {
+                Worker worker = new Worker(files, manifest, results);
+                worker.submit();
+                shards.add(worker);
+            }
+            handleResults(shards, results, handler, summariser);
+        } catch (InterruptedException excep) {
+            this.deadline.cancel("Interrupted while waiting for the batch to complete."); //$NON-NLS-1$
+            cancel(shards);
+            Thread.currentThread().interrupt();
+            throw new VeraPDFException("Interrupted while waiting for the batch to complete", excep); //$NON-NLS-1$
+        } catch (ExecutionException excep) {
+            // Stops the other workers' validations in progress, not only their next file
+            this.deadline.cancel("The batch failed."); //$NON-NLS-1$
+            cancel(shards);
+            throw ValidationExecutor.unwrap(excep.getCause());
+        } catch (VeraPDFException | RuntimeException excep) {
+            this.deadline.cancel("The batch failed."); //$NON-NLS-1$
+            cancel(shards);
+            throw excep;
+        } finally {
+            files.close();
+        }
+
+        if (this.deadline.isExpired()) {
+            LOGGER.warn("Batch stopped before completing, {} seconds allowed",
+                    Long.valueOf(this.deadline.getBudgetSeconds()));
+        }
+        BatchSummary summary = summariser.summarise();
+        handler.handleBatchEnd(summary);
+        return summary;
+    }
+
+    /*
+     * Pass the workers' results to the handler and summariser until every
+     * worker has completed, cancelling the batch if its client disconnects.
+     */
+    private void handleResults(final List<Worker> shards, final BlockingQueue<ProcessorResult> results,
+                               final BatchProcessingHandler handler,
+                               final ProcessorFactory.BatchSummariser summariser)
+            throws VeraPDFException, InterruptedException, ExecutionException {
+        List<Worker> running = new ArrayList<>(shards);
+        while (!running.isEmpty()) {
+            ProcessorResult result = results.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (result != null) {
+                handler.handleResult(result);
+                summariser.addProcessingResult(result);
+            } else if (this.connection != null && !this.connection.isOpen()) {
+                LOGGER.info("Client disconnected, batch cancelled");
+                this.deadline.cancel("The client disconnected."); //$NON-NLS-1$
+            }
+            for (Iterator<Worker> workers = running.iterator(); workers.hasNext();) {
+                if (workers.next().isDone()) {
+                    workers.remove();
+                }
+            }
+        }
+        // The results handed over as the last workers completed
+        for (ProcessorResult result = results.poll(); result != null; result = results.poll()) {
+            handler.handleResult(result);
+            summariser.addProcessingResult(result);
+        }
+    }
+
+    /*
+     * Process files until the source is exhausted, the batch is stopped or the
+     * slice is used up, returning true if the worker should carry on.
+     */
+    private boolean processSlice(final FileSource files, final ValidationManifest manifest,
+                                 final BlockingQueue<ProcessorResult> results)
+            throws VeraPDFException, InterruptedException {
+        long sliceStart = System.nanoTime();
+        boolean more = false;
+        try (ItemProcessor processor = ProcessorFactory.createProcessor(this.config)) {
+            File file;
+            while (!Thread.currentThread().isInterrupted() && !this.deadline.isExpired()
+                    && (file = files.next()) != null) {
+                LOGGER.trace("Processing {}", file.getAbsolutePath());
+                InFlightValidations.describeCurrent(file.getAbsolutePath(), null, file.length());
+                InFlightValidations.enterCurrent(ValidationStages.Stage.VALIDATE);
+                ProcessorResult result;
+                try {
+                    result = (manifest != null) ? manifest.process(file, processor) : processor.process(file);
+                } catch (ValidationCancelledException excep) {
+                    LOGGER.debug("Stopped processing {}: {}", file.getAbsolutePath(), excep.getMessage());
+                    break;
+                }
+                if (!handOver(results, result)) {
+                    break;
+                }
+                if (System.nanoTime() - sliceStart >= SLICE_NANOS) {
+                    more = true;
+                    break;
+                }
+            }
+        } catch (IOException excep) {
+            LOGGER.debug("IOException closing batch worker's processor", excep);
+        }
+        return more;
+    }
+
+    /*
+     * Hand a result to the thread handling the batch's results, waiting while
+     * the queue is full, returning false if the batch is stopped first.
+     */
+    private boolean handOver(final BlockingQueue<ProcessorResult> results, final ProcessorResult result)
+            throws InterruptedException {
+        while (!results.offer(result, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (this.deadline.isExpired()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void cancel(final List<Worker> shards) {
+        for (Worker shard : shards) {
+            shard.cancel();
+        }
+    }
+
+    /*
+     * One of the batch's workers, a chain of tasks on the pool. The task
+     * running, or queued, is the worker's current task until it queues the
+     * next. A task is made current before it's queued, so that it can't run
+     * and make its own successor current first.
+     */
+    private final class Worker implements Callable<Void> {
+        private final FileSource files;
+        private final ValidationManifest manifest;
+        private final BlockingQueue<ProcessorResult> results;
+        private volatile Future<Void> current = null;
+
+        Worker(final FileSource files, final ValidationManifest manifest,
+               final BlockingQueue<ProcessorResult> results) {
+            this.files = files;
+            this.manifest = manifest;
+            this.results = results;
+        }
+
+        /*
+         * Queue the worker's first task, rejecting the batch if the queue is
+         * full.
+         */
+        void submit() {
+            FutureTask<Void> first = new FutureTask<>(ParallelBatchProcessor.this.deadline.bind(this));
+            this.current = first;
+            ParallelBatchProcessor.this.executor.submit(first);
+        }
+
+        @Override
+        public Void call() throws VeraPDFException, InterruptedException {
+            // Nothing else replaces the current task while it runs
+            final Future<Void> running = this.current;
+            while (processSlice(this.files, this.manifest, this.results)) {
+                FutureTask<Void> next = new FutureTask<>(ParallelBatchProcessor.this.deadline.bind(this));
+                this.current = next;
+                if (ParallelBatchProcessor.this.executor.offer(next)) {
+                    return null;
+                }
+                // The queue is full, this task carries on and the one that
+                // wasn't queued is cancelled for anyone waiting on it
+                this.current = running;
+                next.cancel(false);
+            }
+            return null;
+        }
+
+        /*
+         * Whether the worker's last task has completed, a task queues the next
+         * before it completes so the current task is the last once it has
+         * completed without replacing itself. A successor that couldn't be
+         * queued is cancelled once its predecessor is current again. A task
+         * that found the deadline had passed before it started has simply
+         * processed nothing.
+         */
+        boolean isDone() throws InterruptedException, ExecutionException {
+            Future<Void> task = this.current;
+            if (!task.isDone() || task != this.current) {
+                return false;
+            }
+            try {
+                task.get();
+            } catch (ExecutionException excep) {
+                if (!(excep.getCause() instanceof ValidationCancelledException)) {
+                    throw excep;
+                }
+            }
+            return true;
+        }
+
+        void cancel() {
+            Future<Void> task = this.current;
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+    }
+}
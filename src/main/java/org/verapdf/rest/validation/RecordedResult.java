@@ -0,0 +1,156 @@
+package org.verapdf.rest.validation;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+import org.verapdf.component.AuditDuration;
+import org.verapdf.component.AuditDurationImpl;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.features.FeatureExtractionResult;
+import org.verapdf.pdfa.results.MetadataFixerResult;
+import org.verapdf.pdfa.results.MetadataFixerResultImpl;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.TaskResult;
+import org.verapdf.processor.TaskType;
+import org.verapdf.processor.reports.ItemDetails;
+import org.verapdf.report.FeaturesReport;
+
+/**
+ * The {@link ProcessorResult} of a file whose {@link ValidationResult} was
+ * recorded by a {@link ValidationManifest}, as it would be reported if the
+ * file was validated again. The validation task has a zero length duration
+ * starting when the result was reused, no other task was executed.
+ */
+final class RecordedResult implements ProcessorResult {
+    private final ItemDetails item;
+    private final ValidationResult validationResult;
+    private final EnumMap<TaskType, TaskResult> results = new EnumMap<>(TaskType.class);
+
+    RecordedResult(final File file, final ValidationResult validationResult) {
+        this.item = ItemDetails.fromFile(file);
+        this.validationResult = validationResult;
+        this.results.put(TaskType.VALIDATE, new ValidateTask(System.currentTimeMillis()));
+    }
+
+    @Override
+    public ItemDetails getProcessedItem() {
+        return this.item;
+    }
+
+    @Override
+    public EnumMap<TaskType, TaskResult> getResults() {
+        return this.results.clone();
+    }
+
+    @Override
+    public EnumSet<TaskType> getTaskTypes() {
+        return EnumSet.copyOf(this.results.keySet());
+    }
+
+    @Override
+    public Collection<TaskResult> getResultSet() {
+        return Collections.unmodifiableCollection(this.results.values());
+    }
+
+    @Override
+    public TaskResult getResultForTask(final TaskType type) {
+        return this.results.get(type);
+    }
+
+    @Override
+    public ValidationResult getValidationResult() {
+        return this.validationResult;
+    }
+
+    @Override
+    public FeaturesReport getFeaturesReport() {
+        return FeaturesReport.fromValues(new FeatureExtractionResult());
+    }
+
+    @Override
+    public MetadataFixerResult getFixerResult() {
+        return MetadataFixerResultImpl.fromValues(MetadataFixerResult.RepairStatus.NO_ACTION,
+                Collections.<String>emptyList());
+    }
+
+    @Override
+    public boolean isPdf() {
+        return true;
+    }
+
+    @Override
+    public boolean isEncryptedPdf() {
+        return false;
+    }
+
+    /*
+     * The successful validation task of a recorded result.
+     */
+    private static final class ValidateTask implements TaskResult {
+        private final AuditDuration duration;
+
+        ValidateTask(final long time) {
+            this.duration = new Instant(time);
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return true;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return true;
+        }
+
+        @Override
+        public TaskType getType() {
+            return TaskType.VALIDATE;
+        }
+
+        @Override
+        public VeraPDFException getException() {
+            return null;
+        }
+
+        @Override
+        public AuditDuration getDuration() {
+            return this.duration;
+        }
+    }
+
+    /*
+     * A zero length duration.
+     */
+    private static final class Instant implements AuditDuration {
+        private final long time;
+
+        Instant(final long time) {
+            this.time = time;
+        }
+
+        @Override
+        public long getStart() {
+            return this.time;
+        }
+
+        @Override
+        public long getFinish() {
+            return this.time;
+        }
+
+        @Override
+        public long getDifference() {
+            return 0;
+        }
+
+        @Override
+        public String getDuration() {
+            return AuditDurationImpl.getStringDuration(0);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.verapdf.rest.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.openpreservation.bytestreams.DigestAlgorithm;
+
+/**
+ * An uploaded byte stream that has been read in full by an {@link UploadSpool}.
+ * Small uploads are held in memory, larger ones in a temp file, either way the
+ * upload's length, SHA-1 and any other requested digests were calculated as it
+ * was read. The time spent receiving, spooling and hashing the upload is
+ * recorded for the {@link ValidationStages} timers. Closing the upload
+ * deletes any temp file and releases its space in the spool.
+ */
+public final class SpooledUpload implements Closeable {
+    private final UploadSpool spool;
+    private final byte[] bytes;
+    private final long length;
+    private final Map<DigestAlgorithm, String> digests;
+    private final long receiveNanos;
+    private final long spoolNanos;
+    private final long sha1Nanos;
+    private File file;
+    private boolean closed = false;
+
+    SpooledUpload(final UploadSpool spool, final byte[] bytes, final File file, final long length,
+                  final Map<DigestAlgorithm, String> digests, final long receiveNanos, final long spoolNanos,
+                  final long sha1Nanos) {
+        this.spool = spool;
+        this.bytes = bytes;
+        this.file = file;
+        this.length = length;
+        this.digests = digests;
+        this.receiveNanos = receiveNanos;
+        this.spoolNanos = spoolNanos;
+        this.sha1Nanos = sha1Nanos;
+    }
+
+    /**
+     * @return the length of the upload in bytes
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the upload, as calculated while it was
+     *         spooled
+     */
+    public String getSha1Hex() {
+        return this.digests.get(DigestAlgorithm.SHA1);
+    }
+
+    /**
+     * @param algorithm
+     *            the {@link DigestAlgorithm} of the digest
+     * @return the hex encoded digest of the upload, as calculated while it was
+     *         spooled, or null if it wasn't requested
+     */
+    public String getHexDigest(final DigestAlgorithm algorithm) {
+        return this.digests.get(algorithm);
+    }
+
+    /**
+     * @return the nanoseconds spent waiting for the upload's bytes to arrive
+     */
+    public long getReceiveNanos() {
+        return this.receiveNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent writing the upload to memory or its temp
+     *         file
+     */
+    public long getSpoolNanos() {
+        return this.spoolNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent calculating the upload's SHA-1
+     */
+    public long getSha1Nanos() {
+        return this.sha1Nanos;
+    }
+
+    /**
+     * @return true if the upload is held in memory rather than a temp file
+     */
+    public boolean isInMemory() {
+        return this.bytes != null;
+    }
+
+    /**
+     * @return a new {@link InputStream} that reads the upload from the start,
+     *         the caller must close it
+     * @throws IOException
+     *             if the upload's temp file can't be opened
+     */
+    public InputStream openStream() throws IOException {
+        return (this.bytes != null) ? new ByteArrayInputStream(this.bytes) : new FileInputStream(this.file);
+    }
+
+    /**
+     * Return the temp file holding the upload, writing an in memory upload to
+     * a temp file first if necessary. The file is owned by this upload and is
+     * deleted when it's closed.
+     *
+     * @return the temp {@link File} holding the upload
+     * @throws IOException
+     *             if an in memory upload can't be written to a temp file, or
+     *             the upload has been closed
+     * @throws javax.ws.rs.ServiceUnavailableException
+     *             if the spool directory is full
+     */
+    public synchronized File getFile() throws IOException {
+        if (this.closed) {
+            // A cancelled validation mustn't leave a temp file behind
+            throw new IOException("The upload has been closed"); //$NON-NLS-1$
+        }
+        if (this.file == null) {
+            this.file = this.spool.writeTempFile(this.bytes);
+        }
+        return this.file;
+    }
+
+    /**
+     * Delete the upload's temp file, if any.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        if (this.file != null) {
+            this.spool.release(this.file, this.length);
+            this.file = null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.verapdf.rest.validation;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The documents of a batch upload, read one at a time in the order they were
+ * sent. An entry's stream is only valid until the next entry is taken, so each
+ * is spooled before moving on. Entries aren't thread safe, they're read by the
+ * single thread handling the upload.
+ */
+public interface UploadEntries extends Closeable {
+    /**
+     * Take the next document of the upload.
+     *
+     * @return the next {@link Entry}, or null once the upload is exhausted
+     * @throws IOException
+     *             if the upload can't be read
+     */
+    Entry next() throws IOException;
+
+    /**
+     * A single document of a batch upload.
+     */
+    final class Entry {
+        private final String name;
+        private final InputStream stream;
+
+        /**
+         * @param name
+         *            the name the document was sent with
+         * @param stream
+         *            the {@link InputStream} of the document's bytes, closing
+         *            it is left to the {@link UploadEntries}
+         */
+        public Entry(final String name, final InputStream stream) {
+            this.name = name;
+            this.stream = stream;
+        }
+
+        /**
+         * @return the name the document was sent with
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return the {@link InputStream} of the document's bytes
+         */
+        public InputStream getStream() {
+            return this.stream;
+        }
+    }
+
+    /**
+     * The files of a ZIP archive, read from a stream as the archive arrives
+     * rather than from a file, so the archive as a whole is never held by the
+     * server. Directories are skipped.
+     */
+    final class ZipEntries implements UploadEntries {
+        private final ZipInputStream zip;
+
+        /**
+         * @param archive
+         *            the {@link InputStream} of the ZIP archive, closed when the
+         *            entries are
+         */
+        public ZipEntries(final InputStream archive) {
+            this.zip = new ZipInputStream(archive);
+        }
+
+        @Override
+        public Entry next() throws IOException {
+            ZipEntry entry;
+            while ((entry = this.zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    // The spool mustn't close the archive when it's done with an entry
+                    return new Entry(entry.getName(), new FilterInputStream(this.zip) {
+                        @Override
+                        public void close() {
+                            // The archive is closed with the entries
+                        }
+                    });
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.zip.close();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package org.verapdf.rest.validation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.commons.codec.binary.Hex;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Reads uploaded byte streams to completion through a small, fixed size
+ * buffer, calculating their SHA-1, and any other requested digests, as
+ * they're read. Uploads up to a configured
+ * threshold are held in memory, anything larger is written to a temp file, so
+ * the heap used per request is bounded by the threshold rather than the size
+ * of the document.
+ * <p>
+ * Temp files are written to a dedicated spool directory. The spool limits the
+ * size of a single upload and the total bytes held on disk at any one time,
+ * uploads that would break either limit are rejected while they're being
+ * read. The spool directory also holds the intermediate XML of batch reports
+ * while they're rendered. Files left behind by a previous run are swept by
+ * {@link #sweepOrphans()}.
+ */
+public final class UploadSpool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UploadSpool.class);
+    private static final String TEMP_FILE_PREFIX = "veraPDF-cache-"; //$NON-NLS-1$
+    private static final String TEMP_FILE_SUFFIX = ".pdf"; //$NON-NLS-1$
+    private static final String REPORT_FILE_PREFIX = "veraPDF-report-"; //$NON-NLS-1$
+    private static final String REPORT_FILE_SUFFIX = ".xml"; //$NON-NLS-1$
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final File directory;
+    private final int memoryThreshold;
+    private final long maxFileBytes;
+    private final long maxTotalBytes;
+    private final long retryAfterSeconds;
+    private final Meter rejected;
+    private final AtomicLong bytesInUse = new AtomicLong();
+    private final AtomicInteger filesInUse = new AtomicInteger();
+
+    /**
+     * @param directory
+     *            the directory temp files are written to
+     * @param memoryThreshold
+     *            the largest upload, in bytes, held in memory
+     * @param maxFileBytes
+     *            the largest upload, in bytes, accepted
+     * @param maxTotalBytes
+     *            the maximum total size, in bytes, of the spool's temp files
+     * @param retryAfterSeconds
+     *            the Retry-After value, in seconds, returned when the spool is
+     *            full
+     * @param rejected
+     *            a {@link Meter} marked whenever an upload is rejected
+     */
+    public UploadSpool(final File directory, final int memoryThreshold, final long maxFileBytes,
+                       final long maxTotalBytes, final long retryAfterSeconds, final Meter rejected) {
+        this.directory = directory;
+        this.memoryThreshold = memoryThreshold;
+        this.maxFileBytes = maxFileBytes;
+        this.maxTotalBytes = maxTotalBytes;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Read a stream to its end, calculating its SHA-1, the caller remains
+     * responsible for closing it.
+     *
+     * @param inStream
+     *            the uploaded {@link InputStream}
+     * @return a {@link SpooledUpload} holding the uploaded bytes, the caller
+     *         must close it
+     * @throws IOException
+     *             if the stream can't be read or the temp file written
+     */
+    public SpooledUpload spool(final InputStream inStream) throws IOException {
+        return spool(inStream, EnumSet.noneOf(DigestAlgorithm.class));
+    }
+
+    /**
+     * Read a stream to its end, calculating its SHA-1 and the requested
+     * digests in the same pass, the caller remains responsible for closing it.
+     *
+     * @param inStream
+     *            the uploaded {@link InputStream}
+     * @param algorithms
+     *            the digests to calculate in addition to SHA-1
+     * @return a {@link SpooledUpload} holding the uploaded bytes, the caller
+     *         must close it
+     * @throws IOException
+     *             if the stream can't be read or the temp file written
+     * @throws WebApplicationException
+     *             with status 413 if the upload is larger than the maximum
+     *             file size, or a {@link ServiceUnavailableException} if the
+     *             spool directory is full
+     */
+    public SpooledUpload spool(final InputStream inStream, final Set<DigestAlgorithm> algorithms)
+            throws IOException {
+        Map<DigestAlgorithm, MessageDigest> digests = new EnumMap<>(DigestAlgorithm.class);
+        digests.put(DigestAlgorithm.SHA1, DigestAlgorithm.SHA1.newDigest());
+        for (DigestAlgorithm algorithm : algorithms) {
+            digests.put(algorithm, algorithm.newDigest());
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteArrayOutputStream memory = new ByteArrayOutputStream(Math.min(this.memoryThreshold, BUFFER_SIZE));
+        MessageDigest sha1 = digests.get(DigestAlgorithm.SHA1);
+        File file = null;
+        OutputStream fos = null;
+        long length = 0L;
+        long reserved = 0L;
+        long receiveNanos = 0L;
+        long sha1Nanos = 0L;
+        long spoolNanos = 0L;
+        int bytesRead;
+        try {
+            long started = System.nanoTime();
+            while ((bytesRead = inStream.read(buffer)) > -1) {
+                long received = System.nanoTime();
+                receiveNanos += received - started;
+                sha1.update(buffer, 0, bytesRead);
+                long hashed = System.nanoTime();
+                sha1Nanos += hashed - received;
+                for (Map.Entry<DigestAlgorithm, MessageDigest> digest : digests.entrySet()) {
+                    if (digest.getKey() != DigestAlgorithm.SHA1) {
+                        digest.getValue().update(buffer, 0, bytesRead);
+                    }
+                }
+                long digested = System.nanoTime();
+                length += bytesRead;
+                if (length > this.maxFileBytes) {
+                    throw tooLarge();
+                }
+                if (fos == null && length > this.memoryThreshold) {
+                    // Over the threshold, move what we have so far to disk
+                    reserved += reserve(length);
+                    file = createTempFile();
+                    LOGGER.trace("Upload exceeds {} bytes, spooling to temp file {}",
+                            Integer.valueOf(this.memoryThreshold), file.getAbsolutePath());
+                    fos = new FileOutputStream(file);
+                    memory.writeTo(fos);
+                    memory = null;
+                } else if (fos != null) {
+                    reserved += reserve(bytesRead);
+                }
+                if (fos != null) {
+                    fos.write(buffer, 0, bytesRead);
+                } else {
+                    memory.write(buffer, 0, bytesRead);
+                }
+                started = System.nanoTime();
+                spoolNanos += started - digested;
+            }
+            if (fos != null) {
+                fos.close();
+                spoolNanos += System.nanoTime() - started;
+            }
+        } catch (IOException | RuntimeException excep) {
+            if (fos != null) {
+                closeQuietly(fos);
+            }
+            if (file != null) {
+                release(file, reserved);
+            } else {
+                this.bytesInUse.addAndGet(-reserved);
+            }
+            throw excep;
+        }
+        Map<DigestAlgorithm, String> hexDigests = new EnumMap<>(DigestAlgorithm.class);
+        for (Map.Entry<DigestAlgorithm, MessageDigest> entry : digests.entrySet()) {
+            hexDigests.put(entry.getKey(), Hex.encodeHexString(entry.getValue().digest()));
+        }
+        LOGGER.trace("Spooled upload of {} bytes with digests {}", Long.valueOf(length), hexDigests);
+        return new SpooledUpload(this, (memory != null) ? memory.toByteArray() : null, file, length, hexDigests,
+                receiveNanos, spoolNanos, sha1Nanos);
+    }
+
+    /**
+     * Delete any temp files left in the spool directory, for example by a
+     * previous run of the server that didn't shut down cleanly. Call before
+     * the spool's first use.
+     *
+     * @return the number of orphaned files deleted
+     */
+    public int sweepOrphans() {
+        File[] orphans = this.directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return (name.startsWith(TEMP_FILE_PREFIX) && name.endsWith(TEMP_FILE_SUFFIX))
+                        || (name.startsWith(REPORT_FILE_PREFIX) && name.endsWith(REPORT_FILE_SUFFIX));
+            }
+        });
+        int deleted = 0;
+        if (orphans != null) {
+            for (File orphan : orphans) {
+                if (orphan.delete()) {
+                    deleted++;
+                } else {
+                    LOGGER.warn("Couldn't delete orphaned temp file {}", orphan.getAbsolutePath());
+                }
+            }
+        }
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} orphaned temp files from {}", Integer.valueOf(deleted),
+                    this.directory.getAbsolutePath());
+        }
+        return deleted;
+    }
+
+    /**
+     * Create a temp file in the spool directory for a batch report's
+     * intermediate XML. Reports aren't subject to the upload size limits but
+     * are counted in the files in use until they're deleted with
+     * {@link #deleteReportFile(File)}.
+     *
+     * @return a new, empty temp {@link File}
+     * @throws IOException
+     *             if the file can't be created
+     */
+    public File createReportFile() throws IOException {
+        File report = File.createTempFile(REPORT_FILE_PREFIX, REPORT_FILE_SUFFIX, this.directory);
+        this.filesInUse.incrementAndGet();
+        return report;
+    }
+
+    /**
+     * @param report
+     *            a report file created by {@link #createReportFile()} to
+     *            delete
+     */
+    public void deleteReportFile(final File report) {
+        release(report, 0L);
+    }
+
+    /**
+     * Register gauges for the bytes and files currently held on disk.
+     *
+     * @param metrics
+     *            the {@link MetricRegistry} to register the gauges with
+     */
+    public void registerMetrics(final MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(UploadSpool.class, "bytes-in-use"), new Gauge<Long>() { //$NON-NLS-1$
+            @Override
+            public Long getValue() {
+                return Long.valueOf(UploadSpool.this.bytesInUse.get());
+            }
+        });
+        metrics.register(MetricRegistry.name(UploadSpool.class, "files-in-use"), new Gauge<Integer>() { //$NON-NLS-1$
+            @Override
+            public Integer getValue() {
+                return Integer.valueOf(UploadSpool.this.filesInUse.get());
+            }
+        });
+    }
+
+    /*
+     * Write an upload held in memory to a temp file, reserving its space.
+     */
+    File writeTempFile(final byte[] bytes) throws IOException {
+        reserve(bytes.length);
+        File temp = null;
+        try {
+            temp = createTempFile();
+            try (OutputStream fos = new FileOutputStream(temp)) {
+                fos.write(bytes);
+            }
+            return temp;
+        } catch (IOException | RuntimeException excep) {
+            if (temp != null) {
+                release(temp, bytes.length);
+            } else {
+                this.bytesInUse.addAndGet(-bytes.length);
+            }
+            throw excep;
+        }
+    }
+
+    /*
+     * Delete a temp file and release the space reserved for it.
+     */
+    void release(final File file, final long length) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Couldn't delete temp file {}", file.getAbsolutePath());
+        }
+        this.filesInUse.decrementAndGet();
+        this.bytesInUse.addAndGet(-length);
+    }
+
+    private File createTempFile() throws IOException {
+        File temp = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, this.directory);
+        this.filesInUse.incrementAndGet();
+        return temp;
+    }
+
+    private long reserve(final long bytes) {
+        long inUse;
+        do {
+            inUse = this.bytesInUse.get();
+            if (inUse + bytes > this.maxTotalBytes) {
+                this.rejected.mark();
+                LOGGER.warn("Spool directory is full, rejecting upload");
+                throw new ServiceUnavailableException(Response.status(Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, Long.valueOf(this.retryAfterSeconds))
+                        .type(MediaType.TEXT_PLAIN).entity("Upload spool is full, please retry later.").build()); //$NON-NLS-1$
+            }
+        } while (!this.bytesInUse.compareAndSet(inUse, inUse + bytes));
+        return bytes;
+    }
+
+    private WebApplicationException tooLarge() {
+        this.rejected.mark();
+        LOGGER.warn("Upload exceeds the maximum of {} bytes, rejecting upload", Long.valueOf(this.maxFileBytes));
+        return new WebApplicationException(Response.status(Status.REQUEST_ENTITY_TOO_LARGE)
+                .type(MediaType.TEXT_PLAIN).entity("Upload exceeds the maximum of " + this.maxFileBytes //$NON-NLS-1$
+                        + " bytes.").build()); //$NON-NLS-1$
+    }
+
+    private static void closeQuietly(final OutputStream toClose) {
+        try {
+            toClose.close();
+        } catch (IOException excep) {
+            LOGGER.debug("IOException closing temp file", excep);
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.verapdf.rest.validation;
+
+/**
+ * Thrown on a validation worker when the {@link ValidationDeadline} of the
+ * work it's doing has passed or been cancelled. It's unchecked so that it can
+ * escape the veraPDF rule engine, which is how a validation in progress is
+ * stopped.
+ */
+public final class ValidationCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message
+     *            why the validation was stopped
+     */
+    public ValidationCancelledException(final String message) {
+        super(message);
+    }
+}
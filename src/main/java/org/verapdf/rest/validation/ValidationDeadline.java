@@ -0,0 +1,153 @@
+package org.verapdf.rest.validation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wall-clock budget of a single request's validation work, which can also
+ * be cancelled early, for example when the client disconnects.
+ * <p>
+ * Work running on the validation pool is bound to its deadline, see
+ * {@link #bind(Callable)}, and calls {@link #checkCurrent()} at the points it
+ * can safely stop: between parsing and validation, between the files of a
+ * batch and, through {@link DeadlineContextFactory}, while the rule engine
+ * evaluates the profile's rules. Once the deadline has passed or been
+ * cancelled those checks throw a {@link ValidationCancelledException}, so a
+ * pathological document frees its worker instead of running to completion.
+ */
+public final class ValidationDeadline {
+    private static final ThreadLocal<ValidationDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long budgetSeconds;
+    private final long expiresNanos;
+    private volatile String cancelledReason = null;
+
+    private ValidationDeadline(final long budgetSeconds) {
+        this.budgetSeconds = budgetSeconds;
+        this.expiresNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(budgetSeconds);
+    }
+
+    /**
+     * @param budgetSeconds
+     *            the number of seconds the work may take from now
+     * @return a new {@link ValidationDeadline}
+     */
+    public static ValidationDeadline after(final long budgetSeconds) {
+        return new ValidationDeadline(budgetSeconds);
+    }
+
+    /**
+     * @return a new {@link ValidationDeadline} that never passes, though it
+     *         can still be cancelled
+     */
+    public static ValidationDeadline unlimited() {
+        return new ValidationDeadline(0L);
+    }
+
+    /**
+     * @return the number of seconds the work was given, 0 if it's unlimited
+     */
+    public long getBudgetSeconds() {
+        return this.budgetSeconds;
+    }
+
+    /**
+     * @return the nanoseconds left before the deadline passes, 0 or less once
+     *         it has passed, {@link Long#MAX_VALUE} if it's unlimited
+     */
+    public long remainingNanos() {
+        if (this.budgetSeconds == 0L) {
+            return Long.MAX_VALUE;
+        }
+        return this.expiresNanos - System.nanoTime();
+    }
+
+    /**
+     * @return true if the deadline has passed or been cancelled
+     */
+    public boolean isExpired() {
+        return this.cancelledReason != null || remainingNanos() <= 0;
+    }
+
+    /**
+     * Stop the work bound to the deadline at its next check.
+     *
+     * @param reason
+     *            why the work was cancelled, reported to the client
+     */
+    public void cancel(final String reason) {
+        if (this.cancelledReason == null) {
+            this.cancelledReason = reason;
+        }
+    }
+
+    /**
+     * @return why the work was stopped, or null if the deadline hasn't passed
+     *         and it hasn't been cancelled
+     */
+    public String getReason() {
+        String reason = this.cancelledReason;
+        if (reason != null) {
+            return reason;
+        }
+        if (remainingNanos() <= 0) {
+            return "Validation did not complete within " + this.budgetSeconds + " seconds."; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return null;
+    }
+
+    /**
+     * @throws ValidationCancelledException
+     *             if the deadline has passed or been cancelled
+     */
+    public void check() {
+        String reason = getReason();
+        if (reason != null) {
+            throw new ValidationCancelledException(reason);
+        }
+    }
+
+    /**
+     * Check the deadline of the work running on the current thread, if it has
+     * one.
+     *
+     * @throws ValidationCancelledException
+     *             if the deadline has passed or been cancelled
+     */
+    public static void checkCurrent() {
+        ValidationDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    /**
+     * Wrap a task so that the deadline is the current thread's while it runs,
+     * and the task isn't started once the deadline has passed.
+     *
+     * @param task
+     *            the task to bind
+     * @return the bound task
+     */
+    public <T> Callable<T> bind(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                ValidationDeadline previous = CURRENT.get();
+                CURRENT.set(ValidationDeadline.this);
+                // Lets the admin port cancel the task while it runs
+                InFlightValidations.bindCurrent(ValidationDeadline.this);
+                try {
+                    check();
+                    return task.call();
+                } finally {
+                    if (previous == null) {
+                        CURRENT.remove();
+                    } else {
+                        CURRENT.set(previous);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,572 @@
+package org.verapdf.rest.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * Runs validation work on a dedicated, bounded worker pool rather than on the
+ * Jetty request threads. The pool's queue is bounded, when it's full new work
+ * is rejected straight away with a 503 response and a Retry-After header so
+ * that an overloaded server sheds load instead of piling up parsers on the
+ * heap.
+ * <p>
+ * Each request's work is given a {@link ValidationDeadline}, the configured
+ * timeout or a shorter one asked for by the caller. Work that overruns its
+ * deadline, or whose client disconnects, is cancelled and stops at its next
+ * deadline check rather than holding a worker until it completes. Its caller
+ * gets a 504 response without a Retry-After header, retrying the same
+ * document would most likely time out again.
+ * <p>
+ * The work queued and running is tracked by {@link InFlightValidations}, see
+ * {@link #getStatus()}, so that the admin port can list it and cancel a
+ * validation that's stuck.
+ * <p>
+ * Work that has already been accepted, the asynchronous jobs, isn't subject
+ * to the pool's queue, see {@link #enqueue(FutureTask)}. It waits in a backlog
+ * of its own and is handed to the pool as the pool has room, at most one task
+ * per worker at a time so that the backlog doesn't fill the queue that
+ * synchronous requests are admitted to.
+ * <p>
+ * Every task on the pool holds a place, at most one per worker and queue slot,
+ * so that a request can {@link #reserve()} its place before reading its
+ * upload, and a full pool turns the request away before the upload takes its
+ * time and spool space.
+ */
+public final class ValidationExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationExecutor.class);
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * The connection of the client waiting for a validation, polled so that
+     * the validation can be cancelled if the client goes away.
+     */
+    public interface ClientConnection {
+        /**
+         * @return true while the client is still connected
+         */
+        boolean isOpen();
+    }
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final Semaphore admission;
+    private final int batchWorkers;
+    private final long timeoutSeconds;
+    private final long batchTimeoutSeconds;
+    private final long retryAfterSeconds;
+    private final Meter rejected;
+    private final InFlightValidations inFlight = new InFlightValidations();
+    private final BlockingQueue<FutureTask<?>> backlog = new LinkedBlockingQueue<>();
+    private final Semaphore backlogSlots;
+    private Thread backlogDispatcher = null;
+
+    /**
+     * @param executor
+     *            the bounded {@link ExecutorService} that validations run on
+     * @param threads
+     *            the number of worker threads the executor runs
+     * @param queueCapacity
+     *            the number of tasks the executor's queue holds
+     * @param batchWorkers
+     *            the number of workers a {@link ParallelBatchProcessor} shards
+     *            a batch of files across
+     * @param timeoutSeconds
+     *            the maximum number of seconds a submitted validation may take,
+     *            callers may ask for less
+     * @param batchTimeoutSeconds
+     *            the maximum number of seconds a directory validation may
+     *            take, 0 for no limit, callers may ask for less
+     * @param retryAfterSeconds
+     *            the Retry-After value, in seconds, returned to rejected callers
+     * @param rejected
+     *            a {@link Meter} marked whenever a validation is rejected
+     */
+    public ValidationExecutor(final ExecutorService executor, final int threads, final int queueCapacity,
+                              final int batchWorkers, final long timeoutSeconds, final long batchTimeoutSeconds,
+                              final long retryAfterSeconds, final Meter rejected) {
+        this.executor = executor;
+        this.threads = threads;
+        this.admission = new Semaphore(threads + queueCapacity);
+        this.batchWorkers = batchWorkers;
+        this.timeoutSeconds = timeoutSeconds;
+        this.batchTimeoutSeconds = batchTimeoutSeconds;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rejected = rejected;
+        this.backlogSlots = new Semaphore(Math.max(1, threads));
+    }
+
+    /**
+     * @return the number of workers a {@link ParallelBatchProcessor} shards a
+     *         batch of files across
+     */
+    public int getBatchWorkers() {
+        return this.batchWorkers;
+    }
+
+    /**
+     * @return a {@link ValidationQueueStatus} of the validations running and
+     *         queued now
+     */
+    public ValidationQueueStatus getStatus() {
+        return new ValidationQueueStatus(this.threads, this.inFlight.getQueued(), this.backlog.size(),
+                this.rejected.getCount(),
+                this.inFlight.getRunning());
+    }
+
+    /**
+     * Cancel a running validation, stopping the request it belongs to at its
+     * next deadline check.
+     *
+     * @param id
+     *            the id of the running {@link InFlightValidations.Validation}
+     * @return true if the validation was cancelled, false if it isn't running
+     *         or can't be cancelled
+     */
+    public boolean cancel(final long id) {
+        return this.inFlight.cancel(id);
+    }
+
+    /**
+     * Create the deadline of a request's validation work.
+     *
+     * @param requestedSeconds
+     *            the number of seconds the caller asked for, or null for the
+     *            configured timeout
+     * @return a new {@link ValidationDeadline} of the requested number of
+     *         seconds, at most the configured timeout
+     * @throws IllegalArgumentException
+     *             if the requested number of seconds isn't positive
+     */
+    public ValidationDeadline deadline(final Long requestedSeconds) {
+        return deadline(requestedSeconds, this.timeoutSeconds);
+    }
+
+    /**
+     * Create the deadline of a directory validation.
+     *
+     * @param requestedSeconds
+     *            the number of seconds the caller asked for, or null for the
+     *            configured batch timeout
+     * @return a new {@link ValidationDeadline} of the requested number of
+     *         seconds, at most the configured batch timeout if there is one
+     * @throws IllegalArgumentException
+     *             if the requested number of seconds isn't positive
+     */
+    public ValidationDeadline batchDeadline(final Long requestedSeconds) {
+        return deadline(requestedSeconds, this.batchTimeoutSeconds);
+    }
+
+    private static ValidationDeadline deadline(final Long requestedSeconds, final long maxSeconds) {
+        if (requestedSeconds != null && requestedSeconds.longValue() < 1) {
+            throw new IllegalArgumentException("The timeout must be at least 1 second"); //$NON-NLS-1$
+        }
+        if (requestedSeconds == null) {
+            return (maxSeconds > 0) ? ValidationDeadline.after(maxSeconds) : ValidationDeadline.unlimited();
+        }
+        return ValidationDeadline.after((maxSeconds > 0) ? Math.min(requestedSeconds.longValue(), maxSeconds)
+                : requestedSeconds.longValue());
+    }
+
+    /**
+     * Queue a task on the validation pool without waiting for it to complete.
+     *
+     * @param task
+     *            the validation task to run
+     * @return the {@link Future} for the queued task
+     * @throws ServiceUnavailableException
+     *             if the pool's queue is full
+     */
+    public <T> Future<T> submit(final Callable<T> task) {
+        return submit(new FutureTask<>(task));
+    }
+
+    /**
+     * Queue a {@link FutureTask} on the validation pool, callers can override
+     * {@link FutureTask#done()} to release resources held by the task however
+     * it ends, including cancellation before it ever ran.
+     *
+     * @param task
+     *            the validation task to run
+     * @return the queued task
+     * @throws ServiceUnavailableException
+     *             if the pool's queue is full
+     */
+    public <T> FutureTask<T> submit(final FutureTask<T> task) {
+        if (!place(task)) {
+            throw reject();
+        }
+        return task;
+    }
+
+    /**
+     * Reserve a place on the validation pool for a request's task, before the
+     * request reads its upload. The place is taken up by
+     * {@link #execute(Reservation, Callable, ValidationDeadline, ClientConnection)}
+     * and must be released by the caller if it fails before then.
+     *
+     * @return the {@link Reservation} of a place on the pool
+     * @throws ServiceUnavailableException
+     *             if the pool and its queue are full
+     */
+    public Reservation reserve() {
+        if (!this.admission.tryAcquire()) {
+            throw reject();
+        }
+        return new Reservation();
+    }
+
+    /**
+     * Accept a task that mustn't be rejected, it waits in the executor's
+     * backlog, however long, until the pool has room for it. Callers bound the
+     * backlog themselves, as the job store does, and can override
+     * {@link FutureTask#done()} to release the task's resources however it
+     * ends, including cancellation while it's in the backlog.
+     *
+     * @param task
+     *            the validation task to run
+     * @return the accepted task
+     */
+    public <T> FutureTask<T> enqueue(final FutureTask<T> task) {
+        this.backlog.add(task);
+        startBacklogDispatcher();
+        return task;
+    }
+
+    /**
+     * @return the number of accepted tasks waiting in the backlog for room in
+     *         the pool
+     */
+    public int getBacklog() {
+        return this.backlog.size();
+    }
+
+    private synchronized void startBacklogDispatcher() {
+        if (this.backlogDispatcher != null) {
+            return;
+        }
+        this.backlogDispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dispatchBacklog();
+                } catch (InterruptedException excep) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "validation-backlog"); //$NON-NLS-1$
+        this.backlogDispatcher.setDaemon(true);
+        this.backlogDispatcher.start();
+    }
+
+    /*
+     * Hand the backlog's tasks to the pool in order, each once one of the
+     * backlog's slots is free and the pool's queue takes it, until the pool is
+     * shut down.
+     */
+    private void dispatchBacklog() throws InterruptedException {
+        while (!this.executor.isShutdown()) {
+            final FutureTask<?> task = this.backlog.take();
+            if (task.isDone()) {
+                // Cancelled while it waited
+                continue;
+            }
+            this.backlogSlots.acquire();
+            Runnable slotted = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        ValidationExecutor.this.backlogSlots.release();
+                    }
+                }
+            };
+            while (!place(slotted)) {
+                if (this.executor.isShutdown()) {
+                    task.cancel(false);
+                    this.backlogSlots.release();
+                    break;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+        for (FutureTask<?> task = this.backlog.poll(); task != null; task = this.backlog.poll()) {
+            task.cancel(false);
+        }
+    }
+
+    /*
+     * Queue a task if the pool has a place for it.
+     */
+    private boolean place(final Runnable task) {
+        return this.admission.tryAcquire() && place(task, new Reservation());
+    }
+
+    /*
+     * Queue a task in the place reserved for it, the place is released once
+     * the task leaves the pool, whether it ran or was cancelled while queued.
+     * The pool itself only rejects the task once it's shut down, or while a
+     * worker is between tasks when it has no queue.
+     */
+    private boolean place(final Runnable task, final Reservation reservation) {
+        Runnable reserved = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    reservation.release();
+                }
+            }
+        };
+        try {
+            this.executor.execute(this.inFlight.track(reserved));
+            return true;
+        } catch (RejectedExecutionException excep) {
+            this.inFlight.rejected();
+            reservation.release();
+            return false;
+        }
+    }
+
+    /**
+     * Queue a task on the validation pool if its queue has room, for work that
+     * can carry on where it is otherwise, such as the next part of a batch. A
+     * full queue isn't counted as a rejection.
+     *
+     * @param task
+     *            the validation task to run
+     * @return true if the task was queued, false if the pool's queue is full
+     */
+    boolean offer(final FutureTask<?> task) {
+        return place(task);
+    }
+
+    /**
+     * Run a task on the validation pool and wait, at most the configured
+     * timeout, for its result.
+     *
+     * @param task
+     *            the validation task to run
+     * @return the task's result
+     * @throws VeraPDFException
+     *             any {@link VeraPDFException} thrown by the task, or one
+     *             wrapping a checked exception thrown by the task
+     * @throws ServiceUnavailableException
+     *             if the pool's queue is full
+     * @throws WebApplicationException
+     *             with a 504 status if the task doesn't complete in time
+     */
+    public <T> T execute(final Callable<T> task) throws VeraPDFException {
+        return execute(task, deadline(null), null);
+    }
+
+    /**
+     * Run a task on the validation pool bound to a deadline and wait for its
+     * result. The task is cancelled if the deadline passes or the client
+     * disconnects first.
+     *
+     * @param task
+     *            the validation task to run
+     * @param deadline
+     *            the {@link ValidationDeadline} of the task
+     * @param connection
+     *            the {@link ClientConnection} of the waiting client, or null
+     *            if it isn't watched
+     * @return the task's result
+     * @throws VeraPDFException
+     *             any {@link VeraPDFException} thrown by the task, or one
+     *             wrapping a checked exception thrown by the task
+     * @throws ServiceUnavailableException
+     *             if the pool's queue is full
+     * @throws WebApplicationException
+     *             with a 504 status if the task doesn't complete in time or
+     *             was cancelled, because the client disconnected or by an
+     *             administrator
+     */
+    public <T> T execute(final Callable<T> task, final ValidationDeadline deadline,
+                         final ClientConnection connection) throws VeraPDFException {
+        return execute(reserve(), task, deadline, connection);
+    }
+
+    /**
+     * Run a task on the validation pool in the place reserved for it, bound
+     * to a deadline, and wait for its result. The task is cancelled if the
+     * deadline passes or the client disconnects first. Anything the
+     * reservation holds is released by the worker once the task leaves the
+     * pool, not when this returns, as a cancelled task may still be using it.
+     *
+     * @param reservation
+     *            the {@link Reservation} of the task's place on the pool, see
+     *            {@link #reserve()}
+     * @param task
+     *            the validation task to run
+     * @param deadline
+     *            the {@link ValidationDeadline} of the task
+     * @param connection
+     *            the {@link ClientConnection} of the waiting client, or null
+     *            if it isn't watched
+     * @return the task's result
+     * @throws VeraPDFException
+     *             any {@link VeraPDFException} thrown by the task, or one
+     *             wrapping a checked exception thrown by the task
+     * @throws ServiceUnavailableException
+     *             if the pool rejects the task, only once it's shut down
+     * @throws WebApplicationException
+     *             with a 504 status if the task doesn't complete in time or
+     *             was cancelled, because the client disconnected or by an
+     *             administrator
+     */
+    public <T> T execute(final Reservation reservation, final Callable<T> task, final ValidationDeadline deadline,
+                         final ClientConnection connection) throws VeraPDFException {
+        FutureTask<T> future = new FutureTask<>(deadline.bind(task));
+        if (!place(future, reservation)) {
+            throw reject();
+        }
+        try {
+            while (true) {
+                try {
+                    long waitNanos = Math.min(deadline.remainingNanos(), TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS));
+                    return future.get(Math.max(waitNanos, 0L), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException excep) {
+                    if (deadline.isExpired()) {
+                        // Out of time, or already cancelled by an administrator or its batch, whose
+                        // reason is kept
+                        String reason = deadline.getReason();
+                        deadline.cancel(reason);
+                        future.cancel(true);
+                        LOGGER.warn("Validation stopped: {}", reason);
+                        throw timedOut(reason);
+                    }
+                    if (connection != null && !connection.isOpen()) {
+                        deadline.cancel("The client disconnected."); //$NON-NLS-1$
+                        future.cancel(true);
+                        LOGGER.info("Client disconnected, validation cancelled");
+                        throw timedOut("The client disconnected."); //$NON-NLS-1$
+                    }
+                }
+            }
+        } catch (InterruptedException excep) {
+            deadline.cancel("Interrupted while waiting for validation to complete."); //$NON-NLS-1$
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new VeraPDFException("Interrupted while waiting for validation to complete", excep); //$NON-NLS-1$
+        } catch (ExecutionException excep) {
+            if (excep.getCause() instanceof ValidationCancelledException) {
+                LOGGER.warn("Validation cancelled: {}", excep.getCause().getMessage());
+                throw timedOut(excep.getCause().getMessage());
+            }
+            throw unwrap(excep.getCause());
+        }
+    }
+
+    /*
+     * A validation that was stopped isn't a sign of an overloaded server, so
+     * unlike a full queue there's no Retry-After.
+     */
+    private static WebApplicationException timedOut(final String message) {
+        return new WebApplicationException(Response.status(Status.GATEWAY_TIMEOUT)
+                .type(MediaType.TEXT_PLAIN).entity(message).build());
+    }
+
+    private ServiceUnavailableException reject() {
+        this.rejected.mark();
+        LOGGER.warn("Validation queue is full, rejecting request");
+        return unavailable("Validation queue is full, please retry later."); //$NON-NLS-1$
+    }
+
+    private ServiceUnavailableException unavailable(final String message) {
+        return new ServiceUnavailableException(Response.status(Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.valueOf(this.retryAfterSeconds))
+                .type(MediaType.TEXT_PLAIN).entity(message).build());
+    }
+
+    /*
+     * Unchecked exceptions, including the JAX-RS WebApplicationExceptions used
+     * to signal HTTP errors, are rethrown as is. Checked exceptions are
+     * returned as a VeraPDFException for the caller to throw.
+     */
+    static VeraPDFException unwrap(final Throwable cause) {
+        if (cause instanceof VeraPDFException) {
+            return (VeraPDFException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new VeraPDFException("An exception occurred while validating", cause); //$NON-NLS-1$
+    }
+
+    /**
+     * A place on the validation pool held for a request's task, see
+     * {@link ValidationExecutor#reserve()}. The place, and any resource the
+     * reservation holds, is released once the task leaves the pool, or by
+     * {@link #release()} if the request fails before its task is queued.
+     */
+    public final class Reservation {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Closeable resource = null;
+
+        Reservation() {
+            // Only created by the executor, holding a place on its pool
+        }
+
+        /**
+         * Hand a resource the task uses, such as the request's upload, to the
+         * reservation, so that it's closed when the reservation is released
+         * rather than while the task may still be using it.
+         *
+         * @param held
+         *            the resource to close when the reservation is released
+         */
+        public void hold(final Closeable held) {
+            this.resource = held;
+        }
+
+        /**
+         * Release the place on the pool and close the resource held, if any.
+         * Only the first call has any effect.
+         */
+        public void release() {
+            if (!this.released.compareAndSet(false, true)) {
+                return;
+            }
+            ValidationExecutor.this.admission.release();
+            Closeable held = this.resource;
+            if (held != null) {
+                try {
+                    held.close();
+                } catch (IOException excep) {
+                    LOGGER.warn("Couldn't release a validation's resources", excep);
+                }
+            }
+        }
+    }
+}
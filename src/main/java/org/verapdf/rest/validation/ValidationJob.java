@@ -0,0 +1,189 @@
+package org.verapdf.rest.validation;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+
+import org.verapdf.pdfa.results.ValidationResult;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+
+/**
+ * An asynchronous validation job, tracks the state of a single validation
+ * submitted through the job API and holds its result once complete. The job's
+ * state is serialised as the status document returned to clients, the
+ * validation result itself is retrieved separately.
+ */
+@JacksonXmlRootElement
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ValidationJob {
+    /**
+     * The states a job moves through, always in this order, ending in either
+     * COMPLETED or FAILED.
+     */
+    public enum Status {
+        /** Waiting for a free validation worker */
+        QUEUED,
+        /** Being validated */
+        RUNNING,
+        /** Validated, the result is available */
+        COMPLETED,
+        /** Validation failed, see the job's message for details */
+        FAILED;
+    }
+
+    private final String id;
+    private final String profileId;
+    private final Date submitted = new Date();
+    private volatile Status status = Status.QUEUED;
+    private volatile Date started;
+    private volatile Date finished;
+    private volatile String message;
+    private volatile ValidationResult result;
+    private volatile Future<?> future;
+    private volatile ValidationDeadline deadline;
+
+    ValidationJob(final String id, final String profileId) {
+        this.id = id;
+        this.profileId = profileId;
+    }
+
+    /**
+     * @return the job's unique identifier
+     */
+    @JsonProperty
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the id of the profile requested for validation
+     */
+    @JsonProperty
+    public String getProfileId() {
+        return this.profileId;
+    }
+
+    /**
+     * @return the current {@link Status} of the job
+     */
+    @JsonProperty
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return when the job was submitted
+     */
+    @JsonProperty
+    public Date getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * @return when validation started, or null if the job is still queued
+     */
+    @JsonProperty
+    public Date getStarted() {
+        return this.started;
+    }
+
+    /**
+     * @return when the job completed or failed, or null if it's still active
+     */
+    @JsonProperty
+    public Date getFinished() {
+        return this.finished;
+    }
+
+    /**
+     * @return a description of why the job failed, or null
+     */
+    @JsonProperty
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return the {@link ValidationResult} of a completed job, null until then
+     */
+    @JsonIgnore
+    public ValidationResult getResult() {
+        return this.result;
+    }
+
+    /**
+     * @return true if the job has completed or failed
+     */
+    @JsonIgnore
+    public boolean isFinished() {
+        return this.finished != null;
+    }
+
+    /**
+     * Record that a worker has picked up the job.
+     */
+    public void start() {
+        this.started = new Date();
+        this.status = Status.RUNNING;
+    }
+
+    /**
+     * Record the job's successful completion.
+     *
+     * @param validationResult
+     *            the {@link ValidationResult} of the job
+     */
+    public void complete(final ValidationResult validationResult) {
+        this.result = validationResult;
+        this.finished = new Date();
+        this.status = Status.COMPLETED;
+    }
+
+    /**
+     * Record the job's failure.
+     *
+     * @param failureMessage
+     *            a description of the failure for the client
+     */
+    public void fail(final String failureMessage) {
+        this.message = failureMessage;
+        this.finished = new Date();
+        this.status = Status.FAILED;
+    }
+
+    /**
+     * Associate the job with the {@link Future} of its queued validation task,
+     * so that the task can be cancelled if the job is removed.
+     *
+     * @param jobFuture
+     *            the {@link Future} of the job's validation task
+     */
+    public void setFuture(final Future<?> jobFuture) {
+        this.future = jobFuture;
+    }
+
+    /**
+     * Associate a running job with the {@link ValidationDeadline} of its
+     * validation, so that the validation stops if the job is removed.
+     *
+     * @param jobDeadline
+     *            the {@link ValidationDeadline} of the job's validation
+     */
+    public void setDeadline(final ValidationDeadline jobDeadline) {
+        this.deadline = jobDeadline;
+    }
+
+    void cancel() {
+        ValidationDeadline toStop = this.deadline;
+        if (toStop != null) {
+            toStop.cancel("The job was removed."); //$NON-NLS-1$
+        }
+        Future<?> toCancel = this.future;
+        if (toCancel != null) {
+            toCancel.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.verapdf.rest.validation;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In process store for {@link ValidationJob}s. Finished jobs are kept for a
+ * fixed time to live so that clients can collect their results, after which
+ * {@link #evictExpired()} removes them. The number of jobs held is bounded,
+ * once the limit is reached new submissions are refused until jobs finish and
+ * expire. A submission reserves its slot with {@link #reserve()} before it
+ * reads the upload, so that a full store refuses the request without spooling
+ * it and concurrent submissions can't overshoot the limit.
+ */
+public final class ValidationJobStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationJobStore.class);
+
+    private final ConcurrentMap<String, ValidationJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger slots = new AtomicInteger();
+    private final long ttlMillis;
+    private final int maxJobs;
+    private final long retryAfterSeconds;
+
+    /**
+     * @param ttlMinutes
+     *            the number of minutes a finished job is kept
+     * @param maxJobs
+     *            the maximum number of jobs held at any one time
+     * @param retryAfterSeconds
+     *            the Retry-After value, in seconds, returned when the store is
+     *            full
+     */
+    public ValidationJobStore(final long ttlMinutes, final int maxJobs, final long retryAfterSeconds) {
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.maxJobs = maxJobs;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Reserve a slot for a new job, it's held until the job created in it is
+     * removed or expires, or it's handed back with {@link #release()}.
+     *
+     * @throws ServiceUnavailableException
+     *             if the store already holds its maximum number of jobs
+     */
+    public void reserve() {
+        for (;;) {
+            int held = this.slots.get();
+            if (held >= this.maxJobs) {
+                evictExpired();
+                held = this.slots.get();
+                if (held >= this.maxJobs) {
+                    LOGGER.warn("Job store holds {} jobs, rejecting new job", Integer.valueOf(held));
+                    throw new ServiceUnavailableException(Response.status(Status.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, Long.valueOf(this.retryAfterSeconds))
+                            .type(MediaType.TEXT_PLAIN).entity("Too many validation jobs, please retry later.") //$NON-NLS-1$
+                            .build());
+                }
+            }
+            if (this.slots.compareAndSet(held, held + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand back a slot taken with {@link #reserve()} that no job was created
+     * in.
+     */
+    public void release() {
+        this.slots.decrementAndGet();
+    }
+
+    /**
+     * Create and store a new, queued job in a slot taken with
+     * {@link #reserve()}.
+     *
+     * @param profileId
+     *            the id of the profile the job validates against
+     * @return the new {@link ValidationJob}
+     */
+    public ValidationJob create(final String profileId) {
+        ValidationJob job = new ValidationJob(UUID.randomUUID().toString(), profileId);
+        this.jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * @param id
+     *            the id of the job to retrieve
+     * @return the {@link ValidationJob} with the given id, or null if there's
+     *         no such job or it has expired
+     */
+    public ValidationJob get(final String id) {
+        return this.jobs.get(id);
+    }
+
+    /**
+     * Remove a job, cancelling its validation if it hasn't finished.
+     *
+     * @param id
+     *            the id of the job to remove
+     * @return the removed {@link ValidationJob}, or null if there's no such job
+     */
+    public ValidationJob remove(final String id) {
+        ValidationJob job = this.jobs.remove(id);
+        if (job != null) {
+            this.slots.decrementAndGet();
+            if (!job.isFinished()) {
+                job.cancel();
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Remove all finished jobs older than the time to live.
+     */
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - this.ttlMillis;
+        int evicted = 0;
+        for (ValidationJob job : this.jobs.values()) {
+            // Only the caller that actually removes the job frees its slot
+            if (job.isFinished() && job.getFinished().getTime() < cutoff
+                    && this.jobs.remove(job.getId(), job)) {
+                this.slots.decrementAndGet();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            LOGGER.debug("Evicted {} expired validation jobs", Integer.valueOf(evicted));
+        }
+    }
+
+    /**
+     * @return the number of jobs currently held
+     */
+    public int size() {
+        return this.jobs.size();
+    }
+}
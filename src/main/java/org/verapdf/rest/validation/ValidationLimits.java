@@ -0,0 +1,171 @@
+package org.verapdf.rest.validation;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.verapdf.pdfa.results.RuleId;
+import org.verapdf.pdfa.results.TestAssertion;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.pdfa.results.ValidationResults;
+
+/**
+ * Immutable limits on how much a validation collects and reports, selected by
+ * a request's validation {@link Mode}. Triage traffic that only needs to know
+ * whether a document passes doesn't pay for collecting and serialising every
+ * failed check, forensic runs can ask for passed checks as well.
+ */
+public final class ValidationLimits {
+    /** The value of a limit on failed checks that places no limit */
+    public static final int UNLIMITED = -1;
+
+    /**
+     * The validation modes a request can select.
+     */
+    public enum Mode {
+        /** Validation stops at the first failed check, only whether the document passes is reported */
+        PASSFAIL,
+        /** Every rule is checked, the first failed check of each rule is reported */
+        RULES,
+        /** Every rule is checked, a limited number of failed checks of each rule are reported */
+        DEFAULT,
+        /** Every rule is checked, passed checks are reported as well as failed ones */
+        FULL;
+
+        /**
+         * @param name
+         *            the mode name, ignoring case
+         * @return the matching {@link Mode}
+         * @throws IllegalArgumentException
+         *             if no mode matches the name
+         */
+        public static Mode fromName(final String name) {
+            for (Mode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name.trim())) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("No validation mode named " + name); //$NON-NLS-1$
+        }
+    }
+
+    private final Mode mode;
+    private final boolean logPassedChecks;
+    private final int maxFailedChecks;
+    private final int maxFailedChecksPerRule;
+
+    /**
+     * @param mode
+     *            the {@link Mode} the limits apply to
+     * @param logPassedChecks
+     *            true if passed checks are recorded as well as failed ones
+     * @param maxFailedChecks
+     *            the number of failed checks after which validation stops, or
+     *            {@link #UNLIMITED}
+     * @param maxFailedChecksPerRule
+     *            the number of failed checks reported for each rule, at least 1
+     */
+    public ValidationLimits(final Mode mode, final boolean logPassedChecks, final int maxFailedChecks,
+                            final int maxFailedChecksPerRule) {
+        this.mode = mode;
+        this.logPassedChecks = logPassedChecks;
+        this.maxFailedChecks = maxFailedChecks;
+        this.maxFailedChecksPerRule = maxFailedChecksPerRule;
+    }
+
+    /**
+     * @return the {@link Mode} the limits apply to
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @return true if passed checks are recorded as well as failed ones
+     */
+    public boolean isLogPassedChecks() {
+        return this.logPassedChecks;
+    }
+
+    /**
+     * @return the number of failed checks after which validation stops, or
+     *         {@link #UNLIMITED}
+     */
+    public int getMaxFailedChecks() {
+        return this.maxFailedChecks;
+    }
+
+    /**
+     * @return the number of failed checks reported for each rule
+     */
+    public int getMaxFailedChecksPerRule() {
+        return this.maxFailedChecksPerRule;
+    }
+
+    /**
+     * @return true if reports should include the detail of passed rules
+     */
+    public boolean isVerbose() {
+        return this.mode == Mode.FULL;
+    }
+
+    /**
+     * Drop the failed checks of each rule beyond the number reported, the
+     * validator records every failed check up to its overall limit.
+     *
+     * @param result
+     *            the {@link ValidationResult} to limit
+     * @return the result, or a copy holding only the reported assertions
+     */
+    public ValidationResult limit(final ValidationResult result) {
+        Map<RuleId, Integer> failures = new HashMap<>();
+        Set<TestAssertion> reported = new LinkedHashSet<>();
+        for (TestAssertion assertion : result.getTestAssertions()) {
+            if (assertion.getStatus() == TestAssertion.Status.FAILED) {
+                Integer count = failures.get(assertion.getRuleId());
+                int failed = (count == null) ? 1 : count.intValue() + 1;
+                failures.put(assertion.getRuleId(), Integer.valueOf(failed));
+                if (failed > this.maxFailedChecksPerRule) {
+                    continue;
+                }
+            }
+            reported.add(assertion);
+        }
+        if (reported.size() == result.getTestAssertions().size()) {
+            return result;
+        }
+        return ValidationResults.resultFromValues(result.getPDFAFlavour(), reported, result.isCompliant(),
+                result.getTotalAssertions());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof ValidationLimits))
+            return false;
+        ValidationLimits other = (ValidationLimits) obj;
+        return this.mode == other.mode && this.logPassedChecks == other.logPassedChecks
+                && this.maxFailedChecks == other.maxFailedChecks
+                && this.maxFailedChecksPerRule == other.maxFailedChecksPerRule;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.mode.hashCode();
+        result = prime * result + (this.logPassedChecks ? 1231 : 1237);
+        result = prime * result + this.maxFailedChecks;
+        result = prime * result + this.maxFailedChecksPerRule;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationLimits [mode=" + this.mode + ", logPassedChecks=" + this.logPassedChecks //$NON-NLS-1$ //$NON-NLS-2$
+                + ", maxFailedChecks=" + this.maxFailedChecks //$NON-NLS-1$
+                + ", maxFailedChecksPerRule=" + this.maxFailedChecksPerRule + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
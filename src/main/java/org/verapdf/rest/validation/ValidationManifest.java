@@ -0,0 +1,337 @@
+package org.verapdf.rest.validation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openpreservation.bytestreams.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.core.XmlSerialiser;
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.pdfa.results.ValidationResults;
+import org.verapdf.processor.ItemProcessor;
+import org.verapdf.processor.ProcessorResult;
+import org.verapdf.processor.TaskResult;
+import org.verapdf.processor.TaskType;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The persistent record of a directory's last incremental validation, used
+ * to validate only the files that are new or have changed since.
+ * <p>
+ * The manifest's index records each file's path relative to the directory,
+ * size, modification time, SHA-1, PDF/A flavour and a summary of its result.
+ * The full {@link ValidationResult} of each file that was validated is kept
+ * alongside the index, so a file that hasn't changed contributes the same
+ * validation result to a report as if it had been validated again. A file
+ * whose modification time has changed but whose size and SHA-1 haven't is
+ * also treated as unchanged. Files that couldn't be validated, because they
+ * aren't PDFs or are encrypted, are processed again on every run.
+ * <p>
+ * Results are only reused by the veraPDF library version and with the
+ * {@link ValidationLimits} that created them, an upgrade or a change of
+ * limits revalidates everything. Closing the manifest saves the index,
+ * dropping files that no longer exist, and releases the directory for the
+ * next incremental validation.
+ */
+public final class ValidationManifest implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationManifest.class);
+    private static final String INDEX_NAME = "index.json"; //$NON-NLS-1$
+    private static final String RESULTS_NAME = "results"; //$NON-NLS-1$
+    private static final String RESULT_SUFFIX = ".xml"; //$NON-NLS-1$
+
+    private final ManifestStore store;
+    private final File canonicalRoot;
+    private final File root;
+    private final File directory;
+    private final File resultsDirectory;
+    private final ObjectMapper mapper;
+    private final String libraryVersion;
+    private final String limits;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger validated = new AtomicInteger();
+
+    private ValidationManifest(final ManifestStore store, final File canonicalRoot, final File root,
+                               final File directory, final ObjectMapper mapper, final String libraryVersion,
+                               final String limits, final Map<String, Entry> previous) {
+        this.store = store;
+        this.canonicalRoot = canonicalRoot;
+        this.root = root;
+        this.directory = directory;
+        this.resultsDirectory = new File(directory, RESULTS_NAME);
+        this.mapper = mapper;
+        this.libraryVersion = libraryVersion;
+        this.limits = limits;
+        this.previous = previous;
+    }
+
+    static ValidationManifest load(final ManifestStore store, final File canonicalRoot, final File root,
+                                   final File directory, final ObjectMapper mapper, final ValidationLimits limits)
+            throws IOException {
+        File resultsDirectory = new File(directory, RESULTS_NAME);
+        if (!resultsDirectory.isDirectory() && !resultsDirectory.mkdirs()) {
+            throw new IOException("Couldn't create manifest directory " + resultsDirectory.getAbsolutePath()); //$NON-NLS-1$
+        }
+        String libraryVersion = Foundries.defaultInstance().getDetails().getVersion();
+        String limitsValue = limits.toString();
+        Map<String, Entry> previous = new HashMap<>();
+        File indexFile = new File(directory, INDEX_NAME);
+        if (indexFile.isFile()) {
+            Index index = mapper.readValue(indexFile, Index.class);
+            if (!libraryVersion.equals(index.libraryVersion)) {
+                LOGGER.info("Manifest of {} was created by veraPDF {}, revalidating all files", canonicalRoot,
+                        index.libraryVersion);
+            } else if (!limitsValue.equals(index.limits)) {
+                LOGGER.info("Manifest of {} was created with {}, revalidating all files", canonicalRoot,
+                        index.limits);
+            } else {
+                for (Entry entry : index.entries) {
+                    previous.put(entry.path, entry);
+                }
+            }
+        }
+        LOGGER.debug("Loaded manifest of {} with {} files", canonicalRoot, Integer.valueOf(previous.size()));
+        return new ValidationManifest(store, canonicalRoot, root, directory, mapper, libraryVersion,
+                limitsValue, previous);
+    }
+
+    /**
+     * Return the recorded result of a file if it hasn't changed since the
+     * manifest was saved, otherwise process the file and record its result.
+     *
+     * @param file
+     *            the file to process, below the manifest's directory
+     * @param processor
+     *            the {@link ItemProcessor} used if the file is new or has
+     *            changed
+     * @return the file's {@link ProcessorResult}
+     * @throws VeraPDFException
+     *             if the file can't be processed
+     */
+    public ProcessorResult process(final File file, final ItemProcessor processor) throws VeraPDFException {
+        String path = relativePath(file);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String sha1Hex = null;
+
+        Entry entry = this.previous.get(path);
+        if (entry != null && entry.size == size) {
+            if (entry.lastModified != lastModified) {
+                // Touched, but the content may not have changed
+                sha1Hex = sha1Hex(file);
+            }
+            if (sha1Hex == null || sha1Hex.equals(entry.sha1)) {
+                ProcessorResult result = readResult(file, entry);
+                if (result != null) {
+                    this.current.put(path, entry.withLastModified(lastModified));
+                    this.reused.incrementAndGet();
+                    return result;
+                }
+            }
+        }
+
+        ProcessorResult result = processor.process(file);
+        this.validated.incrementAndGet();
+        try {
+            Entry updated = Entry.fromResult(path, size, lastModified,
+                    (sha1Hex != null) ? sha1Hex : sha1Hex(file), result);
+            if (updated.isRecorded()) {
+                writeResult(updated, result.getValidationResult());
+            }
+            this.current.put(path, updated);
+        } catch (IOException | JAXBException excep) {
+            LOGGER.warn("Couldn't record the result of {} in the manifest", file, excep);
+        }
+        return result;
+    }
+
+    /**
+     * Save the manifest's index, dropping files that have been removed, and
+     * release the directory.
+     */
+    @Override
+    public void close() {
+        try {
+            save();
+            LOGGER.info("Incremental validation of {} reused {} results and validated {} files", this.root,
+                    Integer.valueOf(this.reused.get()), Integer.valueOf(this.validated.get()));
+        } catch (IOException excep) {
+            LOGGER.error("Couldn't save the validation manifest of {}", this.root, excep);
+        } finally {
+            this.store.release(this.canonicalRoot);
+        }
+    }
+
+    private void save() throws IOException {
+        Index index = new Index();
+        index.libraryVersion = this.libraryVersion;
+        index.limits = this.limits;
+        index.root = this.canonicalRoot.getPath();
+        index.entries = new ArrayList<>(this.current.values());
+        for (Entry entry : this.previous.values()) {
+            // Files outside this run's filters are kept while they exist
+            if (!this.current.containsKey(entry.path) && new File(this.root, entry.path).isFile()) {
+                index.entries.add(entry);
+            }
+        }
+
+        File indexFile = new File(this.directory, INDEX_NAME);
+        File tempFile = new File(this.directory, INDEX_NAME + ".tmp"); //$NON-NLS-1$
+        this.mapper.writeValue(tempFile, index);
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        Set<String> kept = new HashSet<>();
+        for (Entry entry : index.entries) {
+            if (entry.isRecorded()) {
+                kept.add(resultName(entry.path));
+            }
+        }
+        File[] results = this.resultsDirectory.listFiles();
+        if (results != null) {
+            for (File result : results) {
+                if (!kept.contains(result.getName()) && !result.delete()) {
+                    LOGGER.warn("Couldn't delete stale manifest result {}", result.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    private String relativePath(final File file) {
+        return this.root.toPath().relativize(file.getAbsoluteFile().toPath()).toString();
+    }
+
+    private ProcessorResult readResult(final File file, final Entry entry) {
+        if (!entry.isRecorded()) {
+            return null;
+        }
+        File resultFile = new File(this.resultsDirectory, resultName(entry.path));
+        try {
+            String xml = new String(Files.readAllBytes(resultFile.toPath()), StandardCharsets.UTF_8);
+            return new RecordedResult(file, ValidationResults.resultFromXmlString(xml));
+        } catch (IOException | JAXBException | RuntimeException excep) {
+            LOGGER.debug("Couldn't read the recorded result of {}, revalidating", entry.path, excep);
+            return null;
+        }
+    }
+
+    private void writeResult(final Entry entry, final ValidationResult result) throws IOException, JAXBException {
+        File resultFile = new File(this.resultsDirectory, resultName(entry.path));
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(resultFile))) {
+            XmlSerialiser.toXml(result, out, false, false);
+        }
+    }
+
+    private static String resultName(final String path) {
+        return DigestUtils.sha1Hex(path) + RESULT_SUFFIX;
+    }
+
+    private static String sha1Hex(final File file) throws VeraPDFException {
+        try {
+            return ByteStreams.idFromFile(file).getHexSHA1();
+        } catch (IOException excep) {
+            throw new VeraPDFException("IOException calculating the SHA-1 of " + file, excep); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * The manifest index as saved, the version of veraPDF and the limits that
+     * created the recorded results and an entry for each file.
+     */
+    static final class Index {
+        @JsonProperty
+        String libraryVersion;
+        @JsonProperty
+        String limits;
+        @JsonProperty
+        String root;
+        @JsonProperty
+        List<Entry> entries = Collections.emptyList();
+    }
+
+    /*
+     * A file's identity when it was last validated and a summary of its
+     * result, the full result is held in the results directory.
+     */
+    static final class Entry {
+        @JsonProperty
+        String path;
+        @JsonProperty
+        long size;
+        @JsonProperty
+        long lastModified;
+        @JsonProperty
+        String sha1;
+        @JsonProperty
+        String flavour;
+        @JsonProperty
+        Boolean compliant;
+        @JsonProperty
+        int totalAssertions;
+
+        static Entry fromResult(final String path, final long size, final long lastModified, final String sha1,
+                                final ProcessorResult result) {
+            Entry entry = new Entry();
+            entry.path = path;
+            entry.size = size;
+            entry.lastModified = lastModified;
+            entry.sha1 = sha1;
+            ValidationResult validationResult = result.getValidationResult();
+            TaskResult validation = result.getResultForTask(TaskType.VALIDATE);
+            if (result.isPdf() && !result.isEncryptedPdf() && validationResult != null && validation != null
+                    && validation.isExecuted() && validation.isSuccess()) {
+                entry.flavour = validationResult.getPDFAFlavour().getId();
+                entry.compliant = Boolean.valueOf(validationResult.isCompliant());
+                entry.totalAssertions = validationResult.getTotalAssertions();
+            }
+            return entry;
+        }
+
+        /*
+         * True if the file was validated and its validation result recorded.
+         */
+        boolean isRecorded() {
+            return this.flavour != null;
+        }
+
+        Entry withLastModified(final long modified) {
+            if (modified == this.lastModified) {
+                return this;
+            }
+            Entry entry = new Entry();
+            entry.path = this.path;
+            entry.size = this.size;
+            entry.lastModified = modified;
+            entry.sha1 = this.sha1;
+            entry.flavour = this.flavour;
+            entry.compliant = this.compliant;
+            entry.totalAssertions = this.totalAssertions;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.verapdf.rest.validation;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A snapshot of the {@link ValidationExecutor}'s workers and queue: the
+ * validations running, the tasks waiting for a worker, how busy the workers
+ * are and how many requests have been turned away because the queue was full.
+ */
+public final class ValidationQueueStatus {
+    private final int workers;
+    private final int queued;
+    private final int backlog;
+    private final long rejected;
+    private final List<InFlightValidations.Validation> running;
+
+    /**
+     * @param workers
+     *            the number of worker threads
+     * @param queued
+     *            the number of tasks waiting for a worker
+     * @param backlog
+     *            the number of accepted jobs waiting for room in the queue
+     * @param rejected
+     *            the number of validations rejected since the server started
+     * @param running
+     *            the {@link InFlightValidations.Validation Validations}
+     *            running
+     */
+    public ValidationQueueStatus(final int workers, final int queued, final int backlog, final long rejected,
+                                 final List<InFlightValidations.Validation> running) {
+        this.workers = workers;
+        this.queued = queued;
+        this.backlog = backlog;
+        this.rejected = rejected;
+        this.running = running;
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    @JsonProperty
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    /**
+     * @return the number of workers running a validation
+     */
+    @JsonProperty
+    public int getBusyWorkers() {
+        return this.running.size();
+    }
+
+    /**
+     * @return the share of the workers running a validation, from 0 to 1
+     */
+    @JsonProperty
+    public double getUtilization() {
+        return (this.workers > 0) ? Math.min(1.0, (double) this.running.size() / this.workers) : 0.0;
+    }
+
+    /**
+     * @return the number of tasks waiting for a worker
+     */
+    @JsonProperty
+    public int getQueued() {
+        return this.queued;
+    }
+
+    /**
+     * @return the number of accepted jobs waiting for room in the queue
+     */
+    @JsonProperty
+    public int getBacklog() {
+        return this.backlog;
+    }
+
+    /**
+     * @return the number of validations rejected because the queue was full,
+     *         since the server started
+     */
+    @JsonProperty
+    public long getRejected() {
+        return this.rejected;
+    }
+
+    /**
+     * @return the {@link InFlightValidations.Validation Validations} running,
+     *         oldest first
+     */
+    @JsonProperty
+    public List<InFlightValidations.Validation> getRunning() {
+        return this.running;
+    }
+}
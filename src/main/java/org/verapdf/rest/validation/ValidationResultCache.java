@@ -0,0 +1,219 @@
+package org.verapdf.rest.validation;
+
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.results.ValidationResult;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Content addressed cache of validation results. Entries are keyed on the
+ * SHA-1 of the validated bytes, as calculated by the server, the requested
+ * PDF/A flavour, the validation mode and the version of the veraPDF validation library, so an
+ * upgrade of the library never serves stale results.
+ * <p>
+ * Both {@link ValidationResult}s and rendered HTML reports are cached, each in
+ * a least recently used cache bounded by weight: the number of test
+ * assertions for results and the number of bytes for HTML reports.
+ */
+public final class ValidationResultCache {
+    private final Cache<Key, ValidationResult> results;
+    private final Cache<Key, byte[]> htmlReports;
+
+    /**
+     * @param maxResultAssertions
+     *            the maximum total number of test assertions held in cached
+     *            results, 0 disables result caching
+     * @param maxHtmlBytes
+     *            the maximum total size in bytes of cached HTML reports, 0
+     *            disables HTML report caching
+     */
+    public ValidationResultCache(final long maxResultAssertions, final long maxHtmlBytes) {
+        this.results = CacheBuilder.newBuilder().maximumWeight(maxResultAssertions)
+                .weigher(new Weigher<Key, ValidationResult>() {
+                    @Override
+                    public int weigh(Key key, ValidationResult result) {
+                        return result.getTestAssertions().size() + 1;
+                    }
+                }).recordStats().build();
+        this.htmlReports = CacheBuilder.newBuilder().maximumWeight(maxHtmlBytes)
+                .weigher(new Weigher<Key, byte[]>() {
+                    @Override
+                    public int weigh(Key key, byte[] report) {
+                        return report.length;
+                    }
+                }).recordStats().build();
+    }
+
+    /**
+     * Create a cache key for the current veraPDF library.
+     *
+     * @param sha1Hex
+     *            the hex SHA-1 of the validated bytes, calculated by the server
+     * @param flavour
+     *            the requested {@link PDFAFlavour},
+     *            {@link PDFAFlavour#NO_FLAVOUR} for auto-detection
+     * @param mode
+     *            the requested {@link ValidationLimits.Mode}
+     * @return a new {@link Key}
+     */
+    public static Key key(final String sha1Hex, final PDFAFlavour flavour, final ValidationLimits.Mode mode) {
+        return new Key(sha1Hex.toLowerCase(), flavour, mode, LibraryVersion.VALUE);
+    }
+
+    /**
+     * @param key
+     *            the {@link Key} to look up
+     * @return the cached {@link ValidationResult}, or null
+     */
+    public ValidationResult getResult(final Key key) {
+        return this.results.getIfPresent(key);
+    }
+
+    /**
+     * @param key
+     *            the {@link Key} to cache the result under
+     * @param result
+     *            the {@link ValidationResult} to cache
+     */
+    public void putResult(final Key key, final ValidationResult result) {
+        this.results.put(key, result);
+    }
+
+    /**
+     * @param key
+     *            the {@link Key} to look up
+     * @return the cached HTML report bytes, or null
+     */
+    public byte[] getHtmlReport(final Key key) {
+        return this.htmlReports.getIfPresent(key);
+    }
+
+    /**
+     * @param key
+     *            the {@link Key} to cache the report under
+     * @param report
+     *            the HTML report bytes to cache
+     */
+    public void putHtmlReport(final Key key, final byte[] report) {
+        this.htmlReports.put(key, report);
+    }
+
+    /**
+     * Register hit, miss, eviction and size gauges for both caches.
+     *
+     * @param metrics
+     *            the {@link MetricRegistry} to register the gauges with
+     */
+    public void registerMetrics(final MetricRegistry metrics) {
+        registerMetrics(metrics, "results", this.results); //$NON-NLS-1$
+        registerMetrics(metrics, "html", this.htmlReports); //$NON-NLS-1$
+    }
+
+    private static void registerMetrics(final MetricRegistry metrics, final String name, final Cache<?, ?> cache) {
+        metrics.register(MetricRegistry.name(ValidationResultCache.class, name, "hits"), new Gauge<Long>() { //$NON-NLS-1$
+            @Override
+            public Long getValue() {
+                return Long.valueOf(cache.stats().hitCount());
+            }
+        });
+        metrics.register(MetricRegistry.name(ValidationResultCache.class, name, "misses"), new Gauge<Long>() { //$NON-NLS-1$
+            @Override
+            public Long getValue() {
+                return Long.valueOf(cache.stats().missCount());
+            }
+        });
+        metrics.register(MetricRegistry.name(ValidationResultCache.class, name, "evictions"), new Gauge<Long>() { //$NON-NLS-1$
+            @Override
+            public Long getValue() {
+                return Long.valueOf(cache.stats().evictionCount());
+            }
+        });
+        metrics.register(MetricRegistry.name(ValidationResultCache.class, name, "size"), new Gauge<Long>() { //$NON-NLS-1$
+            @Override
+            public Long getValue() {
+                return Long.valueOf(cache.size());
+            }
+        });
+    }
+
+    /*
+     * Lazily initialised so the version is read once the validation foundry
+     * has been registered.
+     */
+    private static final class LibraryVersion {
+        static final String VALUE = Foundries.defaultInstance().getDetails().getVersion();
+    }
+
+    /**
+     * Immutable cache key made up of the SHA-1 of the validated bytes, the
+     * requested flavour and validation mode and the veraPDF library version.
+     */
+    public static final class Key {
+        private final String sha1Hex;
+        private final PDFAFlavour flavour;
+        private final ValidationLimits.Mode mode;
+        private final String libraryVersion;
+
+        Key(final String sha1Hex, final PDFAFlavour flavour, final ValidationLimits.Mode mode,
+            final String libraryVersion) {
+            this.sha1Hex = sha1Hex;
+            this.flavour = flavour;
+            this.mode = mode;
+            this.libraryVersion = libraryVersion;
+        }
+
+        /**
+         * @return the hex SHA-1 of the validated bytes
+         */
+        public String getSha1Hex() {
+            return this.sha1Hex;
+        }
+
+        /**
+         * @return the requested {@link PDFAFlavour}
+         */
+        public PDFAFlavour getFlavour() {
+            return this.flavour;
+        }
+
+        /**
+         * @return the requested {@link ValidationLimits.Mode}
+         */
+        public ValidationLimits.Mode getMode() {
+            return this.mode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return this.sha1Hex.equals(other.sha1Hex) && this.flavour == other.flavour
+                    && this.mode == other.mode && this.libraryVersion.equals(other.libraryVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + this.sha1Hex.hashCode();
+            result = prime * result + this.flavour.hashCode();
+            result = prime * result + this.mode.hashCode();
+            result = prime * result + this.libraryVersion.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Key [sha1Hex=" + this.sha1Hex + ", flavour=" + this.flavour //$NON-NLS-1$ //$NON-NLS-2$
+                    + ", mode=" + this.mode + ", libraryVersion=" + this.libraryVersion + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.verapdf.rest.validation;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Times the stages a document goes through between arriving and its result
+ * being returned, so that the stage worth scaling can be found. Each stage has
+ * a {@link Timer} per flavour and document size bucket, named
+ * {@code org.verapdf.rest.validation.ValidationStages.<stage>.<flavour>.<size>},
+ * for example {@code ...ValidationStages.parse.1b.1MB-10MB}. Dropwizard's
+ * metrics have no tags, so the tags are part of the name, a timer is only
+ * registered once a document has been through its stage.
+ * <p>
+ * The flavour is the one validated against, detected or requested, or
+ * {@code auto} when a cached result was returned for an auto-detect request.
+ * A size that isn't known is bucketed as {@code unknown}.
+ */
+public final class ValidationStages {
+    /** The request property holding the length of the document a result is for */
+    public static final String DOCUMENT_LENGTH_PROPERTY = ValidationStages.class.getName() + ".documentLength"; //$NON-NLS-1$
+
+    private static final String AUTO_FLAVOUR = "auto"; //$NON-NLS-1$
+    private static final long KB = 1024L;
+    private static final long MB = 1024L * KB;
+
+    /**
+     * The stages of handling a document.
+     */
+    public enum Stage {
+        /** Reading the upload from the client */
+        RECEIVE,
+        /** Writing the upload to memory or its temp file */
+        SPOOL,
+        /** Calculating the upload's SHA-1 */
+        SHA1,
+        /** Detecting the flavour of an auto-detect request */
+        DETECT,
+        /** Creating the parser, veraPDF parses the rest of the document lazily during validation */
+        PARSE,
+        /** Evaluating the profile's rules */
+        VALIDATE,
+        /** Writing the result to the response as JSON or XML */
+        SERIALISE,
+        /** Rendering the HTML report */
+        RENDER;
+
+        String getId() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final MetricRegistry metrics;
+
+    /**
+     * @param metrics
+     *            the {@link MetricRegistry} the stage timers are registered
+     *            with
+     */
+    public ValidationStages(final MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Record the time a document spent in a stage.
+     *
+     * @param stage
+     *            the {@link Stage}
+     * @param flavour
+     *            the {@link PDFAFlavour} of the document,
+     *            {@link PDFAFlavour#NO_FLAVOUR} or null if it isn't known
+     * @param length
+     *            the length of the document in bytes, or a negative number if
+     *            it isn't known
+     * @param nanos
+     *            the time spent in the stage in nanoseconds
+     */
+    public void record(final Stage stage, final PDFAFlavour flavour, final long length, final long nanos) {
+        record(stage, flavourId(flavour), length, nanos);
+    }
+
+    /**
+     * Record the time a document spent in a stage.
+     *
+     * @param stage
+     *            the {@link Stage}
+     * @param flavourId
+     *            the id of the document's flavour
+     * @param length
+     *            the length of the document in bytes, or a negative number if
+     *            it isn't known
+     * @param nanos
+     *            the time spent in the stage in nanoseconds
+     */
+    public void record(final Stage stage, final String flavourId, final long length, final long nanos) {
+        this.metrics.timer(MetricRegistry.name(ValidationStages.class, stage.getId(), flavourId, sizeBucket(length)))
+                .update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the time an upload spent being received, spooled and hashed.
+     *
+     * @param flavour
+     *            the {@link PDFAFlavour} of the upload,
+     *            {@link PDFAFlavour#NO_FLAVOUR} or null if it isn't known
+     * @param upload
+     *            the {@link SpooledUpload}
+     */
+    public void recordSpooling(final PDFAFlavour flavour, final SpooledUpload upload) {
+        String flavourId = flavourId(flavour);
+        record(Stage.RECEIVE, flavourId, upload.getLength(), upload.getReceiveNanos());
+        record(Stage.SPOOL, flavourId, upload.getLength(), upload.getSpoolNanos());
+        record(Stage.SHA1, flavourId, upload.getLength(), upload.getSha1Nanos());
+    }
+
+    /**
+     * @param length
+     *            a document's length in bytes, negative if it isn't known
+     * @return the name of the document's size bucket
+     */
+    static String sizeBucket(final long length) {
+        if (length < 0) {
+            return "unknown"; //$NON-NLS-1$
+        }
+        if (length < 100 * KB) {
+            return "under-100KB"; //$NON-NLS-1$
+        }
+        if (length < MB) {
+            return "100KB-1MB"; //$NON-NLS-1$
+        }
+        if (length < 10 * MB) {
+            return "1MB-10MB"; //$NON-NLS-1$
+        }
+        if (length < 100 * MB) {
+            return "10MB-100MB"; //$NON-NLS-1$
+        }
+        return "over-100MB"; //$NON-NLS-1$
+    }
+
+    private static String flavourId(final PDFAFlavour flavour) {
+        return (flavour == null || flavour == PDFAFlavour.NO_FLAVOUR) ? AUTO_FLAVOUR : flavour.getId();
+    }
+}
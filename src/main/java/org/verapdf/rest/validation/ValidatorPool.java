@@ -0,0 +1,196 @@
+package org.verapdf.rest.validation;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.features.FeatureExtractorConfig;
+import org.verapdf.features.FeatureFactory;
+import org.verapdf.metadata.fixer.FixerFactory;
+import org.verapdf.metadata.fixer.MetadataFixerConfig;
+import org.verapdf.pdfa.PDFAValidator;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.validation.validators.ValidatorFactory;
+import org.verapdf.processor.ProcessorConfig;
+import org.verapdf.processor.ProcessorFactory;
+import org.verapdf.processor.TaskType;
+import org.verapdf.processor.plugins.PluginsCollectionConfig;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Reuses the validation setup that doesn't depend on the document being
+ * validated. A {@link ProcessorConfig} is built once for each validation
+ * {@link ValidationLimits.Mode} and flavour, including
+ * {@link PDFAFlavour#NO_FLAVOUR} for auto-detection, when the pool is
+ * created, and {@link PDFAValidator}s are kept per mode and flavour once
+ * they've been used.
+ * <p>
+ * A veraPDF validator resets its state at the start of each validation but
+ * isn't safe to use from two threads at once, so a validator is borrowed for
+ * the length of one validation and is only ever held by one thread. A
+ * validator that was in use when a validation failed is dropped rather than
+ * returned, in case it was left part way through a document. At most
+ * {@code maxIdlePerFlavour} validators are kept for each mode and flavour, the
+ * rest are left for the garbage collector.
+ */
+public final class ValidatorPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidatorPool.class);
+
+    private final Map<ValidationLimits.Mode, ValidationLimits> limits;
+    private final ValidationLimits defaultLimits;
+    private final int maxIdlePerFlavour;
+    private final Map<ValidationLimits.Mode, Map<PDFAFlavour, ProcessorConfig>> processorConfigs =
+            new EnumMap<>(ValidationLimits.Mode.class);
+    private final Map<ValidationLimits.Mode, Map<PDFAFlavour, Queue<PDFAValidator>>> idle =
+            new EnumMap<>(ValidationLimits.Mode.class);
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Meter created = new Meter();
+    private final Meter reused = new Meter();
+
+    /**
+     * @param limits
+     *            the {@link ValidationLimits} of each mode
+     * @param defaultMode
+     *            the {@link ValidationLimits.Mode} used when a request doesn't
+     *            select one
+     * @param maxIdlePerFlavour
+     *            the maximum number of unused validators kept for each mode
+     *            and flavour, 0 disables validator reuse
+     */
+    public ValidatorPool(final Map<ValidationLimits.Mode, ValidationLimits> limits,
+                         final ValidationLimits.Mode defaultMode, final int maxIdlePerFlavour) {
+        this.limits = new EnumMap<>(limits);
+        this.defaultLimits = this.limits.get(defaultMode);
+        this.maxIdlePerFlavour = maxIdlePerFlavour;
+        // The maps are filled here and only read afterwards, so need no locking
+        for (ValidationLimits modeLimits : this.limits.values()) {
+            ValidationLimits.Mode mode = modeLimits.getMode();
+            Map<PDFAFlavour, ProcessorConfig> configs = new EnumMap<>(PDFAFlavour.class);
+            Map<PDFAFlavour, Queue<PDFAValidator>> validators = new EnumMap<>(PDFAFlavour.class);
+            for (PDFAFlavour flavour : PDFAFlavour.values()) {
+                configs.put(flavour, processorConfig(modeLimits, flavour));
+                validators.put(flavour, new ConcurrentLinkedQueue<PDFAValidator>());
+            }
+            this.processorConfigs.put(mode, configs);
+            this.idle.put(mode, validators);
+        }
+    }
+
+    /**
+     * @param modeName
+     *            the name of the mode a request selected, null or empty for
+     *            the default
+     * @return the {@link ValidationLimits} of the mode
+     * @throws IllegalArgumentException
+     *             if no mode matches the name
+     */
+    public ValidationLimits getLimits(final String modeName) {
+        if (modeName == null || modeName.trim().isEmpty()) {
+            return this.defaultLimits;
+        }
+        return this.limits.get(ValidationLimits.Mode.fromName(modeName));
+    }
+
+    /**
+     * @param mode
+     *            the {@link ValidationLimits.Mode}
+     * @return the {@link ValidationLimits} of the mode
+     */
+    public ValidationLimits getLimits(final ValidationLimits.Mode mode) {
+        return this.limits.get(mode);
+    }
+
+    /**
+     * @param limits
+     *            the {@link ValidationLimits} of the validation
+     * @param flavour
+     *            the {@link PDFAFlavour} to validate against,
+     *            {@link PDFAFlavour#NO_FLAVOUR} or null for auto-detection
+     * @return the {@link ProcessorConfig} for the limits and flavour, shared by
+     *         every caller and never modified
+     */
+    public ProcessorConfig getProcessorConfig(final ValidationLimits limits, final PDFAFlavour flavour) {
+        return this.processorConfigs.get(limits.getMode())
+                .get((flavour == null) ? PDFAFlavour.NO_FLAVOUR : flavour);
+    }
+
+    /**
+     * Take an unused validator for the limits and flavour, creating one if
+     * none is available. The caller has sole use of the validator until it's
+     * passed to {@link #release(ValidationLimits, PDFAFlavour, PDFAValidator)}.
+     *
+     * @param limits
+     *            the {@link ValidationLimits} of the validation
+     * @param flavour
+     *            the {@link PDFAFlavour} to validate against
+     * @return a {@link PDFAValidator} for the limits and flavour
+     */
+    public PDFAValidator borrow(final ValidationLimits limits, final PDFAFlavour flavour) {
+        PDFAValidator validator = this.idle.get(limits.getMode()).get(flavour).poll();
+        if (validator != null) {
+            this.idleCount.decrementAndGet();
+            this.reused.mark();
+            return validator;
+        }
+        LOGGER.debug("Creating a validator for {} with {}", flavour, limits);
+        this.created.mark();
+        return ValidatorFactory.createValidator(flavour, limits.isLogPassedChecks(), limits.getMaxFailedChecks());
+    }
+
+    /**
+     * Return a validator to the pool once it has completed a validation. Only
+     * validators that completed without an exception should be released.
+     *
+     * @param limits
+     *            the {@link ValidationLimits} the validator was borrowed for
+     * @param flavour
+     *            the {@link PDFAFlavour} the validator was borrowed for
+     * @param validator
+     *            the {@link PDFAValidator} to return
+     */
+    public void release(final ValidationLimits limits, final PDFAFlavour flavour, final PDFAValidator validator) {
+        Queue<PDFAValidator> validators = this.idle.get(limits.getMode()).get(flavour);
+        // Racing releases may briefly keep one or two more, never fewer
+        if (validators.size() >= this.maxIdlePerFlavour) {
+            return;
+        }
+        validators.offer(validator);
+        this.idleCount.incrementAndGet();
+    }
+
+    /**
+     * Register meters of the validators created and reused, and a gauge of the
+     * validators waiting to be reused.
+     *
+     * @param metrics
+     *            the {@link MetricRegistry} to register the metrics with
+     */
+    public void registerMetrics(final MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(ValidatorPool.class, "created"), this.created); //$NON-NLS-1$
+        metrics.register(MetricRegistry.name(ValidatorPool.class, "reused"), this.reused); //$NON-NLS-1$
+        metrics.register(MetricRegistry.name(ValidatorPool.class, "idle"), new Gauge<Integer>() { //$NON-NLS-1$
+            @Override
+            public Integer getValue() {
+                return Integer.valueOf(ValidatorPool.this.idleCount.get());
+            }
+        });
+    }
+
+    private static ProcessorConfig processorConfig(final ValidationLimits limits, final PDFAFlavour flavour) {
+        FeatureExtractorConfig featureConfig = FeatureFactory.defaultConfig();
+        PluginsCollectionConfig pluginsConfig = PluginsCollectionConfig.defaultConfig();
+        MetadataFixerConfig fixerConfig = FixerFactory.defaultConfig();
+        // TODO: implement options to run the feature extraction and metadata fixing tasks
+        return ProcessorFactory.fromValues(
+                ValidatorFactory.createConfig(flavour, limits.isLogPassedChecks(), limits.getMaxFailedChecks()),
+                featureConfig, pluginsConfig, fixerConfig, EnumSet.of(TaskType.VALIDATE));
+    }
+}
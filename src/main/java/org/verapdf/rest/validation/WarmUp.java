@@ -0,0 +1,175 @@
+package org.verapdf.rest.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.PDFAParser;
+import org.verapdf.pdfa.PDFAValidator;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+/**
+ * Warms up the validation pool before the server reports itself ready. Every
+ * veraPDF validation profile is loaded and a bundled sample PDF, plus any
+ * configured samples, is validated against each of them, so the parser, the
+ * profiles' rules and the rule engine's compiled scripts are in place before
+ * the first request arrives. The validators used are left in the
+ * {@link ValidatorPool} for the first requests to reuse. The bundled sample is small, configuring a few
+ * documents like those the server usually receives also warms the code that
+ * handles their fonts, images and compression.
+ * <p>
+ * The warm-up runs as a single task on the {@link ValidationExecutor}, so it
+ * never validates at the same time as a request. A flavour that fails to warm
+ * up is logged and skipped, it will be warmed by its first request instead.
+ */
+public final class WarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+    private static final String SAMPLE_RESOURCE = "/org/verapdf/rest/warmup/sample.pdf"; //$NON-NLS-1$
+
+    private final ValidationExecutor executor;
+    private final ValidatorPool validators;
+    private final List<File> samples;
+    private volatile boolean complete = false;
+    private volatile int flavours = 0;
+    private volatile long durationMillis = 0;
+    private volatile Throwable failure = null;
+
+    /**
+     * @param executor
+     *            the {@link ValidationExecutor} the warm-up runs on
+     * @param validators
+     *            the {@link ValidatorPool} the warmed up validators are kept in
+     * @param samples
+     *            PDF files validated as well as the bundled sample
+     */
+    public WarmUp(final ValidationExecutor executor, final ValidatorPool validators, final List<File> samples) {
+        this.executor = executor;
+        this.validators = validators;
+        this.samples = new ArrayList<>(samples);
+    }
+
+    /**
+     * Queue the warm-up on the validation pool and return without waiting for
+     * it to complete.
+     */
+    public void start() {
+        this.executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    warmUp();
+                } catch (IOException | RuntimeException | Error excep) {
+                    LOGGER.error("Validation warm-up failed", excep);
+                    WarmUp.this.failure = excep;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Mark the warm-up complete without running it.
+     */
+    public void skip() {
+        this.complete = true;
+    }
+
+    /**
+     * @return true once the warm-up has completed, or was skipped
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * @return the exception that stopped the warm-up, or null if it hasn't
+     *         failed
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @return the number of flavours the sample was validated against
+     */
+    public int getFlavours() {
+        return this.flavours;
+    }
+
+    /**
+     * @return the time the warm-up took in milliseconds, 0 until it completes
+     */
+    public long getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    private void warmUp() throws IOException {
+        long start = System.nanoTime();
+        List<byte[]> sampleBytes = new ArrayList<>();
+        sampleBytes.add(loadSample());
+        for (File sample : this.samples) {
+            try {
+                sampleBytes.add(Files.readAllBytes(sample.toPath()));
+            } catch (IOException excep) {
+                LOGGER.warn("Couldn't read warm-up sample {}", sample, excep);
+            }
+        }
+        int warmed = 0;
+        for (ValidationProfile profile : Profiles.getVeraProfileDirectory().getValidationProfiles()) {
+            try {
+                for (byte[] sample : sampleBytes) {
+                    validate(profile, sample);
+                }
+                warmed++;
+            } catch (VeraPDFException | IOException excep) {
+                LOGGER.warn("Couldn't warm up validation of {}", profile.getPDFAFlavour(), excep);
+            }
+        }
+        this.flavours = warmed;
+        this.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        this.complete = true;
+        LOGGER.info("Validation warm-up of {} flavours completed in {} ms", Integer.valueOf(warmed),
+                Long.valueOf(this.durationMillis));
+    }
+
+    private void validate(final ValidationProfile profile, final byte[] sample)
+            throws VeraPDFException, IOException {
+        PDFAFlavour flavour = profile.getPDFAFlavour();
+        // Requests that don't select a validation mode reuse these validators
+        ValidationLimits limits = this.validators.getLimits((String) null);
+        try (PDFAParser parser = Foundries.defaultInstance().createParser(new ByteArrayInputStream(sample),
+                flavour)) {
+            PDFAValidator validator = this.validators.borrow(limits, flavour);
+            validator.validate(parser);
+            this.validators.release(limits, flavour, validator);
+        }
+    }
+
+    private static byte[] loadSample() throws IOException {
+        try (InputStream in = WarmUp.class.getResourceAsStream(SAMPLE_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Warm-up sample " + SAMPLE_RESOURCE + " not found"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Server side plumbing for running veraPDF validations: the bounded worker
+ * pool that requests are submitted to and supporting services shared by the
+ * REST resources.
+ */
+
+package org.verapdf.rest.validation;
@@ -0,0 +1,193 @@
+package org.openpreservation.bytestreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the digests {@link ByteStreams} calculates against known values,
+ * including when many threads hash different inputs at once, as the
+ * thread's digests and read buffer are reused between streams, and when
+ * several digests are calculated in the one pass.
+ */
+public class ByteStreamsTest {
+    private static final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+    private static final String ABC_SHA1 = "a9993e364706816aba3e25717850c26c9cd0d89d"; //$NON-NLS-1$
+    private static final byte[] FOX = "The quick brown fox jumps over the lazy dog" //$NON-NLS-1$
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final String FOX_SHA1 = "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12"; //$NON-NLS-1$
+    private static final String FOX_SHA256 = "d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592"; //$NON-NLS-1$
+    private static final String FOX_MD5 = "9e107d9d372bb6826bd81d3542a419d6"; //$NON-NLS-1$
+    // Larger than the read buffer, so it's hashed in several reads
+    private static final byte[] LARGE = largeInput();
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void knownStreamDigests() throws IOException {
+        assertEquals(ABC_SHA1, ByteStreams.idFromStream(new ByteArrayInputStream(ABC)).getHexSHA1());
+        assertEquals(FOX_SHA1, ByteStreams.idFromStream(new ByteArrayInputStream(FOX)).getHexSHA1());
+        assertEquals(sha1(LARGE), ByteStreams.idFromStream(new ByteArrayInputStream(LARGE)).getHexSHA1());
+        assertEquals(LARGE.length, ByteStreams.idFromStream(new ByteArrayInputStream(LARGE)).getLength());
+    }
+
+    @Test
+    public void emptyStreamIsNullStream() throws IOException {
+        ByteStreamId id = ByteStreams.idFromStream(new ByteArrayInputStream(new byte[0]));
+        assertEquals(ByteStreams.NULL_SHA1, id.getHexSHA1());
+        assertEquals(0L, id.getLength());
+    }
+
+    @Test
+    public void knownFileDigests() throws IOException {
+        assertEquals(ABC_SHA1, ByteStreams.idFromFile(write(ABC)).getHexSHA1());
+        assertEquals(sha1(LARGE), ByteStreams.idFromFile(write(LARGE)).getHexSHA1());
+        assertEquals(ByteStreams.NULL_SHA1, ByteStreams.idFromFile(write(new byte[0])).getHexSHA1());
+    }
+
+    @Test
+    public void concurrentDigests() throws Exception {
+        final byte[][] inputs = { ABC, FOX, LARGE, new byte[0] };
+        final String[] expected = { ABC_SHA1, FOX_SHA1, sha1(LARGE), ByteStreams.NULL_SHA1 };
+        final File[] files = new File[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            files[i] = write(inputs[i]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int offset = thread;
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        // Each thread walks the inputs from a different
+                        // place, so neighbouring threads hash different data
+                        for (int round = 0; round < ROUNDS; round++) {
+                            int i = (offset + round) % inputs.length;
+                            ByteStreamId fromStream = ByteStreams
+                                    .idFromStream(new ByteArrayInputStream(inputs[i]));
+                            assertEquals(expected[i], fromStream.getHexSHA1());
+                            assertEquals(inputs[i].length, fromStream.getLength());
+                            assertEquals(expected[i], ByteStreams.idFromFile(files[i]).getHexSHA1());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void allDigestsInOnePass() throws IOException {
+        CountingInputStream stream = new CountingInputStream(new ByteArrayInputStream(FOX));
+        ByteStreamId id = ByteStreams.idFromStream(stream,
+                EnumSet.of(DigestAlgorithm.SHA256, DigestAlgorithm.MD5));
+        // Every digest comes from the one read of the stream
+        assertEquals(FOX.length, stream.count);
+        assertEquals(FOX.length, id.getLength());
+        assertEquals(FOX_SHA1, id.getHexSHA1());
+        assertEquals(FOX_SHA1, id.getHexDigest(DigestAlgorithm.SHA1));
+        assertEquals(FOX_SHA256, id.getHexDigest(DigestAlgorithm.SHA256));
+        assertEquals(FOX_MD5, id.getHexDigest(DigestAlgorithm.MD5));
+    }
+
+    @Test
+    public void allDigestsOfLargeFile() throws IOException {
+        ByteStreamId id = ByteStreams.idFromFile(write(LARGE),
+                EnumSet.of(DigestAlgorithm.SHA256, DigestAlgorithm.MD5));
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            assertEquals(digest(algorithm, LARGE), id.getHexDigest(algorithm));
+        }
+    }
+
+    @Test
+    public void onlyRequestedDigests() throws IOException {
+        ByteStreamId id = ByteStreams.idFromStream(new ByteArrayInputStream(ABC), EnumSet.of(DigestAlgorithm.MD5));
+        assertEquals(ABC_SHA1, id.getHexSHA1());
+        assertEquals(digest(DigestAlgorithm.MD5, ABC), id.getHexDigest(DigestAlgorithm.MD5));
+        assertNull(id.getHexDigest(DigestAlgorithm.SHA256));
+    }
+
+    private File write(final byte[] contents) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+
+    private static String sha1(final byte[] input) {
+        return digest(DigestAlgorithm.SHA1, input);
+    }
+
+    private static String digest(final DigestAlgorithm algorithm, final byte[] input) {
+        return Hex.encodeHexString(algorithm.newDigest().digest(input));
+    }
+
+    private static byte[] largeInput() {
+        byte[] input = new byte[200 * 1024 + 17];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        return input;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count = 0L;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                this.count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buff, final int off, final int len) throws IOException {
+            int read = super.read(buff, off, len);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.core.VeraPDFException;
+
+/**
+ * Checks the files a {@link FileDiscovery} walk finds against the
+ * {@link DiscoveryOptions} filters, depth limit and symbolic link policy,
+ * and that a walk whose consumer is slower than the walkers finds every file
+ * without growing the pool.
+ */
+public class FileDiscoveryTest {
+    private static final int PARALLELISM = 2;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ForkJoinPool pool;
+    private FileDiscovery discovery;
+    private File root;
+
+    @Before
+    public void createTree() throws IOException {
+        this.pool = new ForkJoinPool(PARALLELISM);
+        this.discovery = new FileDiscovery(this.pool, QUEUE_CAPACITY);
+        this.root = this.folder.newFolder();
+        write("a.pdf", 10); //$NON-NLS-1$
+        write("big.pdf", 1000); //$NON-NLS-1$
+        write("notes.txt", 10); //$NON-NLS-1$
+        write("sub/c.pdf", 10); //$NON-NLS-1$
+        write("sub/deep/d.pdf", 10); //$NON-NLS-1$
+        write("skip/e.pdf", 10); //$NON-NLS-1$
+        File outside = this.folder.newFolder();
+        Files.write(new File(outside, "f.pdf").toPath(), new byte[10]); //$NON-NLS-1$
+        Files.createSymbolicLink(path("link.pdf"), path("sub/c.pdf")); //$NON-NLS-1$ //$NON-NLS-2$
+        Files.createSymbolicLink(path("outside"), outside.toPath()); //$NON-NLS-1$
+        // A link back to the root, following it mustn't walk the tree twice
+        Files.createSymbolicLink(path("sub/loop"), this.root.toPath()); //$NON-NLS-1$
+    }
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    @Test
+    public void defaultsFollowFileLinksOnly() throws Exception {
+        assertEquals(names("a.pdf", "big.pdf", "link.pdf", "sub/c.pdf", "sub/deep/d.pdf", "skip/e.pdf"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                find(DiscoveryOptions.defaultInstance()));
+    }
+
+    @Test
+    public void ignoredLinksAreSkipped() throws Exception {
+        assertEquals(names("a.pdf", "big.pdf", "sub/c.pdf", "sub/deep/d.pdf", "skip/e.pdf"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+                find(options(DiscoveryOptions.LinkPolicy.IGNORE, Integer.MAX_VALUE, NONE, NONE)));
+    }
+
+    @Test
+    public void followedLinksWalkEachDirectoryOnce() throws Exception {
+        assertEquals(names("a.pdf", "big.pdf", "link.pdf", "sub/c.pdf", "sub/deep/d.pdf", "skip/e.pdf", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                "outside/f.pdf"), //$NON-NLS-1$
+                find(options(DiscoveryOptions.LinkPolicy.FOLLOW, Integer.MAX_VALUE, NONE, NONE)));
+    }
+
+    @Test
+    public void depthIsLimited() throws Exception {
+        assertEquals(names("a.pdf", "big.pdf"), //$NON-NLS-1$ //$NON-NLS-2$
+                find(options(DiscoveryOptions.LinkPolicy.IGNORE, 1, NONE, NONE)));
+        assertEquals(names("a.pdf", "big.pdf", "sub/c.pdf", "skip/e.pdf"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                find(options(DiscoveryOptions.LinkPolicy.IGNORE, 2, NONE, NONE)));
+    }
+
+    @Test
+    public void patternsSelectFiles() throws Exception {
+        assertEquals(names("a.pdf", "big.pdf", "sub/c.pdf", "sub/deep/d.pdf"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                find(options(DiscoveryOptions.LinkPolicy.IGNORE, Integer.MAX_VALUE, NONE,
+                        Arrays.asList("skip")))); //$NON-NLS-1$
+        assertEquals(names("notes.txt", "sub/deep/d.pdf"), //$NON-NLS-1$ //$NON-NLS-2$
+                find(options(DiscoveryOptions.LinkPolicy.IGNORE, Integer.MAX_VALUE,
+                        Arrays.asList("*.txt", "sub/deep/*"), NONE))); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void sizesSelectFiles() throws Exception {
+        DiscoveryOptions options = new DiscoveryOptions(DiscoveryOptions.LinkPolicy.IGNORE, Integer.MAX_VALUE,
+                100L, Long.MAX_VALUE, NONE, NONE);
+        assertEquals(names("big.pdf"), find(options)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void singleFileIsFound() throws Exception {
+        File single = path("big.pdf").toFile(); //$NON-NLS-1$
+        try (FileSource source = this.discovery.discover(single, DiscoveryOptions.defaultInstance(),
+                ValidationDeadline.unlimited())) {
+            assertEquals(single, source.next());
+            assertNull(source.next());
+        }
+    }
+
+    @Test
+    public void cancelledWalkFindsNothing() throws Exception {
+        ValidationDeadline deadline = ValidationDeadline.unlimited();
+        deadline.cancel("Cancelled by an administrator."); //$NON-NLS-1$
+        try (FileSource source = this.discovery.discover(this.root, DiscoveryOptions.defaultInstance(), deadline)) {
+            assertNull(source.next());
+        }
+    }
+
+    @Test
+    public void slowConsumerFindsEveryFile() throws Exception {
+        Set<String> expected = new HashSet<>(find(DiscoveryOptions.defaultInstance()));
+        for (int dir = 0; dir < 20; dir++) {
+            for (int file = 0; file < 15; file++) {
+                String name = "many/" + dir + "/" + file + ".pdf"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                write(name, 10);
+                expected.add(name);
+            }
+        }
+        Set<String> found = new HashSet<>();
+        try (FileSource source = this.discovery.discover(this.root, DiscoveryOptions.defaultInstance(),
+                ValidationDeadline.unlimited())) {
+            for (File file = source.next(); file != null; file = source.next()) {
+                found.add(relative(file));
+                // Walkers with nowhere to put their files are put aside rather
+                // than blocking, so the pool never adds compensating threads
+                assertTrue(this.pool.getPoolSize() <= PARALLELISM);
+                if (found.size() % 25 == 0) {
+                    Thread.sleep(5L);
+                }
+            }
+        }
+        assertEquals(expected, found);
+    }
+
+    private Set<String> find(final DiscoveryOptions options) throws InterruptedException, VeraPDFException {
+        Set<String> found = new HashSet<>();
+        try (FileSource source = this.discovery.discover(this.root, options, ValidationDeadline.unlimited())) {
+            for (File file = source.next(); file != null; file = source.next()) {
+                assertTrue("Found twice: " + file, found.add(relative(file))); //$NON-NLS-1$
+            }
+        }
+        return found;
+    }
+
+    private static DiscoveryOptions options(final DiscoveryOptions.LinkPolicy linkPolicy, final int maxDepth,
+                                            final List<String> includes, final List<String> excludes) {
+        return new DiscoveryOptions(linkPolicy, maxDepth, 0L, Long.MAX_VALUE, includes, excludes);
+    }
+
+    private static Set<String> names(final String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private String relative(final File file) {
+        return this.root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private Path path(final String name) {
+        return new File(this.root, name).toPath();
+    }
+
+    private void write(final String name, final int length) throws IOException {
+        Path file = path(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[length]);
+    }
+}
@@ -0,0 +1,178 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openpreservation.bytestreams.DigestAlgorithm;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * Checks that {@link UploadSpool} keeps small uploads in memory and spools
+ * larger ones to its directory, that uploads breaking its size limits are
+ * rejected while they're read without leaving temp files behind, and that
+ * the space an upload holds is given back when it's closed.
+ */
+public class UploadSpoolTest {
+    private static final int MEMORY_THRESHOLD = 1024;
+    private static final long MAX_FILE_BYTES = 64 * 1024;
+    private static final long MAX_TOTAL_BYTES = 100 * 1024;
+    private static final long RETRY_AFTER_SECONDS = 30L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private Meter rejected;
+    private UploadSpool spool;
+
+    @Before
+    public void createSpool() throws IOException {
+        this.directory = this.folder.newFolder();
+        this.rejected = new Meter();
+        this.spool = new UploadSpool(this.directory, MEMORY_THRESHOLD, MAX_FILE_BYTES, MAX_TOTAL_BYTES,
+                RETRY_AFTER_SECONDS, this.rejected);
+    }
+
+    @Test
+    public void smallUploadStaysInMemory() throws IOException {
+        byte[] contents = contents(MEMORY_THRESHOLD);
+        try (SpooledUpload upload = this.spool.spool(new ByteArrayInputStream(contents))) {
+            assertTrue(upload.isInMemory());
+            assertEquals(contents.length, upload.getLength());
+            assertEquals(sha1(contents), upload.getSha1Hex());
+            assertArrayEquals(contents, read(upload));
+            assertEquals(0, this.directory.list().length);
+        }
+    }
+
+    @Test
+    public void largeUploadIsSpooled() throws IOException {
+        byte[] contents = contents(40 * 1024 + 7);
+        File file;
+        try (SpooledUpload upload = this.spool.spool(new ByteArrayInputStream(contents))) {
+            assertFalse(upload.isInMemory());
+            assertEquals(sha1(contents), upload.getSha1Hex());
+            file = upload.getFile();
+            assertEquals(this.directory, file.getParentFile());
+            assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void tooLargeIs413() throws IOException {
+        try {
+            this.spool.spool(new ByteArrayInputStream(contents((int) MAX_FILE_BYTES + 1)));
+            fail("Expected the upload to be rejected as too large"); //$NON-NLS-1$
+        } catch (WebApplicationException excep) {
+            assertEquals(413, excep.getResponse().getStatus());
+        }
+        assertEquals(0, this.directory.list().length);
+    }
+
+    @Test
+    public void fullSpoolIs503UntilSpaceIsReleased() throws IOException {
+        byte[] contents = contents(60 * 1024);
+        SpooledUpload first = this.spool.spool(new ByteArrayInputStream(contents));
+        try {
+            this.spool.spool(new ByteArrayInputStream(contents));
+            fail("Expected the upload to be rejected by the full spool"); //$NON-NLS-1$
+        } catch (ServiceUnavailableException excep) {
+            assertEquals(503, excep.getResponse().getStatus());
+            assertEquals(String.valueOf(RETRY_AFTER_SECONDS),
+                    excep.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+        assertEquals(1L, this.rejected.getCount());
+        // Only the first upload's file is left
+        assertEquals(1, this.directory.list().length);
+        first.close();
+        try (SpooledUpload second = this.spool.spool(new ByteArrayInputStream(contents))) {
+            assertNotNull(second.getFile());
+        }
+        assertEquals(0, this.directory.list().length);
+    }
+
+    @Test
+    public void inMemoryUploadCountsOnceWritten() throws IOException {
+        UploadSpool small = new UploadSpool(this.directory, MEMORY_THRESHOLD, MAX_FILE_BYTES,
+                MEMORY_THRESHOLD + 100, RETRY_AFTER_SECONDS, this.rejected);
+        try (SpooledUpload first = small.spool(new ByteArrayInputStream(contents(MEMORY_THRESHOLD)));
+                SpooledUpload second = small.spool(new ByteArrayInputStream(contents(MEMORY_THRESHOLD)))) {
+            first.getFile();
+            try {
+                second.getFile();
+                fail("Expected the temp file to be rejected by the full spool"); //$NON-NLS-1$
+            } catch (ServiceUnavailableException excep) {
+                assertEquals(503, excep.getResponse().getStatus());
+            }
+            assertEquals(1, this.directory.list().length);
+        }
+        assertEquals(0, this.directory.list().length);
+    }
+
+    @Test
+    public void closedUploadHasNoFile() throws IOException {
+        SpooledUpload upload = this.spool.spool(new ByteArrayInputStream(contents(MEMORY_THRESHOLD)));
+        upload.close();
+        try {
+            upload.getFile();
+            fail("Expected a closed upload to refuse a temp file"); //$NON-NLS-1$
+        } catch (IOException excep) {
+            // A cancelled validation mustn't write a temp file
+        }
+        assertEquals(0, this.directory.list().length);
+    }
+
+    @Test
+    public void orphansAreSwept() throws IOException {
+        this.spool.spool(new ByteArrayInputStream(contents(40 * 1024)));
+        File other = new File(this.directory, "other.txt"); //$NON-NLS-1$
+        Files.write(other.toPath(), contents(10));
+        assertEquals(1, this.spool.sweepOrphans());
+        assertTrue(other.exists());
+    }
+
+    private static byte[] read(final SpooledUpload upload) throws IOException {
+        try (InputStream stream = upload.openStream()) {
+            byte[] read = new byte[(int) upload.getLength()];
+            int offset = 0;
+            int count;
+            while (offset < read.length && (count = stream.read(read, offset, read.length - offset)) > -1) {
+                offset += count;
+            }
+            return read;
+        }
+    }
+
+    private static String sha1(final byte[] input) {
+        return Hex.encodeHexString(DigestAlgorithm.SHA1.newDigest().digest(input));
+    }
+
+    private static byte[] contents(final int length) {
+        byte[] contents = new byte[length];
+        for (int i = 0; i < length; i++) {
+            contents[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        return contents;
+    }
+}
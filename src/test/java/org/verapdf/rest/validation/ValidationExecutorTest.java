@@ -0,0 +1,241 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.verapdf.core.VeraPDFException;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * Checks that {@link ValidationExecutor} turns requests away with a 503 once
+ * its pool and queue are full, before any upload is read, that a validation
+ * that's stopped is reported as a 504 with the reason it stopped, and that
+ * the resources a reservation holds are released only once its task has
+ * left the pool.
+ */
+public class ValidationExecutorTest {
+    private static final int THREADS = 1;
+    private static final int QUEUE_CAPACITY = 1;
+    private static final long RETRY_AFTER_SECONDS = 30L;
+
+    private ThreadPoolExecutor pool;
+    private Meter rejected;
+    private ValidationExecutor executor;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    @Before
+    public void createExecutor() {
+        this.pool = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY));
+        this.rejected = new Meter();
+        this.executor = new ValidationExecutor(this.pool, THREADS, QUEUE_CAPACITY, 1, 5L, 0L,
+                RETRY_AFTER_SECONDS, this.rejected);
+    }
+
+    @After
+    public void shutdown() {
+        this.blocked.countDown();
+        this.pool.shutdownNow();
+    }
+
+    @Test
+    public void rejectsWith503WhenFull() {
+        this.executor.submit(new FutureTask<>(blocker()));
+        this.executor.submit(new FutureTask<>(blocker()));
+        try {
+            this.executor.reserve();
+            fail("Expected the full executor to reject the reservation"); //$NON-NLS-1$
+        } catch (ServiceUnavailableException excep) {
+            assertEquals(503, excep.getResponse().getStatus());
+            assertEquals(String.valueOf(RETRY_AFTER_SECONDS),
+                    excep.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+        try {
+            this.executor.submit(new FutureTask<>(blocker()));
+            fail("Expected the full executor to reject the task"); //$NON-NLS-1$
+        } catch (ServiceUnavailableException excep) {
+            assertEquals(503, excep.getResponse().getStatus());
+        }
+        assertEquals(2L, this.rejected.getCount());
+    }
+
+    @Test
+    public void releasedReservationFreesItsPlace() {
+        ValidationExecutor.Reservation first = this.executor.reserve();
+        this.executor.reserve();
+        assertRejected();
+        first.release();
+        // Only the first release gives the place back
+        first.release();
+        this.executor.reserve();
+        assertRejected();
+    }
+
+    @Test
+    public void timeoutIs504WithoutRetryAfter() throws Exception {
+        try {
+            this.executor.execute(blocker(), ValidationDeadline.after(1L), null);
+            fail("Expected the validation to time out"); //$NON-NLS-1$
+        } catch (WebApplicationException excep) {
+            assertEquals(504, excep.getResponse().getStatus());
+            assertEquals("Validation did not complete within 1 seconds.", excep.getResponse().getEntity()); //$NON-NLS-1$
+            assertNull(excep.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
+    @Test
+    public void cancellationIs504WithItsReason() throws Exception {
+        final ValidationDeadline deadline = ValidationDeadline.unlimited();
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException excep) {
+                    Thread.currentThread().interrupt();
+                }
+                deadline.cancel("Cancelled by an administrator."); //$NON-NLS-1$
+            }
+        });
+        canceller.start();
+        try {
+            this.executor.execute(blocker(), deadline, null);
+            fail("Expected the validation to be cancelled"); //$NON-NLS-1$
+        } catch (WebApplicationException excep) {
+            assertEquals(504, excep.getResponse().getStatus());
+            assertEquals("Cancelled by an administrator.", excep.getResponse().getEntity()); //$NON-NLS-1$
+        } finally {
+            canceller.join();
+        }
+    }
+
+    @Test
+    public void disconnectIs504() throws Exception {
+        try {
+            this.executor.execute(blocker(), ValidationDeadline.unlimited(), new ValidationExecutor.ClientConnection() {
+                @Override
+                public boolean isOpen() {
+                    return false;
+                }
+            });
+            fail("Expected the validation to be cancelled"); //$NON-NLS-1$
+        } catch (WebApplicationException excep) {
+            assertEquals(504, excep.getResponse().getStatus());
+            assertEquals("The client disconnected.", excep.getResponse().getEntity()); //$NON-NLS-1$
+        }
+    }
+
+    @Test
+    public void heldResourceOutlivesCancelledWait() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final CountDownLatch stubborn = new CountDownLatch(1);
+        ValidationExecutor.Reservation reservation = this.executor.reserve();
+        reservation.hold(new Closeable() {
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+        try {
+            this.executor.execute(reservation, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    // Ignores interrupts, like a parser busy in native code
+                    while (true) {
+                        try {
+                            stubborn.await();
+                            return null;
+                        } catch (InterruptedException excep) {
+                            // Keep going
+                        }
+                    }
+                }
+            }, ValidationDeadline.after(1L), null);
+            fail("Expected the validation to time out"); //$NON-NLS-1$
+        } catch (WebApplicationException excep) {
+            assertEquals(504, excep.getResponse().getStatus());
+        }
+        // The task is still running, so its upload mustn't be deleted yet
+        assertFalse(closed.await(200L, TimeUnit.MILLISECONDS));
+        stubborn.countDown();
+        assertTrue(closed.await(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void resultIsReturned() throws Exception {
+        assertEquals("done", this.executor.execute(new Callable<String>() { //$NON-NLS-1$
+            @Override
+            public String call() {
+                return "done"; //$NON-NLS-1$
+            }
+        }, ValidationDeadline.after(5L), null));
+    }
+
+    @Test(expected = VeraPDFException.class)
+    public void checkedExceptionIsWrapped() throws Exception {
+        this.executor.execute(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IOException("Unreadable"); //$NON-NLS-1$
+            }
+        }, ValidationDeadline.after(5L), null);
+    }
+
+    @Test
+    public void backlogLeavesRoomForRequests() throws Exception {
+        FutureTask<Void> first = this.executor.enqueue(new FutureTask<>(blocker()));
+        FutureTask<Void> second = this.executor.enqueue(new FutureTask<>(blocker()));
+        FutureTask<Void> third = this.executor.enqueue(new FutureTask<>(blocker()));
+        // However many jobs wait, a synchronous request still gets a place
+        ValidationExecutor.Reservation reservation = this.executor.reserve();
+        reservation.release();
+        this.blocked.countDown();
+        first.get(5L, TimeUnit.SECONDS);
+        second.get(5L, TimeUnit.SECONDS);
+        third.get(5L, TimeUnit.SECONDS);
+        assertEquals(0, this.executor.getBacklog());
+        assertEquals(0L, this.rejected.getCount());
+    }
+
+    private void assertRejected() {
+        try {
+            this.executor.reserve();
+            fail("Expected the full executor to reject the reservation"); //$NON-NLS-1$
+        } catch (ServiceUnavailableException excep) {
+            assertEquals(503, excep.getResponse().getStatus());
+        }
+    }
+
+    /*
+     * A task that runs until the test lets it finish, or it's interrupted.
+     */
+    private Callable<Void> blocker() {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                ValidationExecutorTest.this.blocked.await();
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link ValidationJobStore} refuses new jobs with a 503 once its
+ * slots are taken, that removing or expiring a job frees its slot, and that
+ * removing an unfinished job stops its validation.
+ */
+public class ValidationJobStoreTest {
+    private static final int MAX_JOBS = 2;
+    private static final long RETRY_AFTER_SECONDS = 30L;
+    private static final String PROFILE = "1b"; //$NON-NLS-1$
+
+    @Test
+    public void fullStoreIs503() {
+        ValidationJobStore store = new ValidationJobStore(60L, MAX_JOBS, RETRY_AFTER_SECONDS);
+        store.reserve();
+        store.reserve();
+        assertRejected(store);
+        // A slot that no job was created in can be handed back
+        store.release();
+        store.reserve();
+        assertRejected(store);
+    }
+
+    @Test
+    public void removeFreesSlot() {
+        ValidationJobStore store = new ValidationJobStore(60L, MAX_JOBS, RETRY_AFTER_SECONDS);
+        store.reserve();
+        ValidationJob job = store.create(PROFILE);
+        store.reserve();
+        store.create(PROFILE);
+        assertRejected(store);
+        assertSame(job, store.get(job.getId()));
+        assertSame(job, store.remove(job.getId()));
+        assertNull(store.get(job.getId()));
+        assertNull(store.remove(job.getId()));
+        store.reserve();
+        assertRejected(store);
+    }
+
+    @Test
+    public void removeCancelsUnfinishedJob() {
+        ValidationJobStore store = new ValidationJobStore(60L, MAX_JOBS, RETRY_AFTER_SECONDS);
+        store.reserve();
+        ValidationJob job = store.create(PROFILE);
+        ValidationDeadline deadline = ValidationDeadline.unlimited();
+        FutureTask<Void> future = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+        job.setFuture(future);
+        job.start();
+        job.setDeadline(deadline);
+        store.remove(job.getId());
+        assertTrue(future.isCancelled());
+        assertEquals("The job was removed.", deadline.getReason()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void finishedJobsExpire() throws InterruptedException {
+        ValidationJobStore store = new ValidationJobStore(0L, MAX_JOBS, RETRY_AFTER_SECONDS);
+        store.reserve();
+        ValidationJob finished = store.create(PROFILE);
+        store.reserve();
+        ValidationJob running = store.create(PROFILE);
+        running.start();
+        finished.start();
+        finished.fail("Not a PDF"); //$NON-NLS-1$
+        Thread.sleep(10L);
+        // Reserving in a full store evicts the expired job to make room
+        store.reserve();
+        assertNull(store.get(finished.getId()));
+        assertSame(running, store.get(running.getId()));
+        assertEquals(1, store.size());
+        assertRejected(store);
+        // A job that hasn't finished never expires
+        store.evictExpired();
+        assertSame(running, store.get(running.getId()));
+    }
+
+    private static void assertRejected(final ValidationJobStore store) {
+        try {
+            store.reserve();
+            fail("Expected the full store to reject the job"); //$NON-NLS-1$
+        } catch (ServiceUnavailableException excep) {
+            assertEquals(503, excep.getResponse().getStatus());
+            assertEquals(String.valueOf(RETRY_AFTER_SECONDS),
+                    excep.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+    }
+}
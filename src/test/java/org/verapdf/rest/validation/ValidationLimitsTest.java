@@ -0,0 +1,121 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.results.RuleId;
+import org.verapdf.pdfa.results.TestAssertion;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.pdfa.results.ValidationResults;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+
+/**
+ * Checks that {@link ValidationLimits#limit(ValidationResult)} reports no
+ * more than the configured number of failed checks of each rule, keeping
+ * passed checks and the result's totals, and leaves a result it has nothing
+ * to drop from untouched.
+ */
+public class ValidationLimitsTest {
+    private static final RuleId FONTS = Profiles.ruleIdFromValues(PDFAFlavour.Specification.ISO_19005_1,
+            "6.3.4", 1); //$NON-NLS-1$
+    private static final RuleId METADATA = Profiles.ruleIdFromValues(PDFAFlavour.Specification.ISO_19005_1,
+            "6.7.3", 1); //$NON-NLS-1$
+    private static final int TOTAL_ASSERTIONS = 120;
+
+    @Test
+    public void failedChecksAreLimitedPerRule() {
+        Set<TestAssertion> assertions = new LinkedHashSet<>();
+        assertions.add(assertion(1, FONTS, TestAssertion.Status.FAILED));
+        assertions.add(assertion(2, METADATA, TestAssertion.Status.PASSED));
+        assertions.add(assertion(3, FONTS, TestAssertion.Status.FAILED));
+        assertions.add(assertion(4, FONTS, TestAssertion.Status.FAILED));
+        assertions.add(assertion(5, METADATA, TestAssertion.Status.FAILED));
+        assertions.add(assertion(6, FONTS, TestAssertion.Status.PASSED));
+        ValidationResult result = result(assertions);
+
+        ValidationResult limited = new ValidationLimits(ValidationLimits.Mode.DEFAULT, true,
+                ValidationLimits.UNLIMITED, 2).limit(result);
+        assertEquals(2, failures(limited, FONTS));
+        assertEquals(1, failures(limited, METADATA));
+        assertEquals(5, limited.getTestAssertions().size());
+        assertTrue(ordinals(limited).containsAll(Arrays.asList(Integer.valueOf(2), Integer.valueOf(6))));
+        assertEquals(PDFAFlavour.PDFA_1_B, limited.getPDFAFlavour());
+        assertFalse(limited.isCompliant());
+        assertEquals(TOTAL_ASSERTIONS, limited.getTotalAssertions());
+
+        limited = new ValidationLimits(ValidationLimits.Mode.RULES, false, ValidationLimits.UNLIMITED, 1)
+                .limit(result);
+        assertEquals(1, failures(limited, FONTS));
+        assertEquals(1, failures(limited, METADATA));
+        assertEquals(4, limited.getTestAssertions().size());
+    }
+
+    @Test
+    public void resultWithinLimitsIsUnchanged() {
+        Set<TestAssertion> assertions = new LinkedHashSet<>();
+        assertions.add(assertion(1, FONTS, TestAssertion.Status.FAILED));
+        assertions.add(assertion(2, FONTS, TestAssertion.Status.FAILED));
+        assertions.add(assertion(3, METADATA, TestAssertion.Status.FAILED));
+        ValidationResult result = result(assertions);
+        assertSame(result, new ValidationLimits(ValidationLimits.Mode.DEFAULT, false, ValidationLimits.UNLIMITED, 2)
+                .limit(result));
+    }
+
+    @Test
+    public void modesAreNamedIgnoringCase() {
+        assertEquals(ValidationLimits.Mode.PASSFAIL, ValidationLimits.Mode.fromName("passFail")); //$NON-NLS-1$
+        assertEquals(ValidationLimits.Mode.FULL, ValidationLimits.Mode.fromName(" full ")); //$NON-NLS-1$
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownModeIsRejected() {
+        ValidationLimits.Mode.fromName("quick"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void limitsAreEqualByValue() {
+        ValidationLimits limits = new ValidationLimits(ValidationLimits.Mode.DEFAULT, false, 100, 10);
+        assertEquals(limits, new ValidationLimits(ValidationLimits.Mode.DEFAULT, false, 100, 10));
+        assertEquals(limits.hashCode(), new ValidationLimits(ValidationLimits.Mode.DEFAULT, false, 100, 10).hashCode());
+        assertNotEquals(limits, new ValidationLimits(ValidationLimits.Mode.DEFAULT, false, 100, 5));
+        assertNotEquals(limits, new ValidationLimits(ValidationLimits.Mode.FULL, false, 100, 10));
+    }
+
+    private static ValidationResult result(final Set<TestAssertion> assertions) {
+        return ValidationResults.resultFromValues(PDFAFlavour.PDFA_1_B, assertions, false, TOTAL_ASSERTIONS);
+    }
+
+    private static TestAssertion assertion(final int ordinal, final RuleId rule, final TestAssertion.Status status) {
+        return ValidationResults.assertionFromValues(ordinal, rule, status, "Check " + ordinal, //$NON-NLS-1$
+                ValidationResults.locationFromValues("root", "root/document[0]/pages[" + ordinal + "]")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    private static int failures(final ValidationResult result, final RuleId rule) {
+        int failures = 0;
+        for (TestAssertion assertion : result.getTestAssertions()) {
+            if (assertion.getStatus() == TestAssertion.Status.FAILED && assertion.getRuleId().equals(rule)) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static List<Integer> ordinals(final ValidationResult result) {
+        List<Integer> list = new ArrayList<>();
+        for (TestAssertion assertion : result.getTestAssertions()) {
+            list.add(Integer.valueOf(assertion.getOrdinal()));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,176 @@
+package org.verapdf.rest.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.VeraGreenfieldFoundryProvider;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.results.TestAssertion;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.pdfa.results.ValidationResults;
+import org.verapdf.processor.ItemProcessor;
+import org.verapdf.processor.ProcessorResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that a {@link ValidationManifest} reuses the recorded result of a
+ * file that hasn't changed since the last incremental validation, including
+ * one that was only touched, validates a file again when its content or the
+ * {@link ValidationLimits} of the validation have changed, and forgets files
+ * that have been removed.
+ */
+public class ValidationManifestTest {
+    private static final ValidationLimits LIMITS = new ValidationLimits(ValidationLimits.Mode.DEFAULT, false,
+            ValidationLimits.UNLIMITED, 10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ManifestStore store;
+    private File root;
+    private File first;
+    private File second;
+    private CountingProcessor counter;
+    private ItemProcessor processor;
+
+    @BeforeClass
+    public static void initialiseFoundry() {
+        VeraGreenfieldFoundryProvider.initialise();
+    }
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.store = new ManifestStore(this.folder.newFolder(), new ObjectMapper());
+        this.root = this.folder.newFolder();
+        this.first = write("first.pdf", "first"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.second = write("sub/second.pdf", "second"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.counter = new CountingProcessor();
+        this.processor = (ItemProcessor) Proxy.newProxyInstance(ItemProcessor.class.getClassLoader(),
+                new Class<?>[] { ItemProcessor.class }, this.counter);
+    }
+
+    @Test
+    public void unchangedFilesAreReused() throws VeraPDFException {
+        validateAll(LIMITS);
+        assertEquals(2, this.counter.processed);
+        ProcessorResult reused;
+        try (ValidationManifest manifest = this.store.open(this.root, LIMITS)) {
+            reused = manifest.process(this.first, this.processor);
+            manifest.process(this.second, this.processor);
+        }
+        assertEquals(2, this.counter.processed);
+        assertTrue(reused.isPdf());
+        assertTrue(reused.getValidationResult().isCompliant());
+        assertEquals(PDFAFlavour.PDFA_1_B, reused.getValidationResult().getPDFAFlavour());
+    }
+
+    @Test
+    public void changedFileIsValidatedAgain() throws IOException, VeraPDFException {
+        validateAll(LIMITS);
+        // Same size, different content
+        Files.write(this.first.toPath(), "FIRST".getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+        this.first.setLastModified(this.first.lastModified() + 2000L);
+        validateAll(LIMITS);
+        assertEquals(3, this.counter.processed);
+    }
+
+    @Test
+    public void touchedFileIsReused() throws VeraPDFException {
+        validateAll(LIMITS);
+        assertTrue(this.first.setLastModified(this.first.lastModified() + 2000L));
+        validateAll(LIMITS);
+        assertEquals(2, this.counter.processed);
+        // The new modification time is recorded, the next run doesn't hash it
+        validateAll(LIMITS);
+        assertEquals(2, this.counter.processed);
+    }
+
+    @Test
+    public void changedLimitsValidateAgain() throws VeraPDFException {
+        validateAll(LIMITS);
+        validateAll(new ValidationLimits(ValidationLimits.Mode.FULL, true, ValidationLimits.UNLIMITED, 10));
+        assertEquals(4, this.counter.processed);
+    }
+
+    @Test
+    public void directoryIsOpenedOnce() throws VeraPDFException {
+        try (ValidationManifest manifest = this.store.open(this.root, LIMITS)) {
+            try {
+                this.store.open(this.root, LIMITS);
+                fail("Expected the second incremental validation to be refused"); //$NON-NLS-1$
+            } catch (WebApplicationException excep) {
+                assertEquals(409, excep.getResponse().getStatus());
+            }
+        }
+        // Closing the manifest releases the directory
+        this.store.open(this.root, LIMITS).close();
+    }
+
+    @Test
+    public void removedFilesAreDropped() throws IOException, VeraPDFException {
+        validateAll(LIMITS);
+        assertTrue(this.second.delete());
+        assertFalse(this.second.exists());
+        try (ValidationManifest manifest = this.store.open(this.root, LIMITS)) {
+            manifest.process(this.first, this.processor);
+        }
+        // Recreated with the same content, it's new to the manifest
+        write("sub/second.pdf", "second"); //$NON-NLS-1$ //$NON-NLS-2$
+        validateAll(LIMITS);
+        assertEquals(3, this.counter.processed);
+    }
+
+    private void validateAll(final ValidationLimits limits) throws VeraPDFException {
+        try (ValidationManifest manifest = this.store.open(this.root, limits)) {
+            manifest.process(this.first, this.processor);
+            manifest.process(this.second, this.processor);
+        }
+    }
+
+    private File write(final String name, final String contents) throws IOException {
+        File file = new File(this.root, name);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /*
+     * Stands in for the veraPDF processor, counting the files it's asked to
+     * process and passing every one as PDF/A-1B.
+     */
+    private static final class CountingProcessor implements InvocationHandler {
+        int processed = 0;
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            if ("process".equals(method.getName()) && args != null && args.length == 1 //$NON-NLS-1$
+                    && args[0] instanceof File) {
+                this.processed++;
+                ValidationResult result = ValidationResults.resultFromValues(PDFAFlavour.PDFA_1_B,
+                        Collections.<TestAssertion>emptySet(), true, 0);
+                return new RecordedResult((File) args[0], result);
+            }
+            return null;
+        }
+    }
+}